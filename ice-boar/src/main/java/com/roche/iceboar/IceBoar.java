@@ -20,11 +20,11 @@ package com.roche.iceboar;
 
 import com.roche.iceboar.cachestorage.CacheStatus;
 import com.roche.iceboar.debugview.DebugJFrame;
+import com.roche.iceboar.downloader.FileUtilsFacade;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
 import com.roche.iceboar.progressevent.ProgressEventQueue;
+import com.roche.iceboar.progressview.DelayedProgressFrame;
 import com.roche.iceboar.progressview.ImageLoader;
-import com.roche.iceboar.progressview.ProgressJFrame;
-import com.roche.iceboar.progressview.ProgressUpdater;
 import com.roche.iceboar.runner.ExecutableCommandFactory;
 import com.roche.iceboar.runner.TargetApplicationRunner;
 import com.roche.iceboar.settings.GlobalSettings;
@@ -43,13 +43,17 @@ import javax.swing.*;
  * It is hard to debug Ice Boar. In real environment it is started by javaws. To see whats happen by the
  * running this class please set <tt>jnlp.IceBoar.showDebug</tt> to <tt>true</tt> into your JNLP file.
  * This setting shows {@link com.roche.iceboar.debugview.DebugJFrame} with some debug information's.
+ * <p>
+ * A progress frame is shown only when the target application isn't started after {@value #PROGRESS_FRAME_DELAY} ms,
+ * so an application started from the cache doesn't wait for initialization of AWT and Swing.
  */
 public final class IceBoar {
 
     public static final int HALF_OF_SECOND = 500;
+    public static final int PROGRESS_FRAME_DELAY = 300;
 
     private GlobalSettings settings;
-    private ProgressUpdater progress;
+    private DelayedProgressFrame progress;
     private ImageLoader imageLoader;
     private ProgressEventFactory progressEventFactory;
     private ProgressEventQueue progressEventQueue;
@@ -70,7 +74,7 @@ public final class IceBoar {
             printCacheInfo();
             initProgressEventFactory();
             initProgressEventQueue();
-            showProgressFrame();
+            showProgressFrameWhenItsNeeded();
             runTargetApplication();
         } catch (IceBoarException e) {
             JOptionPane.showMessageDialog(null, e.getMessage());
@@ -82,7 +86,7 @@ public final class IceBoar {
     }
 
     private void initIconsLoader() {
-        imageLoader = new ImageLoader();
+        imageLoader = new ImageLoader(new FileUtilsFacade());
     }
 
     private void showDebugFrameIfItsNeeded() {
@@ -121,18 +125,16 @@ public final class IceBoar {
         progressEventQueue = new ProgressEventQueue();
     }
 
-    private void showProgressFrame() {
-        ProgressJFrame jFrame = new ProgressJFrame();
-        progress = jFrame.init(settings, progressEventFactory, imageLoader);
+    private void showProgressFrameWhenItsNeeded() {
+        progress = new DelayedProgressFrame(settings, progressEventFactory, imageLoader);
         progressEventQueue.registerObserver(progress);
-        jFrame.setVisible(true);
+        progress.showAfter(PROGRESS_FRAME_DELAY);
     }
 
-
     private void runTargetApplication() {
         TargetApplicationRunner runner = new TargetApplicationRunner();
         ExecutableCommandFactory commandFactory = new ExecutableCommandFactory();
-        runner.run(settings, commandFactory, progressEventFactory, progressEventQueue);
+        runner.run(settings, commandFactory, progressEventFactory, progressEventQueue, progress);
     }
 
 }
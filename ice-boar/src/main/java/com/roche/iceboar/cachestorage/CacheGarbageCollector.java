@@ -0,0 +1,397 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.cachestorage;
+
+import com.roche.iceboar.downloader.CacheValidators;
+import com.roche.iceboar.downloader.FileUtilsFacade;
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventKind;
+import com.roche.iceboar.progressevent.ProgressEventObserver;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deletes files from the cache in the background, when the target application has started:
+ * <ul>
+ * <li>files left by broken or old runs, e.g. JREs unzipped to <tt>&lt;name&gt;_&lt;time&gt;</tt> directories by older
+ * versions, JAR directories <tt>IceBoar_&lt;time&gt;</tt>, temporary files of JAR downloads, JREs and JARs not
+ * listed in the cache file,</li>
+ * <li>files used least recently (see {@link StatusInfo#getLastUsed()}), until the cache is smaller than {@link
+ * GlobalSettings#JNLP_CACHE_SIZE_LIMIT}.</li>
+ * </ul>
+ * Files used during {@link GlobalSettings#JNLP_CACHE_GRACE_PERIOD} and files locked by running applications (see
+ * {@link CacheUsageLock}) are never deleted. A status is removed from the cache file before its file is deleted, so a
+ * collection interrupted by closing Ice Boar never leaves a status of a deleted file. Files used from a shared cache
+ * (see {@link GlobalSettings#JNLP_SHARED_CACHE_DIRECTORY}) are not counted and never deleted. Repositories of JARs
+ * and JREs are shared by all applications in a root of the cache, so a file listed in a cache file of another
+ * application is never deleted, only a status of this application is removed.
+ */
+public class CacheGarbageCollector implements ProgressEventObserver {
+
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long MEGABYTE = 1024L * 1024;
+    // a name ends with a start time of a run in milliseconds
+    private static final Pattern RUN_FILE_PATTERN = Pattern.compile(
+            Pattern.quote(GlobalSettings.RUN_FILE_PREFIX) + "(?:.+_)?(\\d{12,})(?:\\.tmp)?");
+
+    private final GlobalSettings settings;
+    private final LocalCacheStorage localCacheStorage;
+    private final FileUtilsFacade fileUtils;
+
+    public CacheGarbageCollector(GlobalSettings settings, LocalCacheStorage localCacheStorage,
+                                 FileUtilsFacade fileUtils) {
+        this.settings = settings;
+        this.localCacheStorage = localCacheStorage;
+        this.fileUtils = fileUtils;
+    }
+
+    public void update(ProgressEvent event) {
+        if (event.getKind() == ProgressEventKind.APP_STARTED) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    collect(System.currentTimeMillis());
+                }
+            }, "IceBoar-cache-collector");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    /**
+     * @param now a current time in milliseconds
+     */
+    void collect(long now) {
+        long usedBefore = now - settings.getCacheGracePeriod() * HOUR;
+        CacheStatus cacheStatus = localCacheStorage.loadCacheStatus(settings.getCachePath());
+        Map<File, List<StatusInfo>> statusesByFile = groupByFile(cacheStatus);
+        Set<File> filesOfOtherApplications = findFilesOfOtherApplications();
+        deleteOrphans(statusesByFile.keySet(), filesOfOtherApplications, usedBefore);
+        deleteLeastRecentlyUsed(statusesByFile, filesOfOtherApplications, usedBefore);
+    }
+
+    /**
+     * @return files listed in cache files of other applications, which have their directories in the root of the
+     * cache
+     */
+    private Set<File> findFilesOfOtherApplications() {
+        Set<File> files = new HashSet<File>();
+        File ownDirectory = new File(settings.getTempDirectory()).getAbsoluteFile();
+        File rootDirectory = new File(settings.getCacheRootDirectory()).getAbsoluteFile();
+        if (rootDirectory.equals(ownDirectory)) {
+            return files;
+        }
+        for (File directory : listFiles(rootDirectory)) {
+            File cacheFile = new File(directory, LocalCacheStorage.CACHE_FILE_NAME);
+            if (directory.equals(ownDirectory) || !cacheFile.exists()) {
+                continue;
+            }
+            for (StatusInfo status : localCacheStorage.loadCacheStatus(cacheFile.getPath()).getStatusInfos()) {
+                if (StringUtils.isNotBlank(status.getPath())) {
+                    files.add(new File(status.getPath()).getAbsoluteFile());
+                }
+            }
+        }
+        return files;
+    }
+
+    private Map<File, List<StatusInfo>> groupByFile(CacheStatus cacheStatus) {
+        Map<File, List<StatusInfo>> statusesByFile = new LinkedHashMap<File, List<StatusInfo>>();
+        for (StatusInfo status : cacheStatus.getStatusInfos()) {
+            if (StringUtils.isBlank(status.getPath())) {
+                continue;
+            }
+            File file = new File(status.getPath()).getAbsoluteFile();
+            if (settings.isInSharedCacheDirectory(file)) {
+                continue;
+            }
+            List<StatusInfo> statuses = statusesByFile.get(file);
+            if (statuses == null) {
+                statuses = new ArrayList<StatusInfo>();
+                statusesByFile.put(file, statuses);
+            }
+            statuses.add(status);
+        }
+        return statusesByFile;
+    }
+
+    private void deleteOrphans(Set<File> cachedFiles, Set<File> filesOfOtherApplications, long usedBefore) {
+        Set<File> referenced = withParents(cachedFiles);
+        Pattern legacyUnzipPattern = getLegacyUnzipPattern();
+        for (File file : listFiles(new File(settings.getTempDirectory()))) {
+            if (isLeftByRun(file, legacyUnzipPattern) && !isReferenced(file, referenced)
+                    && isNotUsedSince(file, usedBefore)) {
+                deleteUnused(file);
+            }
+        }
+        // directories owned by Ice Boar, so everything not listed in cache files of applications is an orphan
+        referenced.addAll(withParents(filesOfOtherApplications));
+        List<File> repositoryFiles = listFiles(new File(settings.getDestinationJARsPath()));
+        repositoryFiles.addAll(listFiles(new File(settings.getJreRepositoryPath())));
+        for (File file : repositoryFiles) {
+            File lockedFile = getLockedFile(file);
+            if (lockedFile != null) {
+                // a lock file is deleted with its file, unless the file doesn't exist
+                if (!lockedFile.exists() && isNotUsedSince(lockedFile, usedBefore)) {
+                    deleteUnused(lockedFile);
+                }
+            } else if (!isReferenced(file, referenced) && isNotUsedSince(file, usedBefore)) {
+                deleteUnused(file);
+            }
+        }
+    }
+
+    /**
+     * @return a file locked by the given lock file or null, when it is not a lock file
+     */
+    private File getLockedFile(File file) {
+        String path = file.getPath();
+        if (!path.endsWith(CacheUsageLock.SUFFIX)) {
+            return null;
+        }
+        return new File(path.substring(0, path.length() - CacheUsageLock.SUFFIX.length()));
+    }
+
+    private Set<File> withParents(Set<File> files) {
+        Set<File> result = new HashSet<File>();
+        for (File file : files) {
+            for (File f = file; f != null; f = f.getParentFile()) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    private List<File> listFiles(File directory) {
+        List<File> result = new ArrayList<File>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                result.add(file.getAbsoluteFile());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a pattern of directories, where version 1.0 unzipped a JRE of this application, or null
+     */
+    private Pattern getLegacyUnzipPattern() {
+        if (StringUtils.isBlank(settings.getTargetJavaURL())) {
+            return null;
+        }
+        return Pattern.compile(Pattern.quote(settings.getJreZipNameWithoutExtension()) + "_(\\d{12,})");
+    }
+
+    /**
+     * A temporary directory is shared with other applications, so only directories created by Ice Boar are
+     * recognised: JARs or a JRE of a run named with {@link GlobalSettings#RUN_FILE_PREFIX} and a JRE of this
+     * application unzipped by version 1.0.
+     */
+    private boolean isLeftByRun(File file, Pattern legacyUnzipPattern) {
+        if (!file.isDirectory()) {
+            return false;
+        }
+        if (RUN_FILE_PATTERN.matcher(file.getName()).matches()) {
+            return true;
+        }
+        return legacyUnzipPattern != null && legacyUnzipPattern.matcher(file.getName()).matches()
+                && new File(file, "bin").isDirectory();
+    }
+
+    private boolean isReferenced(File file, Set<File> referenced) {
+        if (referenced.contains(file)) {
+            return true;
+        }
+        String path = file.getPath();
+        int suffixStart = path.length() - CacheValidators.FILE_SUFFIX.length();
+        return path.endsWith(CacheValidators.FILE_SUFFIX)
+                && referenced.contains(new File(path.substring(0, suffixStart)));
+    }
+
+    private boolean isNotUsedSince(File file, long usedBefore) {
+        Matcher matcher = RUN_FILE_PATTERN.matcher(file.getName());
+        if (matcher.matches() && Long.parseLong(matcher.group(1)) >= usedBefore) {
+            return false;
+        }
+        for (File entry : getEntries(file)) {
+            if (CacheUsageLock.getLockFile(entry).lastModified() >= usedBefore) {
+                return false;
+            }
+        }
+        return !file.exists() || file.lastModified() < usedBefore;
+    }
+
+    /**
+     * @return files locked by running applications, which are deleted with the given file: JARs in a directory in
+     * the repository of JARs or the file itself
+     */
+    private List<File> getEntries(File file) {
+        List<File> entries = new ArrayList<File>();
+        if (file.isDirectory() && new File(settings.getDestinationJARsPath()).getAbsoluteFile()
+                                                                            .equals(file.getParentFile())) {
+            for (File child : listFiles(file)) {
+                if (!child.getName().endsWith(CacheValidators.FILE_SUFFIX)
+                        && !child.getName().endsWith(CacheUsageLock.SUFFIX)) {
+                    entries.add(child);
+                }
+            }
+        } else {
+            entries.add(file);
+        }
+        return entries;
+    }
+
+    /**
+     * @return exclusive locks of {@link #getEntries(File)} or null, when one of them is used by a running application
+     */
+    private List<CacheUsageLock> lockUnused(File file) {
+        List<CacheUsageLock> locks = new ArrayList<CacheUsageLock>();
+        for (File entry : getEntries(file)) {
+            CacheUsageLock lock = CacheUsageLock.tryLockUnused(entry);
+            if (lock == null) {
+                System.out.println("Not deleted from cache, used by a running application: " + entry);
+                release(locks);
+                return null;
+            }
+            locks.add(lock);
+        }
+        return locks;
+    }
+
+    private void release(List<CacheUsageLock> locks) {
+        for (CacheUsageLock lock : locks) {
+            lock.release();
+        }
+    }
+
+    private void deleteLeastRecentlyUsed(Map<File, List<StatusInfo>> statusesByFile,
+                                         Set<File> filesOfOtherApplications, long usedBefore) {
+        long sizeLimit = settings.getCacheSizeLimit() * MEGABYTE;
+        if (sizeLimit <= 0) {
+            return;
+        }
+        List<CachedFile> cachedFiles = new ArrayList<CachedFile>();
+        long cacheSize = 0;
+        for (Map.Entry<File, List<StatusInfo>> entry : statusesByFile.entrySet()) {
+            if (entry.getKey().exists()) {
+                CachedFile cachedFile = new CachedFile(entry.getKey(), entry.getValue());
+                cachedFiles.add(cachedFile);
+                cacheSize += cachedFile.size;
+            }
+        }
+        System.out.println("Cache size: " + cacheSize / MEGABYTE + " MB, limit: " + settings.getCacheSizeLimit()
+                + " MB");
+        Collections.sort(cachedFiles, new Comparator<CachedFile>() {
+            public int compare(CachedFile first, CachedFile second) {
+                return first.lastUsed < second.lastUsed ? -1 : (first.lastUsed == second.lastUsed ? 0 : 1);
+            }
+        });
+        for (CachedFile cachedFile : cachedFiles) {
+            if (cacheSize <= sizeLimit || cachedFile.lastUsed >= usedBefore) {
+                return;
+            }
+            List<CacheUsageLock> locks = lockUnused(cachedFile.file);
+            if (locks == null) {
+                continue;
+            }
+            List<StatusInfo> removed = localCacheStorage.removeAndSave(settings, cachedFile.statuses);
+            if (removed.size() == cachedFile.statuses.size()) {
+                if (filesOfOtherApplications.contains(cachedFile.file)) {
+                    System.out.println("Removed from cache, still used by another application: " + cachedFile.file);
+                    release(locks);
+                } else {
+                    delete(cachedFile.file, locks);
+                }
+                cacheSize -= cachedFile.size;
+            } else {
+                release(locks);
+            }
+        }
+    }
+
+    private void deleteUnused(File file) {
+        List<CacheUsageLock> locks = lockUnused(file);
+        if (locks != null) {
+            delete(file, locks);
+        }
+    }
+
+    /**
+     * @param locks locks of the file, they are released when it is deleted
+     */
+    private void delete(File file, List<CacheUsageLock> locks) {
+        System.out.println("Delete from cache: " + file);
+        if (file.isDirectory() && fileUtils.isInstallComplete(file)) {
+            try {
+                fileUtils.uninstallDirectory(file);
+            } catch (IOException e) {
+                System.out.println("Can't delete " + file + ": " + e.getMessage());
+            }
+        } else {
+            FileUtils.deleteQuietly(file);
+        }
+        FileUtils.deleteQuietly(CacheValidators.getValidatorsFile(file));
+        for (CacheUsageLock lock : locks) {
+            lock.releaseAndDelete();
+        }
+        File parent = file.getParentFile();
+        if (parent != null && new File(settings.getDestinationJARsPath()).getAbsoluteFile()
+                                                                         .equals(parent.getParentFile())) {
+            // a directory of a JAR content, it is deleted only when it is empty
+            parent.delete();
+        }
+    }
+
+    private static class CachedFile {
+
+        private final File file;
+        private final List<StatusInfo> statuses;
+        private final long size;
+        private final long lastUsed;
+
+        CachedFile(File file, List<StatusInfo> statuses) {
+            this.file = file;
+            this.statuses = statuses;
+            File validators = CacheValidators.getValidatorsFile(file);
+            this.size = FileUtils.sizeOf(file) + (validators.exists() ? validators.length() : 0);
+            long time = 0;
+            for (StatusInfo status : statuses) {
+                time = Math.max(time, status.getLastUsed());
+            }
+            // started by another application
+            time = Math.max(time, CacheUsageLock.getLockFile(file).lastModified());
+            this.lastUsed = time;
+        }
+    }
+}
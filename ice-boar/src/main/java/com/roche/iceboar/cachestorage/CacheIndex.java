@@ -0,0 +1,313 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.cachestorage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * A binary file with statuses of the cache. Each change is appended to the end of the file as a record, so a change
+ * doesn't rewrite the whole file, and the file is read by replaying all records into {@link CacheStatus}.
+ * <p>
+ * The file starts with a header: a magic number and a format version. Each record has a length, a content and a
+ * CRC32 of the content. A content is an operation ({@link #PUT} or {@link #REMOVE}), a status kind and a version
+ * (e.g. a URL) and for {@link #PUT} also a path, an optional hash and a time of the last use. A record broken by an
+ * interrupted write ends the reading, the file is then written again without broken records.
+ * <p>
+ * Many Ice Boar instances (e.g. started by a double click) use the same file, so all operations must be done holding
+ * a {@link #lock()}. The records replaced by newer ones are removed (the file is compacted) while reading, when they
+ * are the most of the file.
+ */
+class CacheIndex {
+
+    static final int MAGIC = 0x49424958;    // "IBIX"
+    static final int FORMAT_VERSION = 1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int HEADER_SIZE = 8;
+    // much more than any status needs, a bigger length means a broken record
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    // a file is compacted, when it has more records than this factor times statuses (plus a minimum)
+    private static final int COMPACTION_FACTOR = 4;
+    private static final int MIN_RECORDS_TO_COMPACT = 128;
+    // a file lock is held by a whole JVM, so threads of one JVM wait for each other here
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+
+    private final File file;
+
+    CacheIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return true when a file exists and starts with the header of this format
+     */
+    boolean exists() {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                return input.readInt() == MAGIC;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Locks the file against other threads and other processes. A lock is held on a separate file, because the file
+     * is replaced during compaction.
+     */
+    IndexLock lock() throws IOException {
+        File lockFile = new File(file.getPath() + ".lock");
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        JVM_LOCK.lock();
+        try {
+            FileChannel channel = new RandomAccessFile(lockFile, "rw").getChannel();
+            try {
+                return new IndexLock(channel, channel.lock());
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            JVM_LOCK.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads all records. A broken file is repaired and a file with many replaced records is compacted.
+     */
+    CacheStatus read() throws IOException {
+        CacheStatus cacheStatus = new CacheStatus();
+        boolean broken = false;
+        int records = 0;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() > FORMAT_VERSION) {
+                throw new IOException("Unknown format of " + file);
+            }
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!readRecord(input, length, cacheStatus)) {
+                    broken = true;
+                    break;
+                }
+                records++;
+            }
+        } finally {
+            input.close();
+        }
+        if (broken) {
+            System.out.println("Cache index " + file + " is broken, it is written again");
+            writeQuietly(cacheStatus);
+        } else if (records > COMPACTION_FACTOR * cacheStatus.getStatusInfos().size() + MIN_RECORDS_TO_COMPACT) {
+            System.out.println("Compact cache index " + file + ": " + records + " records");
+            writeQuietly(cacheStatus);
+        }
+        return cacheStatus;
+    }
+
+    private void writeQuietly(CacheStatus cacheStatus) {
+        try {
+            write(cacheStatus);
+        } catch (IOException e) {
+            // e.g. a file is read by another process on Windows, so it is done by the next read
+            System.out.println("Can't write " + file + ": " + e.getMessage());
+        }
+    }
+
+    private boolean readRecord(DataInputStream input, int length, CacheStatus cacheStatus) throws IOException {
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+            return false;
+        }
+        byte[] content = new byte[length];
+        try {
+            input.readFully(content);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if (input.readInt() != (int) crc.getValue()) {
+                return false;
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(content));
+        byte operation = record.readByte();
+        StatusInfo.Status status = toStatus(record.readUTF());
+        String version = record.readUTF();
+        if (status == null) {
+            // written by a newer version
+            return true;
+        }
+        if (operation == PUT) {
+            StatusInfo statusInfo = new StatusInfo(status, version, record.readUTF());
+            if (record.readBoolean()) {
+                statusInfo.setHash(record.readUTF());
+            }
+            statusInfo.setLastUsed(record.readLong());
+            cacheStatus.add(statusInfo);
+        } else if (operation == REMOVE) {
+            cacheStatus.remove(new StatusInfo(status, version, null));
+        }
+        return true;
+    }
+
+    private StatusInfo.Status toStatus(String name) {
+        for (StatusInfo.Status status : StatusInfo.Status.values()) {
+            if (status.name().equals(name)) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    void appendPut(StatusInfo statusInfo) throws IOException {
+        append(toRecord(PUT, statusInfo));
+    }
+
+    void appendRemove(StatusInfo statusInfo) throws IOException {
+        append(toRecord(REMOVE, statusInfo));
+    }
+
+    /**
+     * Appends a record to an existing file (see {@link #write(CacheStatus)}).
+     */
+    private void append(byte[] record) throws IOException {
+        writeFile(record, true);
+    }
+
+    /**
+     * Writes a file with all statuses again (e.g. a new file or a migration from the old format). A new content is
+     * written to a temporary file, which replaces the file, so readers never see a half written file.
+     */
+    void write(CacheStatus cacheStatus) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(bytes));
+        for (StatusInfo statusInfo : cacheStatus.getStatusInfos()) {
+            bytes.write(toRecord(PUT, statusInfo));
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        OutputStream output = new FileOutputStream(temporaryFile);
+        try {
+            output.write(bytes.toByteArray());
+        } finally {
+            output.close();
+        }
+        if (!temporaryFile.renameTo(file) && !(file.delete() && temporaryFile.renameTo(file))) {
+            throw new IOException("Can't replace " + file);
+        }
+    }
+
+    private void writeHeader(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+    }
+
+    private void writeFile(byte[] bytes, boolean append) throws IOException {
+        OutputStream output = new FileOutputStream(file, append);
+        try {
+            // a single write, so a record is not mixed with a record appended by another run
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    private byte[] toRecord(byte operation, StatusInfo statusInfo) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream contentOutput = new DataOutputStream(content);
+        contentOutput.writeByte(operation);
+        contentOutput.writeUTF(statusInfo.getStatus().name());
+        contentOutput.writeUTF(statusInfo.getVersion());
+        if (operation == PUT) {
+            contentOutput.writeUTF(statusInfo.getPath());
+            contentOutput.writeBoolean(statusInfo.getHash() != null);
+            if (statusInfo.getHash() != null) {
+                contentOutput.writeUTF(statusInfo.getHash());
+            }
+            contentOutput.writeLong(statusInfo.getLastUsed());
+        }
+        contentOutput.flush();
+        CRC32 crc = new CRC32();
+        crc.update(content.toByteArray());
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOutput = new DataOutputStream(record);
+        recordOutput.writeInt(content.size());
+        content.writeTo(recordOutput);
+        recordOutput.writeInt((int) crc.getValue());
+        recordOutput.flush();
+        return record.toByteArray();
+    }
+
+    /**
+     * A lock of a file held by this thread, see {@link #lock()}.
+     */
+    static class IndexLock {
+
+        private final FileChannel channel;
+        private final FileLock fileLock;
+
+        private IndexLock(FileChannel channel, FileLock fileLock) {
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+
+        void release() {
+            try {
+                fileLock.release();
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                JVM_LOCK.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.cachestorage;
+
+import com.roche.iceboar.downloader.CacheValidators;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves files of an application cached by older versions in a temporary directory to a persistent cache directory
+ * of the application (see {@link GlobalSettings#JNLP_CACHE_DIRECTORY}). The temporary directory is shared by all
+ * applications, so only files of the given application are moved and removed from the old cache. Other applications
+ * move their files on their first start.
+ */
+public class CacheMigration {
+
+    private final LocalCacheStorage localCacheStorage;
+
+    public CacheMigration(LocalCacheStorage localCacheStorage) {
+        this.localCacheStorage = localCacheStorage;
+    }
+
+    /**
+     * Files keep their paths relative to the cache directory. Files of repositories of JARs and JREs (e.g.
+     * <tt>IceBoar_jars/hash/file.jar</tt>) are moved to the root directory, where they are shared by all applications.
+     * When another application has moved the same file already, it is used. Nothing is done, when the new cache exists
+     * already.
+     *
+     * @param versions versions of statuses of the application in the old cache (a JRE URL, JAR URLs and a target Java
+     *                 version, which was a version of a JRE in version 1.0) mapped to versions in the new cache (a JRE
+     *                 URL, JAR URLs)
+     */
+    public void migrate(File oldDirectory, File newDirectory, File rootDirectory, Map<String, String> versions) {
+        oldDirectory = oldDirectory.getAbsoluteFile();
+        newDirectory = newDirectory.getAbsoluteFile();
+        rootDirectory = rootDirectory.getAbsoluteFile();
+        File oldCacheFile = new File(oldDirectory, LocalCacheStorage.CACHE_FILE_NAME);
+        CacheIndex newIndex = new CacheIndex(new File(newDirectory, LocalCacheStorage.CACHE_FILE_NAME));
+        if (oldDirectory.equals(newDirectory) || newIndex.exists() || (!oldCacheFile.exists()
+                && !new File(oldDirectory, LocalCacheStorage.LEGACY_CACHE_FILE_NAME).exists())) {
+            return;
+        }
+        try {
+            FileUtils.forceMkdir(newDirectory);
+            CacheIndex.IndexLock lock = newIndex.lock();
+            try {
+                if (!newIndex.exists()) {
+                    migrate(oldCacheFile, oldDirectory, newDirectory, rootDirectory, newIndex, versions);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            System.out.println("Can't move cached files from " + oldDirectory + " to " + newDirectory + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private void migrate(File oldCacheFile, File oldDirectory, File newDirectory, File rootDirectory,
+                         CacheIndex newIndex, Map<String, String> versions) throws IOException {
+        CacheStatus oldCacheStatus = localCacheStorage.loadCacheStatus(oldCacheFile.getPath());
+        CacheStatus newCacheStatus = new CacheStatus();
+        List<StatusInfo> moved = new ArrayList<StatusInfo>();
+        for (StatusInfo status : oldCacheStatus.getStatusInfos()) {
+            String version = versions.get(status.getVersion());
+            if (version != null) {
+                StatusInfo movedStatus = move(status, version, oldDirectory, newDirectory, rootDirectory);
+                if (movedStatus != null) {
+                    newCacheStatus.add(movedStatus);
+                    moved.add(status);
+                }
+            }
+        }
+        newIndex.write(newCacheStatus);
+        localCacheStorage.removeAndSave(oldCacheFile.getPath(), moved);
+        System.out.println("Moved " + moved.size() + " cached files from " + oldDirectory + " to " + newDirectory);
+    }
+
+    /**
+     * @return a status of a moved file or null, when a file doesn't exist or it is not in the old directory
+     */
+    private StatusInfo move(StatusInfo status, String version, File oldDirectory, File newDirectory,
+                            File rootDirectory) throws IOException {
+        if (StringUtils.isBlank(status.getPath())) {
+            return null;
+        }
+        File file = new File(status.getPath()).getAbsoluteFile();
+        String oldPrefix = oldDirectory.getPath() + File.separator;
+        if (!file.getPath().startsWith(oldPrefix)) {
+            return null;
+        }
+        String relativePath = file.getPath().substring(oldPrefix.length());
+        boolean isInRepository = isInRepository(relativePath);
+        File target = new File(isInRepository ? rootDirectory : newDirectory, relativePath);
+        if (isInRepository && target.exists()) {
+            // content addressed, so it is the same file
+            FileUtils.deleteQuietly(file);
+            FileUtils.deleteQuietly(CacheValidators.getValidatorsFile(file));
+        } else if (file.exists()) {
+            moveReplacing(file, target);
+            File validators = CacheValidators.getValidatorsFile(file);
+            if (validators.exists()) {
+                moveReplacing(validators, CacheValidators.getValidatorsFile(target));
+            }
+        } else if (!target.exists()) {
+            return null;
+        }
+        StatusInfo movedStatus = new StatusInfo(status.getStatus(), version, target.getPath());
+        movedStatus.setHash(status.getHash());
+        movedStatus.setLastUsed(status.getLastUsed());
+        return movedStatus;
+    }
+
+    private boolean isInRepository(String relativePath) {
+        return relativePath.startsWith(GlobalSettings.JARS_REPOSITORY_NAME + File.separator)
+                || relativePath.startsWith(GlobalSettings.JRES_REPOSITORY_NAME + File.separator);
+    }
+
+    /**
+     * A temporary directory is often on another file system, so files are copied and deleted then. A copy doesn't keep
+     * executable flags (e.g. of <tt>bin/java</tt> in an unzipped JRE), so they are set again.
+     */
+    private void moveReplacing(File file, File target) throws IOException {
+        FileUtils.deleteQuietly(target);
+        if (!file.isDirectory()) {
+            FileUtils.moveFile(file, target);
+            return;
+        }
+        List<String> executables = new ArrayList<String>();
+        for (File child : FileUtils.listFiles(file, null, true)) {
+            if (child.canExecute()) {
+                executables.add(child.getPath().substring(file.getPath().length() + 1));
+            }
+        }
+        FileUtils.moveDirectory(file, target);
+        for (String executable : executables) {
+            new File(target, executable).setExecutable(true, false);
+        }
+    }
+}
@@ -20,47 +20,109 @@ package com.roche.iceboar.cachestorage;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
- * Contains information about cache records read from file from disk.
+ * Contains information about cache records read from file from disk. It is read by download threads, therefore all
+ * methods are synchronized. Statuses are indexed by a kind and a version, so a lookup doesn't depend on a number of
+ * cached files.
+ * <p>
+ * It is stored in a {@link CacheIndex}. The serialized form (a set of statuses) is kept only to read cache files
+ * stored by older versions.
  */
 public class CacheStatus implements Serializable {
 
     private static final long serialVersionUID = 3338720274125187874L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("statusSet", Set.class)
+    };
 
-    private Set<StatusInfo> statusSet = new HashSet<StatusInfo>();
+    private transient Map<String, StatusInfo> statuses = new HashMap<String, StatusInfo>();
 
     public CacheStatus() {
     }
 
-    public void add(StatusInfo newStatus) {
-        // remove old a store with maybe new path
-        statusSet.remove(newStatus);
-        statusSet.add(newStatus);
+    public synchronized void add(StatusInfo newStatus) {
+        // replaces an old status with maybe a new path
+        statuses.put(getKey(newStatus.getStatus(), newStatus.getVersion()), newStatus);
     }
 
-    public StatusInfo getJreDownloadedStatusInfo(String javaVersion) {
-        return getStatusInfoForVersionAndStatus(javaVersion, StatusInfo.Status.JRE_DOWNLOADED);
+    synchronized void remove(StatusInfo status) {
+        statuses.remove(getKey(status.getStatus(), status.getVersion()));
     }
 
-    public StatusInfo getJreUnzippedStatusInfo(String javaVersion) {
-        return getStatusInfoForVersionAndStatus(javaVersion, StatusInfo.Status.JRE_UNZIPPED);
+    /**
+     * Removes a status, unless it was used again (e.g. by another run) after the given copy was read.
+     *
+     * @return true when the status was removed
+     */
+    public synchronized boolean removeIfNotUsedSince(StatusInfo status) {
+        StatusInfo current = getStatusInfoForVersionAndStatus(status.getVersion(), status.getStatus());
+        if (current == null || current.getLastUsed() > status.getLastUsed()
+                || !StringUtils.equals(current.getPath(), status.getPath())) {
+            return false;
+        }
+        remove(current);
+        return true;
+    }
+
+    public synchronized List<StatusInfo> getStatusInfos() {
+        return new ArrayList<StatusInfo>(statuses.values());
+    }
+
+    /**
+     * @param jreUrl a URL of a JRE ZIP file, so different JREs with the same Java version don't replace each other
+     */
+    public StatusInfo getJreDownloadedStatusInfo(String jreUrl) {
+        return getStatusInfoForVersionAndStatus(jreUrl, StatusInfo.Status.JRE_DOWNLOADED);
+    }
+
+    public StatusInfo getJreUnzippedStatusInfo(String jreUrl) {
+        return getStatusInfoForVersionAndStatus(jreUrl, StatusInfo.Status.JRE_UNZIPPED);
     }
 
-    private StatusInfo getStatusInfoForVersionAndStatus(String javaVersion, StatusInfo.Status status) {
-        for (StatusInfo s : statusSet) {
-            if (s.getVersion().equals(javaVersion) && s.getStatus().equals(status)) {
-                return s;
+    public StatusInfo getJarDownloadedStatusInfo(String jarUrl) {
+        return getStatusInfoForVersionAndStatus(jarUrl, StatusInfo.Status.JAR_DOWNLOADED);
+    }
+
+    private synchronized StatusInfo getStatusInfoForVersionAndStatus(String version, StatusInfo.Status status) {
+        return statuses.get(getKey(status, version));
+    }
+
+    private static String getKey(StatusInfo.Status status, String version) {
+        return status + " " + version;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = input.readFields();
+        statuses = new HashMap<String, StatusInfo>();
+        Set<StatusInfo> statusSet = (Set<StatusInfo>) fields.get("statusSet", null);
+        if (statusSet != null) {
+            for (StatusInfo status : statusSet) {
+                add(status);
             }
         }
-        return null;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream output) throws IOException {
+        ObjectOutputStream.PutField fields = output.putFields();
+        fields.put("statusSet", new HashSet<StatusInfo>(statuses.values()));
+        output.writeFields();
     }
 
     @Override
-    public String toString() {
-        return StringUtils.join(statusSet, "\n");
+    public synchronized String toString() {
+        return StringUtils.join(statuses.values(), "\n");
     }
 }
@@ -0,0 +1,150 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.cachestorage;
+
+import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A lock of a cached file (e.g. a JAR or an installed JRE) used by a running application. A run holds shared locks
+ * of files it uses until its JVM exits, so the {@link CacheGarbageCollector} deletes only files, which it can lock
+ * exclusively.
+ * <p>
+ * A lock is held on a separate file <tt>&lt;file&gt;.inuse</tt>. It is also a marker of the last start of an
+ * application using the file (a time of its last modification), because Ice Boar can be closed while the application
+ * still runs (see {@link GlobalSettings#JNLP_CLOSE_ON_END}).
+ */
+public class CacheUsageLock {
+
+    public static final String SUFFIX = ".inuse";
+
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+    // shared locks held by this JVM, they are released when it exits
+    private static final Map<File, FileLock> HELD_LOCKS = new HashMap<File, FileLock>();
+
+    private final File lockFile;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final boolean created;
+
+    private CacheUsageLock(File lockFile, FileChannel channel, FileLock lock, boolean created) {
+        this.lockFile = lockFile;
+        this.channel = channel;
+        this.lock = lock;
+        this.created = created;
+    }
+
+    public static File getLockFile(File file) {
+        return new File(file.getAbsolutePath() + SUFFIX);
+    }
+
+    /**
+     * Marks files as used by this run. A file, which can't be locked (e.g. in a read-only shared cache), is only
+     * reported. Files, which don't exist, are skipped.
+     */
+    public static synchronized void lockShared(Collection<File> files) {
+        for (File file : files) {
+            File lockFile = getLockFile(file);
+            if (!file.exists() || HELD_LOCKS.containsKey(lockFile)) {
+                continue;
+            }
+            try {
+                FileChannel channel = new RandomAccessFile(lockFile, "rw").getChannel();
+                try {
+                    // waits, while the file is being deleted
+                    HELD_LOCKS.put(lockFile, channel.lock(LOCK_POSITION, 1, true));
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                } catch (OverlappingFileLockException e) {
+                    channel.close();
+                    throw new IOException("it is being deleted");
+                }
+                lockFile.setLastModified(System.currentTimeMillis());
+                if (!file.exists()) {
+                    System.out.println("A file used by the application was deleted from cache: " + file);
+                }
+            } catch (IOException e) {
+                System.out.println("Can't lock " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return an exclusive lock of a file or null, when it is used by a running application
+     */
+    static synchronized CacheUsageLock tryLockUnused(File file) {
+        File lockFile = getLockFile(file);
+        boolean created = !lockFile.exists();
+        try {
+            FileChannel channel = new RandomAccessFile(lockFile, "rw").getChannel();
+            FileLock lock = null;
+            try {
+                lock = channel.tryLock(LOCK_POSITION, 1, false);
+            } catch (OverlappingFileLockException e) {
+                // used by this run
+            } finally {
+                if (lock == null) {
+                    channel.close();
+                }
+            }
+            return lock == null ? null : new CacheUsageLock(lockFile, channel, lock, created);
+        } catch (IOException e) {
+            System.out.println("Can't lock " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Releases the lock. Its file is kept with a time of the last use, unless it was created by this lock.
+     */
+    void release() {
+        close();
+        if (created) {
+            FileUtils.deleteQuietly(lockFile);
+        }
+    }
+
+    /**
+     * Releases the lock and deletes its file, when the locked file is deleted.
+     */
+    void releaseAndDelete() {
+        close();
+        FileUtils.deleteQuietly(lockFile);
+    }
+
+    private void close() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -22,28 +22,29 @@ import com.roche.iceboar.progressevent.*;
 import com.roche.iceboar.settings.GlobalSettings;
 
 /**
- * Catches 2 events (when JRE is downloaded and when JRE is unzipped) and stores information about it in local cache
- * file.
+ * Catches events when JRE is downloaded, when JRE is unzipped and when a JAR is downloaded and stores information
+ * about it in local cache file.
  */
 public class LocalCacheObserver implements ProgressEventObserver {
 
     private GlobalSettings settings;
-    private ProgressEventFactory progressEventFactory;
     private LocalCacheStorage localCacheStorage;
 
-    public LocalCacheObserver(GlobalSettings settings, ProgressEventFactory progressEventFactory,
-                              LocalCacheStorage localCacheStorage) {
+    public LocalCacheObserver(GlobalSettings settings, LocalCacheStorage localCacheStorage) {
         this.settings = settings;
-        this.progressEventFactory = progressEventFactory;
         this.localCacheStorage = localCacheStorage;
     }
 
     public void update(ProgressEvent event) {
-        if (event.equals(progressEventFactory.getJREDownloadedEvent())) {
+        if (event.getKind() == ProgressEventKind.JRE_DOWNLOADED) {
             localCacheStorage.addAndSaveDownloadedJreInCache(settings, (JREDownloadedDetailInfo) event.getDetailInfo());
         }
-        if (event.equals(progressEventFactory.getJREUnzippedEvent())) {
+        if (event.getKind() == ProgressEventKind.JRE_UNZIPPED) {
             localCacheStorage.addAndSaveUnzippedJreInCache(settings, (JREUnzippedDetailInfo) event.getDetailInfo());
         }
+        if (event.getKind() == ProgressEventKind.JAR_DOWNLOAD_FINISH) {
+            localCacheStorage.addAndSaveDownloadedJarInCache(settings,
+                    (JarDownloadedDetailInfo) event.getDetailInfo());
+        }
     }
 }
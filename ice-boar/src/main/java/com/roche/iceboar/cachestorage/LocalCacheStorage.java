@@ -20,113 +20,176 @@ package com.roche.iceboar.cachestorage;
 
 import com.roche.iceboar.progressevent.JREDownloadedDetailInfo;
 import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
 import com.roche.iceboar.settings.GlobalSettings;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.*;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Provide operations for cache like storing and reading from them.
  */
 public class LocalCacheStorage {
 
+    /**
+     * A name of a {@link CacheIndex} file in a cache directory.
+     */
+    public static final String CACHE_FILE_NAME = ".IceBoar.index";
+
+    /**
+     * A name of a cache file stored by older versions.
+     */
+    public static final String LEGACY_CACHE_FILE_NAME = ".IceBoar.cache";
+
     public LocalCacheStorage() {
     }
 
+    /**
+     * Reads statuses from a {@link CacheIndex}. Until the index is written for the first time, statuses are read from
+     * a cache file stored by older versions (Java serialization) - the given file or {@value #LEGACY_CACHE_FILE_NAME}
+     * in the same directory.
+     */
     public CacheStatus loadCacheStatus(String cachePath) {
-        InputStream file = null;
-        InputStream buffer = null;
-        ObjectInput input = null;
+        CacheIndex index = new CacheIndex(new File(cachePath).getAbsoluteFile());
         try {
-            file = new FileInputStream(cachePath);
-            buffer = new BufferedInputStream(file);
-            input = new ObjectInputStream(buffer);
-
-            CacheStatus cacheStatus = (CacheStatus) input.readObject();
-            return cacheStatus;
-        } catch (Exception e) {
-            System.out.println("Can't open file with cache settings. Expected file here: " + cachePath);
-        } finally {
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (buffer != null) {
-                try {
-                    buffer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (file != null) {
+            if (index.exists()) {
+                CacheIndex.IndexLock lock = index.lock();
                 try {
-                    file.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    return index.read();
+                } finally {
+                    lock.release();
                 }
             }
+            return loadUnlocked(index, cachePath);
+        } catch (Exception e) {
+            System.out.println("Can't open file with cache settings. Expected file here: " + cachePath);
+        }
+        return new CacheStatus();
+    }
+
+    private CacheStatus loadUnlocked(CacheIndex index, String cachePath) throws IOException, ClassNotFoundException {
+        if (index.exists()) {
+            return index.read();
+        }
+        File file = new File(cachePath).getAbsoluteFile();
+        File legacyFile = file.exists() ? file : new File(file.getParentFile(), LEGACY_CACHE_FILE_NAME);
+        if (legacyFile.exists()) {
+            return loadLegacyCacheStatus(legacyFile);
         }
         return new CacheStatus();
     }
 
+    private CacheStatus loadLegacyCacheStatus(File legacyFile) throws IOException, ClassNotFoundException {
+        ObjectInput input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyFile)));
+        try {
+            return (CacheStatus) input.readObject();
+        } finally {
+            input.close();
+        }
+    }
+
     public void addAndSaveDownloadedJreInCache(GlobalSettings settings, JREDownloadedDetailInfo detailInfo) {
         if(StringUtils.isNotBlank(detailInfo.getPathToJreZipFile())) {
-            CacheStatus cacheStatus = loadCacheStatus(settings.getCachePath());
-            StatusInfo status = new StatusInfo(StatusInfo.Status.JRE_DOWNLOADED, settings.getTargetJavaVersion(),
+            StatusInfo status = new StatusInfo(StatusInfo.Status.JRE_DOWNLOADED, settings.getTargetJavaURL(),
                     detailInfo.getPathToJreZipFile());
-            cacheStatus.add(status);
-            store(cacheStatus, settings.getCachePath());
+            addAndSave(settings, status);
         }
     }
 
     public void addAndSaveUnzippedJreInCache(GlobalSettings settings, JREUnzippedDetailInfo detailInfo) {
         if(StringUtils.isNotBlank(detailInfo.getPathToJreUnzipDir())) {
-            CacheStatus cacheStatus = loadCacheStatus(settings.getCachePath());
-            StatusInfo status = new StatusInfo(StatusInfo.Status.JRE_UNZIPPED, settings.getTargetJavaVersion(),
+            StatusInfo status = new StatusInfo(StatusInfo.Status.JRE_UNZIPPED, settings.getTargetJavaURL(),
                     detailInfo.getPathToJreUnzipDir());
-            cacheStatus.add(status);
-            store(cacheStatus, settings.getCachePath());
+            addAndSave(settings, status);
         }
     }
 
-    private void store(CacheStatus cacheStatus, String cachePath) {
-        OutputStream file = null;
-        OutputStream buffer = null;
-        ObjectOutput output = null;
+    public void addAndSaveDownloadedJarInCache(GlobalSettings settings, JarDownloadedDetailInfo detailInfo) {
+        if(StringUtils.isNotBlank(detailInfo.getPathToJarFile())) {
+            StatusInfo status = new StatusInfo(StatusInfo.Status.JAR_DOWNLOADED, detailInfo.getJarUrl(),
+                    detailInfo.getPathToJarFile());
+            status.setHash(detailInfo.getHash());
+            addAndSave(settings, status);
+        }
+    }
+
+    /**
+     * Stores a new status in the cache file and in the {@link CacheStatus} read on start up, so the current run
+     * (e.g. building a class path) sees it too. A time of the last use is set to now. Only the new status is appended
+     * to the file, holding a lock, so statuses stored by other Ice Boar instances at the same time are not lost.
+     */
+    private void addAndSave(GlobalSettings settings, StatusInfo status) {
+        status.setLastUsed(System.currentTimeMillis());
         try {
-            //use buffering
-            file = new FileOutputStream(cachePath);
-            buffer = new BufferedOutputStream(file);
-            output = new ObjectOutputStream(buffer);
-            output.writeObject(cacheStatus);
+            CacheIndex index = new CacheIndex(new File(settings.getCachePath()).getAbsoluteFile());
+            CacheIndex.IndexLock lock = index.lock();
+            try {
+                createIfNotExists(index, settings.getCachePath());
+                index.appendPut(status);
+            } finally {
+                lock.release();
+            }
         } catch (Exception e) {
             e.printStackTrace();
-        } finally {
-            if (output != null) {
-                try {
-                    output.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (buffer != null) {
-                try {
-                    buffer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (file != null) {
-                try {
-                    file.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+        }
+        if (settings.getCacheStatus() != null) {
+            settings.getCacheStatus().add(status);
+        }
+    }
+
+    /**
+     * Removes statuses of files, which will be deleted from the cache (see {@link CacheGarbageCollector}). Statuses
+     * used again by another run in the meantime are kept.
+     *
+     * @return removed statuses, only their files can be deleted
+     */
+    public List<StatusInfo> removeAndSave(GlobalSettings settings, Collection<StatusInfo> statuses) {
+        return removeAndSave(settings.getCachePath(), statuses);
+    }
+
+    /**
+     * The same as {@link #removeAndSave(GlobalSettings, Collection)}, but for a cache file of another directory (see
+     * {@link CacheMigration}).
+     */
+    public List<StatusInfo> removeAndSave(String cachePath, Collection<StatusInfo> statuses) {
+        List<StatusInfo> removed = new ArrayList<StatusInfo>();
+        try {
+            CacheIndex index = new CacheIndex(new File(cachePath).getAbsoluteFile());
+            CacheIndex.IndexLock lock = index.lock();
+            try {
+                createIfNotExists(index, cachePath);
+                CacheStatus cacheStatus = index.read();
+                for (StatusInfo status : statuses) {
+                    if (cacheStatus.removeIfNotUsedSince(status)) {
+                        index.appendRemove(status);
+                        removed.add(status);
+                    }
                 }
+            } finally {
+                lock.release();
             }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
+        return removed;
     }
 
+    /**
+     * Writes an index with statuses migrated from an old cache file, when it doesn't exist yet. It must be called
+     * holding a lock of the index.
+     */
+    private void createIfNotExists(CacheIndex index, String cachePath) throws IOException, ClassNotFoundException {
+        if (!index.exists()) {
+            index.write(loadUnlocked(index, cachePath));
+            System.out.println("Cache index created: " + cachePath);
+        }
+    }
 }
@@ -26,6 +26,10 @@ import java.io.Serializable;
 /**
  * Contains information about downloaded / unzipped JRE: where a given version is downloaded / unzipped.
  * This class can be serialized and stored in a file (via {@linkplain CacheStatus}) to be run in the future by IceBoar.
+ * <p>
+ * For downloaded JAR files the version is a JAR URL and the hash is a SHA-256 of the file content. For JRE the
+ * version is a URL of the JRE ZIP file (caches stored by Ice Boar 1.0 use a Java version). A time of the last use is
+ * updated by each run, which uses a file (see {@link CacheGarbageCollector}).
  */
 public class StatusInfo implements Serializable {
 
@@ -34,6 +38,8 @@ public class StatusInfo implements Serializable {
     private Status status;
     private String version;
     private String path;
+    private String hash;
+    private long lastUsed;
 
     public StatusInfo() {
     }
@@ -68,6 +74,25 @@ public class StatusInfo implements Serializable {
         this.path = path;
     }
 
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * @return a time in milliseconds or 0, when it is not known (a cache stored by older versions)
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public void setLastUsed(long lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -100,10 +125,12 @@ public class StatusInfo implements Serializable {
                 "status='" + status + '\'' +
                 ", version='" + version + '\'' +
                 ", path='" + path + '\'' +
+                ", hash='" + hash + '\'' +
+                ", lastUsed=" + lastUsed +
                 '}';
     }
 
     enum Status {
-        JRE_DOWNLOADED, JRE_UNZIPPED;
+        JRE_DOWNLOADED, JRE_UNZIPPED, JAR_DOWNLOADED;
     }
 }
@@ -0,0 +1,196 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP cache validators (<tt>ETag</tt>, <tt>Last-Modified</tt> and a freshness time from <tt>Cache-Control:
+ * max-age</tt> or <tt>Expires</tt>) of a downloaded file. They are stored next to the file (with
+ * {@value #FILE_SUFFIX} suffix) and used to revalidate the file by a conditional request on the next run. A SHA-256
+ * digest of the file, calculated during the download, is stored together with them, so the file is not read again to
+ * verify it.
+ */
+public class CacheValidators {
+
+    public static final String FILE_SUFFIX = ".validators";
+
+    private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String EXPIRES = "expires";
+    private static final String SHA256 = "sha256";
+
+    private final String eTag;
+    private final String lastModified;
+    private final long expires;
+    private final String sha256;
+
+    public CacheValidators(String eTag, String lastModified, long expires) {
+        this(eTag, lastModified, expires, null);
+    }
+
+    public CacheValidators(String eTag, String lastModified, long expires, String sha256) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.expires = expires;
+        this.sha256 = sha256;
+    }
+
+    /**
+     * Reads validators from response headers. When a server does not send a validator (e.g. in 304 response), it is
+     * taken from previous validators. A digest is taken from previous validators, because it is not changed by 304
+     * response.
+     */
+    public static CacheValidators fromResponse(URLConnection connection, CacheValidators previous, long now) {
+        String eTag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        String sha256 = null;
+        if (previous != null) {
+            eTag = StringUtils.defaultIfBlank(eTag, previous.eTag);
+            lastModified = StringUtils.defaultIfBlank(lastModified, previous.lastModified);
+            sha256 = previous.sha256;
+        }
+        return new CacheValidators(eTag, lastModified, readExpires(connection, now), sha256);
+    }
+
+    private static long readExpires(URLConnection connection, long now) {
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            if (cacheControl.contains("no-cache") || cacheControl.contains("no-store")) {
+                return 0;
+            }
+            Matcher matcher = MAX_AGE_PATTERN.matcher(cacheControl);
+            if (matcher.find()) {
+                return now + Long.parseLong(matcher.group(1)) * 1000;
+            }
+        }
+        return connection.getExpiration();
+    }
+
+    public static File getValidatorsFile(File file) {
+        return new File(file.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * @return validators stored next to a given file or null, when they are not available
+     */
+    public static CacheValidators read(File file) {
+        File validatorsFile = getValidatorsFile(file);
+        if (!validatorsFile.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream input = new FileInputStream(validatorsFile);
+            try {
+                properties.load(input);
+            } finally {
+                input.close();
+            }
+            return new CacheValidators(properties.getProperty(ETAG), properties.getProperty(LAST_MODIFIED),
+                    Long.parseLong(properties.getProperty(EXPIRES, "0")), properties.getProperty(SHA256));
+        } catch (Exception e) {
+            System.out.println("Can't read cache validators: " + validatorsFile + " " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(File file) throws IOException {
+        Properties properties = new Properties();
+        if (eTag != null) {
+            properties.setProperty(ETAG, eTag);
+        }
+        if (lastModified != null) {
+            properties.setProperty(LAST_MODIFIED, lastModified);
+        }
+        properties.setProperty(EXPIRES, String.valueOf(expires));
+        if (sha256 != null) {
+            properties.setProperty(SHA256, sha256);
+        }
+        OutputStream output = new FileOutputStream(getValidatorsFile(file));
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+    }
+
+    public boolean isFresh(long now) {
+        return now < expires;
+    }
+
+    public boolean canRevalidate() {
+        return eTag != null || lastModified != null;
+    }
+
+    public void addConditionalHeaders(URLConnection connection) {
+        if (eTag != null) {
+            connection.setRequestProperty("If-None-Match", eTag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * @return a value for <tt>If-Range</tt> header or null when a content can't be validated (a weak ETag can't be
+     * used in <tt>If-Range</tt>)
+     */
+    public String getIfRangeValue() {
+        if (eTag != null && !eTag.startsWith("W/")) {
+            return eTag;
+        }
+        return lastModified;
+    }
+
+    public CacheValidators withSha256(String sha256) {
+        return new CacheValidators(eTag, lastModified, expires, sha256);
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * @return a SHA-256 digest (hex) of a downloaded file or null, when it was not calculated
+     */
+    public String getSha256() {
+        return sha256;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import com.roche.iceboar.cachestorage.StatusInfo;
+import com.roche.iceboar.progressevent.JREDownloadedDetailInfo;
+import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventKind;
+import com.roche.iceboar.progressevent.ProgressEventObserver;
+import com.roche.iceboar.progressevent.ProgressEventQueue;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A complete version of the target application in the cache: all JARs and an installed JRE (when the application runs
+ * on a target JVM). When it is found, this observer is used instead of {@link JREDownloader} and {@link JarDownloader}
+ * and it answers their events at once with files from the cache, so the application is started without any request
+ * (see {@link GlobalSettings#JNLP_UPDATE_POLICY}). Files with an expected SHA-256 digest are used only when cached
+ * files have the same digest.
+ */
+public class CachedVersion implements ProgressEventObserver {
+
+    private final GlobalSettings settings;
+    private final FileUtilsFacade fileUtils;
+    private final ProgressEventFactory progressEventFactory;
+    private final ProgressEventQueue progressEventQueue;
+    private final Map<String, StatusInfo> jars = new HashMap<String, StatusInfo>();
+    private String jrePath;
+
+    public CachedVersion(GlobalSettings settings, FileUtilsFacade fileUtils, ProgressEventFactory progressEventFactory,
+                         ProgressEventQueue progressEventQueue) {
+        this.settings = settings;
+        this.fileUtils = fileUtils;
+        this.progressEventFactory = progressEventFactory;
+        this.progressEventQueue = progressEventQueue;
+    }
+
+    /**
+     * @return true when all files needed to start the application are in the cache
+     */
+    public boolean isComplete() {
+        if (settings.runOnTargetJVM()) {
+            jrePath = findJre();
+            if (jrePath == null) {
+                return false;
+            }
+        }
+        for (String jarUrl : settings.getJarURLs()) {
+            StatusInfo status = findJar(jarUrl);
+            if (status == null) {
+                System.out.println("Not found in cache: " + jarUrl);
+                return false;
+            }
+            jars.put(jarUrl, status);
+        }
+        return true;
+    }
+
+    private String findJre() {
+        String expectedSha256 = settings.getTargetJavaSha256();
+        if (expectedSha256 != null) {
+            String sharedPath = settings.getSharedJreInstallPath(expectedSha256.toLowerCase());
+            if (sharedPath != null && fileUtils.isInstallValid(new File(sharedPath))) {
+                return sharedPath;
+            }
+        }
+        StatusInfo status = settings.getCacheStatus().getJreUnzippedStatusInfo(settings.getTargetJavaURL());
+        if (status == null || StringUtils.isBlank(status.getPath())
+                || !fileUtils.isInstallValid(new File(status.getPath()))) {
+            System.out.println("Not found in cache: " + settings.getTargetJavaURL());
+            return null;
+        }
+        // an installed JRE is named by a SHA-256 digest of its ZIP file
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(new File(status.getPath()).getName())) {
+            System.out.println("Cached JRE has another SHA-256 digest: " + status.getPath());
+            return null;
+        }
+        return status.getPath();
+    }
+
+    private StatusInfo findJar(String jarUrl) {
+        StatusInfo status = settings.getCacheStatus().getJarDownloadedStatusInfo(jarUrl);
+        if (status == null || !fileUtils.checkFileExist(status.getPath())) {
+            return null;
+        }
+        String expectedSha256 = settings.getExpectedSha256ForJar(jarUrl);
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(status.getHash())) {
+            return null;
+        }
+        return status;
+    }
+
+    public void update(ProgressEvent event) {
+        if (event.getKind() == ProgressEventKind.JRE_DOWNLOAD) {
+            ProgressEvent jreDownloadedEvent = progressEventFactory.getJREDownloadedEvent();
+            jreDownloadedEvent.addDetailInfo(new JREDownloadedDetailInfo());
+            progressEventQueue.update(jreDownloadedEvent);
+        } else if (event.getKind() == ProgressEventKind.JRE_UNZIP) {
+            ProgressEvent jreUnzippedEvent = progressEventFactory.getJREUnzippedEvent();
+            JREUnzippedDetailInfo detailInfo = new JREUnzippedDetailInfo();
+            detailInfo.setPathToJreUnzipDir(jrePath);
+            jreUnzippedEvent.addDetailInfo(detailInfo);
+            progressEventQueue.update(jreUnzippedEvent);
+        } else if (event.getKind() == ProgressEventKind.JAR_DOWNLOAD_START) {
+            String jarUrl = event.getEventName();
+            StatusInfo status = jars.get(jarUrl);
+            JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+            detailInfo.setJarUrl(jarUrl);
+            detailInfo.setPathToJarFile(status.getPath());
+            detailInfo.setHash(status.getHash());
+            ProgressEvent downloadJarFinishEvent = progressEventFactory.getDownloadJarFinishEvent(jarUrl);
+            downloadJarFinishEvent.addDetailInfo(detailInfo);
+            progressEventQueue.update(downloadJarFinishEvent);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock of a content downloaded to a destination shared by Ice Boar instances started at the same time (e.g. by a
+ * login script). The first instance downloads the content, the others wait for it and use its destination instead of
+ * downloading the same content again.
+ * <p>
+ * A lock file is stored next to a part file. It holds a state of the last download, a length of a content and a
+ * number of downloaded bytes, so waiting instances can show a progress. When a downloaded ZIP file is deleted after
+ * extracting, a path of the extracted directory is stored on a second line, so waiting instances can copy it. A byte
+ * far after the end of the file is
+ * locked, so the state can be read while it is locked also on Windows. Threads of the same JVM are synchronized by an
+ * additional in-process lock.
+ */
+class DownloadLock {
+
+    static final String SUFFIX = ".lock";
+
+    private static final long POLL_INTERVAL_MILLIS = 250;
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+    private static final String DOWNLOADING = "downloading";
+    private static final String COMPLETE = "complete";
+    private static final Map<File, ReentrantLock> JVM_LOCKS = new HashMap<File, ReentrantLock>();
+    // locks held by this JVM, a state is read from them, because closing another file descriptor of a lock file would
+    // release a lock on some systems
+    private static final Map<File, DownloadLock> HELD_LOCKS = new HashMap<File, DownloadLock>();
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileLock lock;
+    private final ReentrantLock jvmLock;
+    private final boolean waited;
+    private final boolean previousDownloadComplete;
+    private final File previousUnzippedDirectory;
+    private long length = -1;
+    private long downloaded = -1;
+    private File unzippedDirectory;
+    private boolean released;
+
+    private DownloadLock(File file, RandomAccessFile randomAccessFile, FileLock lock, ReentrantLock jvmLock,
+                         boolean waited) throws IOException {
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.lock = lock;
+        this.jvmLock = jvmLock;
+        this.waited = waited;
+        this.previousDownloadComplete = COMPLETE.equals(readState(randomAccessFile)[0]);
+        this.previousUnzippedDirectory = previousDownloadComplete ? readUnzippedDirectory(randomAccessFile) : null;
+    }
+
+    /**
+     * Takes a lock of a content downloaded to a given part file. When another run holds it, it waits until the lock is
+     * released, informing a listener about a progress of the other run.
+     *
+     * @param listener a listener or null
+     */
+    static DownloadLock acquire(File partFile, URL url, DownloadProgressListener listener) throws IOException {
+        File file = new File(partFile.getAbsolutePath() + SUFFIX);
+        ReentrantLock jvmLock = getJvmLock(file);
+        boolean waited = false;
+        while (true) {
+            String[] state = new String[3];
+            DownloadLock lock = tryAcquire(file, jvmLock, waited, state);
+            if (lock != null) {
+                return lock;
+            }
+            if (!waited) {
+                System.out.println(url + " is downloaded by another run, waiting for it");
+                waited = true;
+            }
+            if (listener != null) {
+                informListener(listener, url, partFile, state);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Waiting for a download of " + url + " was interrupted");
+            }
+        }
+    }
+
+    private static synchronized ReentrantLock getJvmLock(File file) {
+        ReentrantLock jvmLock = JVM_LOCKS.get(file);
+        if (jvmLock == null) {
+            jvmLock = new ReentrantLock();
+            JVM_LOCKS.put(file, jvmLock);
+        }
+        return jvmLock;
+    }
+
+    /**
+     * @param state filled with a state of a lock held by another thread or run
+     * @return a lock or null, when it is held by another thread or run
+     */
+    private static DownloadLock tryAcquire(File file, ReentrantLock jvmLock, boolean waited, String[] state)
+            throws IOException {
+        if (!jvmLock.tryLock()) {
+            copyHeldState(file, state);
+            return null;
+        }
+        DownloadLock downloadLock = null;
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                FileLock lock = tryLock(randomAccessFile);
+                if (lock == null) {
+                    System.arraycopy(readState(randomAccessFile), 0, state, 0, state.length);
+                } else {
+                    DownloadLock acquired = new DownloadLock(file, randomAccessFile, lock, jvmLock, waited);
+                    acquired.write(DOWNLOADING);
+                    setHeld(file, acquired);
+                    downloadLock = acquired;
+                }
+            } finally {
+                if (downloadLock == null) {
+                    randomAccessFile.close();
+                }
+            }
+        } finally {
+            if (downloadLock == null) {
+                jvmLock.unlock();
+            }
+        }
+        return downloadLock;
+    }
+
+    private static FileLock tryLock(RandomAccessFile randomAccessFile) throws IOException {
+        try {
+            return randomAccessFile.getChannel().tryLock(LOCK_POSITION, 1, false);
+        } catch (OverlappingFileLockException e) {
+            // locked by this thread already
+            return null;
+        }
+    }
+
+    private static synchronized void setHeld(File file, DownloadLock downloadLock) {
+        if (downloadLock == null) {
+            HELD_LOCKS.remove(file);
+        } else {
+            HELD_LOCKS.put(file, downloadLock);
+        }
+    }
+
+    private static void copyHeldState(File file, String[] state) {
+        DownloadLock downloadLock;
+        synchronized (DownloadLock.class) {
+            downloadLock = HELD_LOCKS.get(file);
+        }
+        String[] heldState = downloadLock == null ? new String[]{"", "", ""} : downloadLock.getState();
+        System.arraycopy(heldState, 0, state, 0, state.length);
+    }
+
+    private static void informListener(DownloadProgressListener listener, URL url, File partFile, String[] state) {
+        long length = parseNumber(state[1]);
+        long downloaded = parseNumber(state[2]);
+        if (downloaded < 0 && partFile.length() < length) {
+            // a content written as a stream, without preallocating the part file
+            downloaded = partFile.length();
+        }
+        listener.downloadedByAnotherRun(url, downloaded, length);
+    }
+
+    /**
+     * @return a state, a length and a number of downloaded bytes, empty strings when a file is not written yet
+     */
+    private static String[] readState(RandomAccessFile input) throws IOException {
+        input.seek(0);
+        String line = input.readLine();
+        if (line != null) {
+            String[] state = line.split(" ");
+            if (state.length == 3) {
+                return state;
+            }
+        }
+        return new String[]{"", "", ""};
+    }
+
+    /**
+     * @return a directory on a line after a state (read by {@link #readState(RandomAccessFile)}) or null
+     */
+    private static File readUnzippedDirectory(RandomAccessFile input) throws IOException {
+        byte[] bytes = new byte[(int) (input.length() - input.getFilePointer())];
+        input.readFully(bytes);
+        String path = new String(bytes, "UTF-8").trim();
+        return path.length() == 0 ? null : new File(path);
+    }
+
+    private static long parseNumber(String number) {
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return true when the current run waited for another one
+     */
+    boolean hasWaited() {
+        return waited;
+    }
+
+    /**
+     * @return true when the last download (e.g. by a run which the current run waited for) was complete
+     */
+    boolean isPreviousDownloadComplete() {
+        return previousDownloadComplete;
+    }
+
+    /**
+     * @return a directory extracted from a ZIP file by the last complete download, when the ZIP file was not kept, or
+     * null
+     */
+    File getPreviousUnzippedDirectory() {
+        return previousUnzippedDirectory;
+    }
+
+    /**
+     * @param length     a length of a content being downloaded or -1, when it is not known
+     * @param downloaded a number of bytes downloaded by previous runs (a resumed download)
+     */
+    synchronized void downloadStarted(long length, long downloaded) throws IOException {
+        this.length = length;
+        this.downloaded = downloaded;
+        write(DOWNLOADING);
+    }
+
+    /**
+     * Adds bytes written to a part file. It is called by threads downloading segments at the same time.
+     */
+    synchronized void transferred(long bytes) throws IOException {
+        if (downloaded >= 0) {
+            downloaded += bytes;
+            write(DOWNLOADING);
+        }
+    }
+
+    /**
+     * Marks a content moved to its destination, so waiting runs can use it.
+     */
+    synchronized void downloadComplete() throws IOException {
+        write(COMPLETE);
+    }
+
+    /**
+     * Marks a content extracted to a directory, when its ZIP file is not kept, so waiting runs can copy the directory.
+     */
+    synchronized void unzipComplete(File directory) throws IOException {
+        unzippedDirectory = directory.getAbsoluteFile();
+        write(COMPLETE);
+    }
+
+    private synchronized String[] getState() {
+        return new String[]{DOWNLOADING, String.valueOf(length), String.valueOf(downloaded)};
+    }
+
+    private void write(String state) throws IOException {
+        randomAccessFile.setLength(0);
+        randomAccessFile.seek(0);
+        randomAccessFile.write((state + " " + length + " " + downloaded + "\n").getBytes("UTF-8"));
+        if (unzippedDirectory != null) {
+            randomAccessFile.write((unzippedDirectory.getPath() + "\n").getBytes("UTF-8"));
+        }
+    }
+
+    synchronized void release() throws IOException {
+        if (released) {
+            return;
+        }
+        released = true;
+        setHeld(file, null);
+        try {
+            lock.release();
+            randomAccessFile.close();
+        } finally {
+            jvmLock.unlock();
+        }
+    }
+}
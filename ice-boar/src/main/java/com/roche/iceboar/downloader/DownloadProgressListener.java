@@ -0,0 +1,37 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import java.net.URL;
+
+/**
+ * Informs about a download done by another Ice Boar instance, which the current run waits for (see {@link
+ * DownloadLock}).
+ */
+public interface DownloadProgressListener {
+
+    /**
+     * Called periodically while waiting.
+     *
+     * @param downloaded a number of bytes downloaded so far or -1, when it is not known (e.g. a content is downloaded
+     *                   in segments)
+     * @param length     a length of a content or -1, when it is not known yet
+     */
+    void downloadedByAnotherRun(URL url, long downloaded, long length);
+}
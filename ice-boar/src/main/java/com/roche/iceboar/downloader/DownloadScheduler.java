@@ -0,0 +1,83 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import com.roche.iceboar.IceBoarException;
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventQueue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs downloads on a bounded pool of worker threads. A download task returns an event (e.g. "download finished"),
+ * which is published to {@link ProgressEventQueue} by a thread calling {@link #publishAll(ProgressEventQueue)}. In
+ * this way downloads are done at the same time, but observers are still informed one by one.
+ */
+public class DownloadScheduler {
+
+    private final ExecutorService executor;
+    private final CompletionService<ProgressEvent> completionService;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+
+    public DownloadScheduler(int threads) {
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory("IceBoar-download-"));
+        completionService = new ExecutorCompletionService<ProgressEvent>(executor);
+    }
+
+    public void submit(Callable<ProgressEvent> task) {
+        pendingTasks.incrementAndGet();
+        completionService.submit(task);
+    }
+
+    /**
+     * Waits for all submitted tasks (also these submitted by observers during publishing) and publishes their
+     * events in order of completion. When a task fails, other tasks are cancelled and an exception is thrown.
+     */
+    public void publishAll(ProgressEventQueue progressEventQueue) {
+        try {
+            while (pendingTasks.get() > 0) {
+                Future<ProgressEvent> future = completionService.take();
+                pendingTasks.decrementAndGet();
+                progressEventQueue.update(getResult(future));
+            }
+        } catch (InterruptedException e) {
+            throw new IceBoarException("Download was interrupted. Please try again.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ProgressEvent getResult(Future<ProgressEvent> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IceBoarException) {
+                throw (IceBoarException) e.getCause();
+            }
+            throw new IceBoarException("Download failed. Please try again.", e.getCause());
+        }
+    }
+}
@@ -23,8 +23,17 @@ import net.lingala.zip4j.exception.ZipException;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class is an abstraction for disk operations. It can be mocked in unit test.
@@ -38,20 +47,589 @@ public class FileUtilsFacade {
         return url;
     }
 
+    private static final int BUFFER_SIZE = 8192;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    // a broken connection is reported as an error (the next run resumes the download), instead of waiting forever
+    private static final int TIMEOUT_MILLIS = 60 * 1000;
+    // smaller contents are not split into segments, because a new connection costs more than it gives
+    static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String INSTALL_COMPLETE_MARKER = ".IceBoar.complete";
+
+    private volatile DownloadProgressListener downloadProgressListener;
+    // directories extracted from ZIP files, which are not kept, published to waiting runs until they are installed
+    private final Map<File, PublishedDirectory> publishedDirectories =
+            new ConcurrentHashMap<File, PublishedDirectory>();
+
+    /**
+     * Sets a listener informed about a progress of downloads done by other runs, which this run waits for.
+     */
+    public void setDownloadProgressListener(DownloadProgressListener downloadProgressListener) {
+        this.downloadProgressListener = downloadProgressListener;
+    }
+
     public static String addJavaCommandPathToPath(String path) {
         return path + File.separator + "bin" + File.separator + "java";
     }
 
-    public void saveContentFromURLToFile(URL url, File destination) throws IOException {
-        FileUtils.copyURLToFile(url, destination);
+    /**
+     * Downloads a content of URL to a destination file, unless a copy downloaded by a previous run is still valid. The
+     * copy is valid when it is fresh (see <tt>Cache-Control: max-age</tt> and <tt>Expires</tt> headers) or when a
+     * server answers <tt>304 Not Modified</tt> to a conditional request (<tt>If-None-Match</tt>,
+     * <tt>If-Modified-Since</tt>). {@link CacheValidators} of the content are stored next to the file.
+     * <p>
+     * A content is written to a part file ({@link #getPartFile(File)}) and moved to the destination only when it is
+     * complete. A part file left by a broken download is resumed by a <tt>Range</tt> request.
+     * <p>
+     * When other Ice Boar instances download the same content to the same destination at the same time, only one of
+     * them sends a request. The others wait for it (see {@link DownloadLock} and {@link
+     * #setDownloadProgressListener(DownloadProgressListener)}) and use its destination.
+     *
+     * @param cachedFile  a copy downloaded by a previous run or null
+     * @param destination a file for a new content
+     * @return true when a new content was downloaded to the destination, false when the cached file can be used
+     */
+    public boolean saveContentFromURLToFileIfModified(URL url, File cachedFile, File destination) throws IOException {
+        return saveContentFromURLToFileIfModified(url, cachedFile, getPartFile(destination), destination, null);
+    }
+
+    /**
+     * The same as {@link #saveContentFromURLToFileIfModified(URL, File, File)}, but a content is split into byte
+     * ranges downloaded by many connections at the same time. When a server doesn't support <tt>Range</tt> requests
+     * (see <tt>Accept-Ranges</tt> header) or a content is small, it is downloaded by a single connection.
+     *
+     * @param expectedSha256 an expected SHA-256 digest (hex) of a content or null, when it is not verified (see {@link
+     *                       #saveContentFromURLToFileIfModified(URL, File, File, File, String)})
+     */
+    public boolean saveContentFromURLToFileInSegments(URL url, File cachedFile, File destination, int connections,
+                                                      String expectedSha256) throws IOException {
+        return saveContentFromURLToFile(url, cachedFile, getPartFile(destination), destination, connections, null,
+                true, expectedSha256);
+    }
+
+    /**
+     * The same as {@link #saveContentFromURLToFileIfModified(URL, File, File)}, but a ZIP content is also extracted
+     * to a directory while it is downloaded. When a download is resumed, a content is extracted after the download.
+     *
+     * @param keepArchive    when false, a ZIP file is deleted after extracting and {@link CacheValidators} are stored
+     *                       next to the directory (so the directory can be given as a cached file in next runs)
+     * @param expectedSha256 an expected SHA-256 digest (hex) of a ZIP file or null, when it is not verified (see
+     *                       {@link #saveContentFromURLToFileIfModified(URL, File, File, File, String)})
+     * @return true when a new content was downloaded and extracted, false when the cached file can be used
+     */
+    public boolean saveContentFromURLToFileAndExtract(URL url, File cachedFile, File destination,
+                                                      File unzipDirectory, boolean keepArchive,
+                                                      String expectedSha256) throws IOException {
+        return saveContentFromURLToFile(url, cachedFile, getPartFile(destination), destination, 1, unzipDirectory,
+                keepArchive, expectedSha256);
+    }
+
+    /**
+     * The same as {@link #saveContentFromURLToFileIfModified(URL, File, File)}, but with a custom part file and a
+     * verification of a content. A part file is useful when a destination is unique per run and a part file should be
+     * resumed by next runs.
+     * <p>
+     * A SHA-256 digest of a content is calculated while it is written, without reading the file again, and stored in
+     * {@link CacheValidators} (see {@link #getSha256(File)}). When it is different than the expected one, a content is
+     * rejected and downloaded again from the beginning. A cached file with the expected digest is used without any
+     * request, a cached file with a wrong digest is not used.
+     *
+     * @param expectedSha256 an expected SHA-256 digest (hex) of a content or null, when it is not verified
+     * @throws IOException when a content downloaded again has still a wrong digest
+     */
+    public boolean saveContentFromURLToFileIfModified(URL url, File cachedFile, File partFile, File destination,
+                                                      String expectedSha256) throws IOException {
+        return saveContentFromURLToFile(url, cachedFile, partFile, destination, 1, null, true, expectedSha256);
+    }
+
+    private boolean saveContentFromURLToFile(URL url, File cachedFile, File partFile, File destination,
+                                             int connections, File unzipDirectory, boolean keepArchive,
+                                             String expectedSha256) throws IOException {
+        try {
+            return download(url, cachedFile, partFile, destination, connections, unzipDirectory, keepArchive,
+                    expectedSha256);
+        } catch (DigestMismatchException e) {
+            System.out.println(e.getMessage() + ", download it again");
+            return download(url, cachedFile, partFile, destination, connections, unzipDirectory, keepArchive,
+                    expectedSha256);
+        }
+    }
+
+    private boolean download(URL url, File cachedFile, File partFile, File destination, int connections,
+                             File unzipDirectory, boolean keepArchive, String expectedSha256) throws IOException {
+        CacheValidators cachedValidators = null;
+        if (cachedFile != null && cachedFile.exists()) {
+            cachedValidators = verifyCachedFile(url, cachedFile, CacheValidators.read(cachedFile), expectedSha256);
+        }
+        if (cachedValidators != null && expectedSha256 != null
+                && expectedSha256.equalsIgnoreCase(cachedValidators.getSha256())) {
+            System.out.println("Cached copy of " + url + " has the expected SHA-256 digest");
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (cachedValidators != null && cachedValidators.isFresh(now)) {
+            System.out.println("Cached copy of " + url + " is fresh");
+            return false;
+        }
+        DownloadLock lock = null;
+        if (partFile.equals(getPartFile(destination))) {
+            // a destination is shared by runs, so a run waiting for another one can use it
+            lock = DownloadLock.acquire(partFile, url, downloadProgressListener);
+        }
+        try {
+            if (lock != null && lock.hasWaited() && lock.isPreviousDownloadComplete()
+                    && useDownloadedByAnotherRun(url, destination, unzipDirectory, keepArchive, expectedSha256,
+                    lock.getPreviousUnzippedDirectory())) {
+                // next waiting runs can use it too
+                downloadComplete(url, lock, partFile, unzipDirectory, keepArchive);
+                return true;
+            }
+            return downloadToPartFile(url, cachedValidators, cachedFile, partFile, destination, connections,
+                    unzipDirectory, keepArchive, expectedSha256, now, lock);
+        } finally {
+            if (lock != null) {
+                lock.release();
+            }
+        }
+    }
+
+    private boolean downloadToPartFile(URL url, CacheValidators cachedValidators, File cachedFile, File partFile,
+                                       File destination, int connections, File unzipDirectory, boolean keepArchive,
+                                       String expectedSha256, long now, DownloadLock lock) throws IOException {
+        PartFile part = PartFile.open(partFile);
+        part.reportProgressTo(lock);
+        try {
+            URLConnection connection = openConnection(url, cachedValidators, part);
+            if (getResponseCode(connection) == HTTP_RANGE_NOT_SATISFIABLE) {
+                System.out.println("Can't resume download of " + url + ", start from the beginning");
+                disconnect(connection);
+                part.reset();
+                connection = openConnection(url, cachedValidators, part);
+            }
+            try {
+                if (cachedValidators != null && getResponseCode(connection) == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    System.out.println("Cached copy of " + url + " is not modified");
+                    CacheValidators.fromResponse(connection, cachedValidators, now).write(cachedFile);
+                    return false;
+                }
+                boolean resumed = getResponseCode(connection) == HttpURLConnection.HTTP_PARTIAL;
+                if (resumed) {
+                    System.out.println("Resume download of " + url + " from byte " + part.length());
+                }
+                if (lock != null) {
+                    long length = PartFile.getContentLength(connection);
+                    long downloaded = resumed ? part.length() : 0;
+                    lock.downloadStarted(length < 0 ? -1 : downloaded + length, downloaded);
+                }
+                CacheValidators validators = CacheValidators.fromResponse(connection, null, now);
+                int segments = resumed ? 1 : getSegments(connection, validators, connections);
+                if (unzipDirectory != null && !resumed) {
+                    System.out.println("Download and unzip " + url + " to " + unzipDirectory);
+                    part.writeAndExtract(connection, validators, unzipDirectory);
+                } else if (segments > 1) {
+                    System.out.println("Download " + url + " in " + segments + " segments");
+                    part.writeInSegments(url, connection, validators, segments);
+                } else {
+                    part.write(connection, validators, resumed);
+                }
+                verifyContent(url, part, validators, unzipDirectory, expectedSha256);
+                if (unzipDirectory != null) {
+                    String zipFileName = part.getFile().getPath();
+                    if (resumed) {
+                        extractDownloadedZipFile(zipFileName, unzipDirectory);
+                    } else {
+                        ZipExtractor.restoreExecutableFlags(zipFileName, unzipDirectory);
+                    }
+                }
+                part.moveTo(destination);
+                if (unzipDirectory != null && !keepArchive) {
+                    deleteExtractedZipFile(destination, unzipDirectory);
+                }
+                if (lock != null) {
+                    downloadComplete(url, lock, partFile, unzipDirectory, keepArchive);
+                }
+                return true;
+            } finally {
+                disconnect(connection);
+            }
+        } finally {
+            part.close();
+        }
+    }
+
+    /**
+     * Marks a download complete for waiting runs. When a ZIP file is not kept, its extracted directory is published
+     * instead, until it is installed (see {@link #installDirectory(File, File)}).
+     */
+    private void downloadComplete(URL url, DownloadLock lock, File partFile, File unzipDirectory, boolean keepArchive)
+            throws IOException {
+        if (unzipDirectory == null || keepArchive) {
+            lock.downloadComplete();
+        } else {
+            lock.unzipComplete(unzipDirectory);
+            publishedDirectories.put(unzipDirectory.getAbsoluteFile(), new PublishedDirectory(url, partFile));
+        }
+    }
+
+    /**
+     * @return validators of a cached file or null, when the cached file has a wrong digest and can't be used. A digest
+     * of a cached file downloaded without a verification is calculated once and stored.
+     */
+    private CacheValidators verifyCachedFile(URL url, File cachedFile, CacheValidators cachedValidators,
+                                             String expectedSha256) throws IOException {
+        if (cachedValidators == null || expectedSha256 == null) {
+            return cachedValidators;
+        }
+        String sha256 = cachedValidators.getSha256();
+        if (sha256 == null && cachedFile.isFile()) {
+            sha256 = calculateSha256(cachedFile);
+            cachedValidators = cachedValidators.withSha256(sha256);
+            cachedValidators.write(cachedFile);
+        }
+        if (sha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            System.out.println("Cached copy of " + url + " has a wrong SHA-256 digest: " + sha256);
+            return null;
+        }
+        return cachedValidators;
+    }
+
+    private void verifyContent(URL url, PartFile part, CacheValidators validators, File unzipDirectory,
+                               String expectedSha256) throws IOException {
+        String sha256 = part.getSha256();
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            part.reset();
+            if (unzipDirectory != null) {
+                FileUtils.deleteQuietly(unzipDirectory);
+            }
+            throw new DigestMismatchException("SHA-256 digest of " + url + " is " + sha256 + ", but expected is "
+                    + expectedSha256);
+        }
+        validators.withSha256(sha256).write(part.getFile());
+    }
+
+    /**
+     * Deletes a ZIP file after extracting, {@link CacheValidators} are stored next to the directory (so the directory
+     * can be given as a cached file in next runs).
+     */
+    private void deleteExtractedZipFile(File zipFile, File unzipDirectory) throws IOException {
+        File validators = CacheValidators.getValidatorsFile(unzipDirectory);
+        FileUtils.deleteQuietly(validators);
+        FileUtils.moveFile(CacheValidators.getValidatorsFile(zipFile), validators);
+        FileUtils.forceDelete(zipFile);
+    }
+
+    /**
+     * Uses a destination, which another run has just downloaded to, when it has a digest of a complete download (and
+     * the expected one, when it is given). A ZIP file is extracted, when it should be extracted while downloading.
+     * When the other run didn't keep the ZIP file, a directory extracted by it is copied.
+     *
+     * @param unzippedDirectory a directory published by the other run (see {@link
+     *                          DownloadLock#getPreviousUnzippedDirectory()}) or null
+     * @return false when the destination can't be used (e.g. the other run kept neither a ZIP file nor a directory we
+     * need) and the current run should download a content itself
+     */
+    private boolean useDownloadedByAnotherRun(URL url, File destination, File unzipDirectory, boolean keepArchive,
+                                              String expectedSha256, File unzippedDirectory) throws IOException {
+        if (unzipDirectory != null && !keepArchive && !destination.isFile() && unzippedDirectory != null) {
+            return copyUnzippedByAnotherRun(url, unzippedDirectory, unzipDirectory, expectedSha256);
+        }
+        CacheValidators validators = CacheValidators.read(destination);
+        if (!destination.isFile() || !isComplete(validators, expectedSha256)) {
+            return false;
+        }
+        System.out.println(url + " was downloaded by another run to " + destination);
+        if (unzipDirectory != null) {
+            extractDownloadedZipFile(destination.getPath(), unzipDirectory);
+            if (!keepArchive) {
+                deleteExtractedZipFile(destination, unzipDirectory);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a directory, which another run has extracted from a ZIP file that is not kept, together with its {@link
+     * CacheValidators}. The other run installs the directory under the same lock, so it is not moved while copying.
+     */
+    private boolean copyUnzippedByAnotherRun(URL url, final File source, File unzipDirectory, String expectedSha256)
+            throws IOException {
+        CacheValidators validators = CacheValidators.read(source);
+        if (!source.isDirectory() || !isComplete(validators, expectedSha256)) {
+            return false;
+        }
+        System.out.println(url + " was unzipped by another run to " + source + ", copy it to " + unzipDirectory);
+        FileUtils.copyDirectory(source, unzipDirectory, new FileFilter() {
+            public boolean accept(File file) {
+                // a marker of an installed directory is created again by installing the copy
+                return !new File(source, INSTALL_COMPLETE_MARKER).equals(file);
+            }
+        });
+        validators.write(unzipDirectory);
+        return true;
+    }
+
+    /**
+     * @return true when validators have a digest of a complete download and it is the expected one, when it is given
+     */
+    private boolean isComplete(CacheValidators validators, String expectedSha256) {
+        return validators != null && validators.getSha256() != null
+                && (expectedSha256 == null || expectedSha256.equalsIgnoreCase(validators.getSha256()));
+    }
+
+    private void extractDownloadedZipFile(String zipFileName, File unzipDirectory) throws IOException {
+        try {
+            extractZipFile(zipFileName, unzipDirectory.getPath());
+        } catch (ZipException e) {
+            IOException exception = new IOException("Unzip of " + zipFileName + " failed: " + e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    private int getSegments(URLConnection connection, CacheValidators validators, int connections) {
+        if (connections <= 1 || !"bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"))
+                || validators.getIfRangeValue() == null) {
+            return 1;
+        }
+        long segments = PartFile.getContentLength(connection) / MIN_SEGMENT_SIZE;
+        return (int) Math.max(1, Math.min(connections, segments));
+    }
+
+    static URLConnection openConnection(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    private URLConnection openConnection(URL url, CacheValidators cachedValidators, PartFile part)
+            throws IOException {
+        URLConnection connection = openConnection(url);
+        if (cachedValidators != null) {
+            cachedValidators.addConditionalHeaders(connection);
+        }
+        part.addRangeHeaders(connection);
+        return connection;
     }
 
+    static void disconnect(URLConnection connection) {
+        if (connection instanceof HttpURLConnection) {
+            ((HttpURLConnection) connection).disconnect();
+        }
+    }
+
+    public static File getPartFile(File destination) {
+        return new File(destination.getPath() + PartFile.SUFFIX);
+    }
+
+    static int getResponseCode(URLConnection connection) throws IOException {
+        if (connection instanceof HttpURLConnection) {
+            return ((HttpURLConnection) connection).getResponseCode();
+        }
+        return HttpURLConnection.HTTP_OK;
+    }
+
+    /**
+     * @return a SHA-256 digest of a file stored in its {@link CacheValidators} or calculated by reading the file, when
+     * it is not stored (e.g. a file downloaded by a previous version). A calculated digest is stored, when the file has
+     * validators.
+     */
+    public String getSha256(File file) throws IOException {
+        CacheValidators validators = CacheValidators.read(file);
+        if (validators != null && validators.getSha256() != null) {
+            return validators.getSha256();
+        }
+        String sha256 = calculateSha256(file);
+        if (validators != null) {
+            validators.withSha256(sha256).write(file);
+        }
+        return sha256;
+    }
+
+    /**
+     * @return a SHA-256 digest of a file calculated during its download (see {@link CacheValidators}) or null
+     */
+    public String getStoredSha256(File file) {
+        CacheValidators validators = CacheValidators.read(file);
+        if (validators == null) {
+            return null;
+        }
+        return validators.getSha256();
+    }
+
+    public String calculateSha256(File file) throws IOException {
+        MessageDigest digest = createSha256Digest();
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Moves a file together with its {@link CacheValidators}. When the destination already exists (the same content
+     * was stored by a previous run), the source is deleted and only the validators are replaced.
+     */
+    public void moveFile(File source, File destination) throws IOException {
+        if (destination.exists()) {
+            FileUtils.forceDelete(source);
+        } else {
+            FileUtils.forceMkdir(destination.getParentFile());
+            FileUtils.moveFile(source, destination);
+        }
+        File sourceValidators = CacheValidators.getValidatorsFile(source);
+        if (sourceValidators.exists()) {
+            File destinationValidators = CacheValidators.getValidatorsFile(destination);
+            FileUtils.deleteQuietly(destinationValidators);
+            FileUtils.moveFile(sourceValidators, destinationValidators);
+        }
+    }
+
+    /**
+     * @return true when a directory was completely installed by {@link #installDirectory(File, File)}
+     */
+    public boolean isInstallComplete(File directory) {
+        return new File(directory, INSTALL_COMPLETE_MARKER).isFile();
+    }
+
+    /**
+     * @return true when an installed directory is complete and its files were not changed since the install (see
+     * {@link InstallManifest}). It reads file attributes only, so it is much cheaper than starting a process from the
+     * directory.
+     */
+    public boolean isInstallValid(File directory) {
+        File manifest = new File(directory, INSTALL_COMPLETE_MARKER);
+        return manifest.isFile() && InstallManifest.verify(directory, manifest);
+    }
+
+    /**
+     * Installs a directory prepared in a temporary location (e.g. an unzipped JRE) together with its {@link
+     * CacheValidators}. A marker file with an {@link InstallManifest} is created first and then the directory is
+     * renamed, so other runs never use a partially installed directory. When the directory was already installed by
+     * another run, it is kept and the temporary directory is deleted.
+     * <p>
+     * A directory published to waiting runs (extracted from a ZIP file, which is not kept) is installed under the lock
+     * of its download and the installed directory is published instead, so waiting runs don't copy a moved directory.
+     */
+    public void installDirectory(File temporaryDirectory, File directory) throws IOException {
+        PublishedDirectory published = publishedDirectories.remove(temporaryDirectory.getAbsoluteFile());
+        if (published == null) {
+            install(temporaryDirectory, directory);
+            return;
+        }
+        DownloadLock lock = DownloadLock.acquire(published.partFile, published.url, null);
+        try {
+            install(temporaryDirectory, directory);
+            lock.unzipComplete(directory);
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void install(File temporaryDirectory, File directory) throws IOException {
+        InstallManifest.write(temporaryDirectory, new File(temporaryDirectory, INSTALL_COMPLETE_MARKER));
+        FileUtils.forceMkdir(directory.getParentFile());
+        if (!temporaryDirectory.renameTo(directory)) {
+            if (isInstallComplete(directory)) {
+                System.out.println(directory + " is already installed by another run");
+                FileUtils.deleteQuietly(temporaryDirectory);
+                FileUtils.deleteQuietly(CacheValidators.getValidatorsFile(temporaryDirectory));
+                return;
+            }
+            // left by a broken install
+            FileUtils.deleteDirectory(directory);
+            if (!temporaryDirectory.renameTo(directory)) {
+                throw new IOException("Can't move " + temporaryDirectory + " to " + directory);
+            }
+        }
+        File validators = CacheValidators.getValidatorsFile(temporaryDirectory);
+        if (validators.exists()) {
+            File destinationValidators = CacheValidators.getValidatorsFile(directory);
+            FileUtils.deleteQuietly(destinationValidators);
+            FileUtils.moveFile(validators, destinationValidators);
+        }
+    }
+
+    /**
+     * Deletes an installed directory, which can't be used (e.g. it was modified by a user).
+     */
+    public void uninstallDirectory(File directory) throws IOException {
+        FileUtils.deleteQuietly(new File(directory, INSTALL_COMPLETE_MARKER));
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * Extracts a ZIP file on all available processors.
+     */
     public void extractZipFile(String zipFileName, String destinationPath) throws ZipException {
-        ZipFile zipFile = new ZipFile(zipFileName);
-        zipFile.extractAll(destinationPath);
+        try {
+            ZipExtractor.extract(zipFileName, new File(destinationPath), Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            throw new ZipException(e);
+        }
     }
 
     public boolean checkFileExist(String destination) {
         return new File(destination).exists();
     }
+
+    /**
+     * @return true when a file is a complete ZIP file (e.g. it is not truncated by a broken download)
+     */
+    public boolean checkZipFileValid(String zipFileName) {
+        try {
+            return new ZipFile(zipFileName).isValidZipFile();
+        } catch (ZipException e) {
+            return false;
+        }
+    }
+
+    static MessageDigest createSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Thrown when a downloaded content has a different digest than expected.
+     */
+    private static class DigestMismatchException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        DigestMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A download of a directory published to waiting runs.
+     */
+    private static class PublishedDirectory {
+
+        private final URL url;
+        private final File partFile;
+
+        PublishedDirectory(URL url, File partFile) {
+            this.url = url;
+            this.partFile = partFile;
+        }
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A list of files of an installed directory (e.g. an unzipped JRE with its <tt>release</tt> file) with their sizes and
+ * executable flags, recorded when the directory is installed. It lets next runs check an installed JRE by reading file
+ * attributes, instead of starting <tt>java -version</tt> in a new process. Each line has the format:
+ * <pre>
+ * &lt;x|-&gt; &lt;size&gt; &lt;relative path&gt;
+ * </pre>
+ */
+class InstallManifest {
+
+    private static final String ENCODING = "UTF-8";
+    private static final String EXECUTABLE = "x";
+    private static final String NOT_EXECUTABLE = "-";
+
+    private InstallManifest() {
+    }
+
+    static void write(File directory, File manifest) throws IOException {
+        String directoryPath = directory.getAbsolutePath();
+        List<String> lines = new ArrayList<String>();
+        Collection<File> files = FileUtils.listFiles(directory, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE);
+        for (File file : files) {
+            if (file.equals(manifest)) {
+                continue;
+            }
+            String relativePath = file.getAbsolutePath().substring(directoryPath.length() + 1)
+                    .replace(File.separatorChar, '/');
+            lines.add((file.canExecute() ? EXECUTABLE : NOT_EXECUTABLE) + " " + file.length() + " " + relativePath);
+        }
+        FileUtils.writeLines(manifest, ENCODING, lines, "\n");
+    }
+
+    /**
+     * @return true when all files from the manifest exist with the same sizes and executable flags
+     */
+    static boolean verify(File directory, File manifest) {
+        List<String> lines;
+        try {
+            lines = FileUtils.readLines(manifest, ENCODING);
+        } catch (IOException e) {
+            System.out.println("Can't read " + manifest + ": " + e.getMessage());
+            return false;
+        }
+        int files = 0;
+        for (String line : lines) {
+            String[] fields = line.split(" ", 3);
+            if (fields.length < 3) {
+                continue;
+            }
+            File file = new File(directory, fields[2]);
+            if (!file.isFile() || !fields[1].equals(String.valueOf(file.length()))) {
+                System.out.println("Installed file is missing or modified: " + file);
+                return false;
+            }
+            if (EXECUTABLE.equals(fields[0]) && !file.canExecute()) {
+                System.out.println("Installed file is not executable: " + file);
+                return false;
+            }
+            files++;
+        }
+        // an empty manifest proves nothing
+        return files > 0;
+    }
+}
@@ -29,55 +29,88 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.Callable;
 
 /**
  * This class download JRE from custom localization defined in {@value
- * com.roche.iceboar.settings.GlobalSettings#JNLP_TARGET_JAVA_URL}.
+ * com.roche.iceboar.settings.GlobalSettings#JNLP_TARGET_JAVA_URL}. Downloading and unzipping is done by
+ * {@link DownloadScheduler}, at the same time as downloading of JARs. When {@value
+ * com.roche.iceboar.settings.GlobalSettings#JNLP_UNZIP_WHILE_DOWNLOADING} is set, a JRE is unzipped already during
+ * downloading.
+ * <p>
+ * Unzipped JREs are shared between runs and applications in {@link GlobalSettings#getJreRepositoryPath()}, where each
+ * JRE is installed in a directory named by a SHA-256 digest of its ZIP file. A JRE is unzipped to a temporary directory
+ * first and then installed by {@link FileUtilsFacade#installDirectory(File, File)}, so a JRE installed by another run
+ * is used without unzipping again. A JRE with a defined digest installed in a shared cache (see {@link
+ * GlobalSettings#JNLP_SHARED_CACHE_DIRECTORY}) is used directly, without downloading.
  */
 public class JREDownloader implements ProgressEventObserver {
 
     private GlobalSettings settings;
     private FileUtilsFacade fileUtils;
     private final ProgressEventFactory progressEventFactory;
-    private ProgressEventQueue progressEventQueue;
+    private DownloadScheduler downloadScheduler;
     private ExecutableCommandFactory executableCommandFactory;
-
+    // set when a new content of JRE ZIP file was downloaded, so the JRE unzipped by a previous run is outdated
+    private volatile boolean jreZipDownloaded;
+    // set when a JRE was unzipped while downloading (see GlobalSettings#JNLP_UNZIP_WHILE_DOWNLOADING)
+    private volatile boolean jreUnzippedWhileDownloading;
+    // a SHA-256 digest of the JRE ZIP file calculated during downloading or stored by a previous run
+    private volatile String jreSha256;
+    // a path of a JRE installed in a shared cache (see GlobalSettings#JNLP_SHARED_CACHE_DIRECTORY) or null
+    private volatile String sharedJrePath;
 
     public JREDownloader(GlobalSettings settings, FileUtilsFacade fileUtils,
-                         ProgressEventFactory progressEventFactory, ProgressEventQueue progressEventQueue,
+                         ProgressEventFactory progressEventFactory, DownloadScheduler downloadScheduler,
                          ExecutableCommandFactory executableCommandFactory) {
         this.settings = settings;
         this.fileUtils = fileUtils;
         this.progressEventFactory = progressEventFactory;
-        this.progressEventQueue = progressEventQueue;
+        this.downloadScheduler = downloadScheduler;
         this.executableCommandFactory = executableCommandFactory;
     }
 
     public void update(ProgressEvent event) {
-        if (event.equals(progressEventFactory.getJREDownloadEvent())) {
-            downloadJavaAndCreateEvent();
-        } else if (event.equals(progressEventFactory.getJREUnzipEvent())) {
-            unzipJavaAndCreateEvent();
+        if (event.getKind() == ProgressEventKind.JRE_DOWNLOAD) {
+            downloadScheduler.submit(new Callable<ProgressEvent>() {
+                public ProgressEvent call() {
+                    return downloadJavaAndCreateEvent();
+                }
+            });
+        } else if (event.getKind() == ProgressEventKind.JRE_UNZIP) {
+            downloadScheduler.submit(new Callable<ProgressEvent>() {
+                public ProgressEvent call() {
+                    return unzipJavaAndCreateEvent();
+                }
+            });
         }
     }
 
-    private void downloadJavaAndCreateEvent() {
+    private ProgressEvent downloadJavaAndCreateEvent() {
         ProgressEvent jreDownloadedEvent = progressEventFactory.getJREDownloadedEvent();
         JREDownloadedDetailInfo detailInfo = new JREDownloadedDetailInfo();
         if(settings.runOnTargetJVM()) {
-            if (!canUseDownloadedJreZipFile()) {
-                downloadJava();
-                detailInfo.setPathToJreZipFile(settings.getDestinationJREPath());
+            sharedJrePath = findSharedJre();
+            if (sharedJrePath != null) {
+                System.out.println("Download of JRE skipped, using shared JRE: " + sharedJrePath);
+            } else if (downloadJava()) {
+                jreZipDownloaded = true;
+                if (!jreUnzippedWhileDownloading || settings.isKeepJreArchive()) {
+                    detailInfo.setPathToJreZipFile(settings.getDestinationJREPath());
+                }
             } else {
                 System.out.println("Download of JRE skipped");
                 detailInfo.setPathToJreZipFile(settings.getDestinationJreZipPathFromCache());
             }
         }
         jreDownloadedEvent.addDetailInfo(detailInfo);
-        progressEventQueue.update(jreDownloadedEvent);
+        return jreDownloadedEvent;
     }
 
-    private void downloadJava() {
+    /**
+     * @return true when a JRE ZIP file was downloaded, false when the ZIP file from cache is not modified
+     */
+    private boolean downloadJava() {
         try {
             String urlText = settings.getTargetJavaURL();
             System.out.println("Start download JRE " + urlText);
@@ -88,36 +121,144 @@ public class JREDownloader implements ProgressEventObserver {
             String destinationPath = settings.getDestinationJREPath();
             System.out.println("Destination path: " + destinationPath);
             File destination = new File(destinationPath);
+            File cachedFile = getCachedJreFile();
 
-            fileUtils.saveContentFromURLToFile(url, destination);
+            boolean downloaded;
+            if (settings.isUnzipWhileDownloading()) {
+                File unzipDirectory = new File(settings.getUnzipPath());
+                downloaded = fileUtils.saveContentFromURLToFileAndExtract(url, cachedFile, destination,
+                        unzipDirectory, settings.isKeepJreArchive(), settings.getTargetJavaSha256());
+                jreUnzippedWhileDownloading = downloaded;
+                if (downloaded && !settings.isKeepJreArchive()) {
+                    // validators of a deleted ZIP file are moved next to the unzipped directory
+                    destination = unzipDirectory;
+                }
+            } else {
+                downloaded = fileUtils.saveContentFromURLToFileInSegments(url, cachedFile, destination,
+                        settings.getJreDownloadConnections(), settings.getTargetJavaSha256());
+            }
+            if (downloaded) {
+                jreSha256 = fileUtils.getStoredSha256(destination);
+            } else if (cachedFile != null) {
+                jreSha256 = fileUtils.getStoredSha256(cachedFile);
+            }
 
             System.out.println("JVM download finished");
+            return downloaded;
         } catch (IOException e) {
             throw new IceBoarException("Download of JRE failed. Please try again.", e);
         }
     }
 
-    private void unzipJavaAndCreateEvent() {
+    /**
+     * @return a path of a JRE installed in a shared cache (see {@link GlobalSettings#JNLP_SHARED_CACHE_DIRECTORY}) from
+     * a ZIP file with the expected digest or null, when it is not there
+     */
+    private String findSharedJre() {
+        String expectedSha256 = settings.getTargetJavaSha256();
+        if (expectedSha256 == null) {
+            return null;
+        }
+        String path = settings.getSharedJreInstallPath(expectedSha256.toLowerCase());
+        if (path == null || !fileUtils.isInstallValid(new File(path))) {
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * @return a JRE ZIP file from cache or (when ZIP files are not kept) a JRE unzipped by a previous run, which can be
+     * revalidated instead of downloading again
+     */
+    private File getCachedJreFile() {
+        if (canUseDownloadedJreZipFile()) {
+            return new File(settings.getDestinationJreZipPathFromCache());
+        }
+        if (settings.isUnzipWhileDownloading() && !settings.isKeepJreArchive() && canUseUnzippedJre()) {
+            return new File(settings.getUnzippedJrePathFromCache());
+        }
+        return null;
+    }
+
+    private ProgressEvent unzipJavaAndCreateEvent() {
         ProgressEvent jreUnzippedEvent = progressEventFactory.getJREUnzippedEvent();
         JREUnzippedDetailInfo detailInfo = new JREUnzippedDetailInfo();
         if(settings.runOnTargetJVM()) {
-            if (!canUseUnzippedJre()) {
-                extractJava();
-                detailInfo.setPathToJreUnzipDir(settings.getUnzipPath());
-            } else {
+            if (sharedJrePath != null) {
+                System.out.println("Unzipping of JRE skipped");
+                detailInfo.setPathToJreUnzipDir(sharedJrePath);
+            } else if (!jreUnzippedWhileDownloading && canUseUnzippedJre()) {
                 System.out.println("Unzipping of JRE skipped");
                 detailInfo.setPathToJreUnzipDir(settings.getUnzippedJrePathFromCache());
+            } else {
+                detailInfo.setPathToJreUnzipDir(installJava());
             }
         }
         jreUnzippedEvent.addDetailInfo(detailInfo);
-        progressEventQueue.update(jreUnzippedEvent);
+        return jreUnzippedEvent;
     }
 
-    private void extractJava() {
+    /**
+     * @return a path to the installed JRE
+     */
+    private String installJava() {
+        String jreZipPath = getJreZipPath();
+        String sha256 = getJreSha256(jreZipPath);
+        if (sha256 == null) {
+            // the JRE can't be shared, so it is used from the temporary directory
+            if (!jreUnzippedWhileDownloading) {
+                extractJava(jreZipPath);
+            }
+            return settings.getUnzipPath();
+        }
+        File installDirectory = new File(settings.getJreInstallPath(sha256));
+        try {
+            if (!jreUnzippedWhileDownloading && fileUtils.isInstallComplete(installDirectory)) {
+                if (canRunJava(installDirectory.getPath())) {
+                    System.out.println("JRE is already installed in: " + installDirectory);
+                    return installDirectory.getPath();
+                }
+                System.out.println("Installed JRE is broken, install it again: " + installDirectory);
+                fileUtils.uninstallDirectory(installDirectory);
+            }
+            if (jreUnzippedWhileDownloading) {
+                System.out.println("JRE was unzipped while downloading to: " + settings.getUnzipPath());
+            } else {
+                extractJava(jreZipPath);
+            }
+            fileUtils.installDirectory(new File(settings.getUnzipPath()), installDirectory);
+            System.out.println("JRE installed in: " + installDirectory);
+            return installDirectory.getPath();
+        } catch (IOException e) {
+            throw new IceBoarException("Install of JRE failed. Please try again.", e);
+        }
+    }
+
+    private String getJreZipPath() {
+        if (!jreZipDownloaded && canUseDownloadedJreZipFile()) {
+            return settings.getDestinationJreZipPathFromCache();
+        }
+        return settings.getDestinationJREPath();
+    }
+
+    private String getJreSha256(String jreZipPath) {
+        if (jreSha256 != null) {
+            return jreSha256;
+        }
+        if (jreUnzippedWhileDownloading || !fileUtils.checkFileExist(jreZipPath)) {
+            return null;
+        }
+        try {
+            return fileUtils.getSha256(new File(jreZipPath));
+        } catch (IOException e) {
+            System.out.println("Can't calculate SHA-256 of " + jreZipPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void extractJava(String jrePath) {
         System.out.println("Unzip a JRE...");
-        String jrePath = settings.getDestinationJREPath();
-        if (canUseDownloadedJreZipFile()) {
-            jrePath = settings.getDestinationJreZipPathFromCache();
+        if (!jrePath.equals(settings.getDestinationJREPath())) {
             System.out.println("Using JRE from Cache: " + jrePath);
         }
         try {
@@ -131,14 +272,34 @@ public class JREDownloader implements ProgressEventObserver {
 
     private boolean canUseDownloadedJreZipFile() {
         String destination = settings.getDestinationJreZipPathFromCache();
-        return fileUtils.checkFileExist(destination);
+        if (!fileUtils.checkFileExist(destination)) {
+            return false;
+        }
+        String expectedSha256 = settings.getTargetJavaSha256();
+        if (expectedSha256 != null
+                && expectedSha256.equalsIgnoreCase(fileUtils.getStoredSha256(new File(destination)))) {
+            // verified during the download, so the ZIP file is not read again
+            return true;
+        }
+        return fileUtils.checkZipFileValid(destination);
     }
 
     private boolean canUseUnzippedJre() {
         String path = settings.getUnzippedJrePathFromCache();
-        if (StringUtils.isBlank(path)) {
+        if (StringUtils.isBlank(path) || jreZipDownloaded) {
             return false;
         }
+        return canRunJava(path);
+    }
+
+    /**
+     * An installed JRE is checked by its {@link InstallManifest}. Only when this check fails (e.g. a JRE unzipped by an
+     * older version) <tt>java -version</tt> is started.
+     */
+    private boolean canRunJava(String path) {
+        if (fileUtils.isInstallValid(new File(path))) {
+            return true;
+        }
         ExecutableCommand cmd = executableCommandFactory.createJavaGetVersionNumberCommand(path);
         int exitValue = -1;
         try {
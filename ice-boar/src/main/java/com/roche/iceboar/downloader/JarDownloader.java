@@ -19,49 +19,131 @@
 package com.roche.iceboar.downloader;
 
 import com.roche.iceboar.IceBoarException;
+import com.roche.iceboar.cachestorage.StatusInfo;
 import com.roche.iceboar.progressevent.*;
 import com.roche.iceboar.settings.GlobalSettings;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.Callable;
 
 /**
- * This class download all JAR files needed to start a target application.
+ * This class download all JAR files needed to start a target application. Downloaded JARs are stored in a persistent
+ * store ({@link GlobalSettings#getDestinationJARsPath()}) and reused by next runs, as long as they are fresh or a
+ * server confirms by a conditional request that they are not modified (see {@link CacheValidators}). All JARs are
+ * downloaded at the same time by {@link DownloadScheduler}. A JAR is verified, when its SHA-256 digest is defined
+ * ({@value com.roche.iceboar.settings.GlobalSettings#JNLP_JARS_SHA256_PREFIX}). A JAR with a defined digest is used
+ * directly from a shared cache, when it is there (see {@link GlobalSettings#JNLP_SHARED_CACHE_DIRECTORY}).
  */
 public class JarDownloader implements ProgressEventObserver {
 
     private GlobalSettings settings;
     private FileUtilsFacade fileUtils;
     private final ProgressEventFactory progressEventFactory;
-    private final ProgressEventQueue progressEventQueue;
+    private final DownloadScheduler downloadScheduler;
 
     public JarDownloader(GlobalSettings settings, FileUtilsFacade fileUtils,
-                         ProgressEventFactory progressEventFactory, ProgressEventQueue progressEventQueue) {
+                         ProgressEventFactory progressEventFactory, DownloadScheduler downloadScheduler) {
         this.settings = settings;
         this.fileUtils = fileUtils;
         this.progressEventFactory = progressEventFactory;
-        this.progressEventQueue = progressEventQueue;
+        this.downloadScheduler = downloadScheduler;
     }
 
-    private void downloadJar(String jarUrl) {
+    private void scheduleDownloadJar(final String jarUrl) {
+        // read the cache here, because it is modified by observers of finished downloads
+        final StatusInfo statusInfo = settings.getCacheStatus().getJarDownloadedStatusInfo(jarUrl);
+        downloadScheduler.submit(new Callable<ProgressEvent>() {
+            public ProgressEvent call() {
+                return downloadJarAndCreateEvent(jarUrl, statusInfo);
+            }
+        });
+    }
+
+    private ProgressEvent downloadJarAndCreateEvent(String jarUrl, StatusInfo statusInfo) {
         try {
-            System.out.println("Start download: " + jarUrl);
-            URL url = new URL(jarUrl);
-            String destinationPath = settings.getDestinationPathForJar(jarUrl);
-            System.out.println("Destination path: " + destinationPath);
-            File destination = new File(destinationPath);
-            fileUtils.saveContentFromURLToFile(url, destination);
-            System.out.println("Download of " + jarUrl + " finished");
-            progressEventQueue.update(progressEventFactory.getDownloadJarFinishEvent(jarUrl));
+            JarDownloadedDetailInfo detailInfo = downloadJar(jarUrl, statusInfo);
+            ProgressEvent downloadJarFinishEvent = progressEventFactory.getDownloadJarFinishEvent(jarUrl);
+            downloadJarFinishEvent.addDetailInfo(detailInfo);
+            return downloadJarFinishEvent;
         } catch (IOException e) {
             throw new IceBoarException("Download of " + jarUrl + " failed. Please try again.", e);
         }
     }
 
+    private File findJarInCache(StatusInfo statusInfo) {
+        if (statusInfo == null || !fileUtils.checkFileExist(statusInfo.getPath())) {
+            return null;
+        }
+        return new File(statusInfo.getPath());
+    }
+
+    private JarDownloadedDetailInfo downloadJar(String jarUrl, StatusInfo statusInfo) throws IOException {
+        System.out.println("Start download: " + jarUrl);
+        String sharedPath = findJarInSharedCache(jarUrl, statusInfo);
+        if (sharedPath != null) {
+            System.out.println("Download of " + jarUrl + " skipped, using shared " + sharedPath);
+            return createDetailInfo(jarUrl, sharedPath, settings.getExpectedSha256ForJar(jarUrl));
+        }
+        File cachedJar = findJarInCache(statusInfo);
+        File partFile = new File(settings.getPartialDownloadPathForJar(jarUrl));
+        File downloadFile = new File(settings.getDownloadPathForJar(jarUrl));
+        if (!fileUtils.saveContentFromURLToFileIfModified(new URL(jarUrl), cachedJar, partFile, downloadFile,
+                settings.getExpectedSha256ForJar(jarUrl))) {
+            System.out.println("Download of " + jarUrl + " skipped, using " + cachedJar);
+            return createDetailInfo(jarUrl, statusInfo.getPath(), statusInfo.getHash());
+        }
+        // calculated during the download
+        String hash = fileUtils.getSha256(downloadFile);
+        String destinationPath = settings.getDestinationPathForJar(jarUrl, hash);
+        System.out.println("Destination path: " + destinationPath);
+        fileUtils.moveFile(downloadFile, new File(destinationPath));
+        System.out.println("Download of " + jarUrl + " finished");
+        return createDetailInfo(jarUrl, destinationPath, hash);
+    }
+
+    /**
+     * @return a path of a JAR with the expected digest in a shared cache or null. A digest is verified once, next
+     * runs find the same path and digest in the cache of a user.
+     */
+    private String findJarInSharedCache(String jarUrl, StatusInfo statusInfo) throws IOException {
+        String expectedSha256 = settings.getExpectedSha256ForJar(jarUrl);
+        if (expectedSha256 == null) {
+            return null;
+        }
+        String path = settings.getSharedPathForJar(jarUrl, expectedSha256.toLowerCase());
+        if (path == null || !fileUtils.checkFileExist(path)) {
+            return null;
+        }
+        if (statusInfo != null && path.equals(statusInfo.getPath())
+                && expectedSha256.equalsIgnoreCase(statusInfo.getHash())) {
+            return path;
+        }
+        File file = new File(path);
+        String sha256 = fileUtils.getStoredSha256(file);
+        if (sha256 == null) {
+            // the shared cache is read-only, so a calculated digest is not stored
+            sha256 = fileUtils.calculateSha256(file);
+        }
+        if (!expectedSha256.equalsIgnoreCase(sha256)) {
+            System.out.println("Shared copy of " + jarUrl + " has a wrong SHA-256 digest: " + sha256);
+            return null;
+        }
+        return path;
+    }
+
+    private JarDownloadedDetailInfo createDetailInfo(String jarUrl, String path, String hash) {
+        JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+        detailInfo.setJarUrl(jarUrl);
+        detailInfo.setPathToJarFile(path);
+        detailInfo.setHash(hash);
+        return detailInfo;
+    }
+
     public void update(ProgressEvent event) {
-        if (event instanceof DownloadJarStartEvent) {
-            downloadJar(event.getEventName());
+        if (event.getKind() == ProgressEventKind.JAR_DOWNLOAD_START) {
+            scheduleDownloadJar(event.getEventName());
         }
     }
 }
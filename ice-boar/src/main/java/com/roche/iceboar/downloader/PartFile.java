@@ -0,0 +1,568 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A file for a content being downloaded. When a download breaks, the part file stays on disk together with
+ * {@link CacheValidators} of the content and the next run resumes it by <tt>Range</tt> and <tt>If-Range</tt> headers.
+ * A part file is locked during the download. When it is locked by another run, a temporary part file is used instead.
+ * <p>
+ * A preallocated file is longer than its downloaded part. It is truncated when a download breaks, but not when a run
+ * is killed (e.g. the progress window is closed). So a number of bytes written from the beginning is stored in a file
+ * <tt>&lt;part file&gt;.written</tt> after each chunk and the next run truncates the part file to it.
+ */
+class PartFile {
+
+    static final String SUFFIX = ".part";
+    static final String WRITTEN_SUFFIX = ".written";
+    static final long TRANSFER_SIZE = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+    // how long bytes of a segment are awaited, before checking again, whether its download failed
+    private static final long SEGMENT_POLL_MILLIS = 50;
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileLock lock;
+    private final File writtenFile;
+    private RandomAccessFile writtenOutput;
+    private CacheValidators validators;
+    private String sha256;
+    private boolean complete;
+    private boolean closed;
+    private DownloadLock downloadLock;
+
+    private PartFile(File file, RandomAccessFile randomAccessFile, FileLock lock) {
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.lock = lock;
+        this.writtenFile = new File(file.getPath() + WRITTEN_SUFFIX);
+        this.validators = lock == null ? null : CacheValidators.read(file);
+    }
+
+    static PartFile open(File file) throws IOException {
+        FileUtils.forceMkdir(file.getParentFile());
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        FileLock lock = tryLock(randomAccessFile);
+        if (lock != null) {
+            PartFile partFile = new PartFile(file, randomAccessFile, lock);
+            try {
+                partFile.truncateToWritten();
+            } catch (IOException e) {
+                partFile.close();
+                throw e;
+            }
+            return partFile;
+        }
+        randomAccessFile.close();
+        File temporaryFile = new File(file.getPath() + "_" + System.nanoTime());
+        System.out.println(file + " is downloaded by another run, using " + temporaryFile);
+        return new PartFile(temporaryFile, new RandomAccessFile(temporaryFile, "rw"), null);
+    }
+
+    private static FileLock tryLock(RandomAccessFile randomAccessFile) throws IOException {
+        try {
+            return randomAccessFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            // locked by another thread of this JVM
+            return null;
+        }
+    }
+
+    /**
+     * Drops a preallocated tail left by a killed run, which was not written.
+     */
+    private void truncateToWritten() throws IOException {
+        if (!writtenFile.exists()) {
+            return;
+        }
+        long written = -1;
+        RandomAccessFile input = new RandomAccessFile(writtenFile, "r");
+        try {
+            if (input.length() >= 8) {
+                written = input.readLong();
+            }
+        } finally {
+            input.close();
+        }
+        if (written >= 0 && written < length()) {
+            System.out.println("Only " + written + " of " + length() + " bytes of " + file + " were written");
+            randomAccessFile.setLength(written);
+        }
+        clearWritten();
+    }
+
+    /**
+     * Stores a number of bytes written from the beginning of a preallocated file. The number has a fixed length, so it
+     * is overwritten in place.
+     */
+    private void storeWritten(long written) throws IOException {
+        if (writtenOutput == null) {
+            writtenOutput = new RandomAccessFile(writtenFile, "rw");
+        }
+        writtenOutput.seek(0);
+        writtenOutput.writeLong(written);
+    }
+
+    /**
+     * Deletes a stored number of written bytes, when a length of the file is a number of written bytes.
+     */
+    private void clearWritten() throws IOException {
+        if (writtenOutput != null) {
+            writtenOutput.close();
+            writtenOutput = null;
+        }
+        FileUtils.deleteQuietly(writtenFile);
+    }
+
+    /**
+     * Sets a lock of the download, which is informed about written bytes.
+     */
+    void reportProgressTo(DownloadLock downloadLock) {
+        this.downloadLock = downloadLock;
+    }
+
+    long length() throws IOException {
+        return randomAccessFile.length();
+    }
+
+    void addRangeHeaders(URLConnection connection) throws IOException {
+        long length = length();
+        if (length > 0 && validators != null && validators.getIfRangeValue() != null) {
+            connection.setRequestProperty("Range", "bytes=" + length + "-");
+            connection.setRequestProperty("If-Range", validators.getIfRangeValue());
+        }
+    }
+
+    /**
+     * Drops already downloaded bytes, so a next request downloads a whole content.
+     */
+    void reset() throws IOException {
+        clearWritten();
+        randomAccessFile.setLength(0);
+        validators = null;
+        sha256 = null;
+        complete = false;
+    }
+
+    /**
+     * Writes a response content to the file, from the beginning or (when the response is a partial content) after
+     * already downloaded bytes. A SHA-256 digest is calculated from bytes being written (only already downloaded bytes
+     * are read again).
+     *
+     * @throws IOException when a content is not complete
+     */
+    void write(URLConnection connection, CacheValidators responseValidators, boolean resumed) throws IOException {
+        long offset = 0;
+        long expectedLength = getContentLength(connection);
+        if (resumed) {
+            Matcher matcher = CONTENT_RANGE_PATTERN.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+            if (!matcher.matches() || Long.parseLong(matcher.group(1)) != length()) {
+                throw new IOException("Unexpected Content-Range: " + connection.getHeaderField("Content-Range"));
+            }
+            offset = length();
+            expectedLength = "*".equals(matcher.group(2)) ? -1 : Long.parseLong(matcher.group(2));
+        } else {
+            randomAccessFile.setLength(0);
+        }
+        responseValidators.write(file);
+        if (expectedLength > offset) {
+            // a preallocated file is not fragmented, the tail is dropped when a download breaks
+            storeWritten(offset);
+            randomAccessFile.setLength(expectedLength);
+        }
+        MessageDigest digest = FileUtilsFacade.createSha256Digest();
+        updateDigest(digest, 0, offset);
+        AtomicLong written = new AtomicLong();
+        InputStream input = new DigestInputStream(connection.getInputStream(), digest);
+        try {
+            transfer(input, randomAccessFile.getChannel(), offset, -1, written, true);
+        } finally {
+            input.close();
+            if (length() != offset + written.get()) {
+                randomAccessFile.setLength(offset + written.get());
+            }
+            clearWritten();
+        }
+        if (expectedLength >= 0 && length() != expectedLength) {
+            throw new IOException("Download is not complete: " + length() + " of " + expectedLength + " bytes");
+        }
+        sha256 = FileUtilsFacade.toHex(digest.digest());
+        complete = true;
+    }
+
+    /**
+     * Writes a response content to the file and at the same time extracts ZIP entries from it to a directory. A
+     * SHA-256 digest is calculated from bytes being written. Runs waiting for the download see the progress by a
+     * {@link DownloadLock}, like in {@link #transfer(InputStream, FileChannel, long, long, AtomicLong, boolean)}.
+     */
+    void writeAndExtract(URLConnection connection, CacheValidators responseValidators, File directory)
+            throws IOException {
+        long expectedLength = getContentLength(connection);
+        clearWritten();
+        randomAccessFile.setLength(0);
+        randomAccessFile.seek(0);
+        responseValidators.write(file);
+        // writes at the position of the random access file, it must not be closed
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(randomAccessFile.getFD()), BUFFER_SIZE * 8);
+        MessageDigest digest = FileUtilsFacade.createSha256Digest();
+        InputStream input = new TeeInputStream(new DigestInputStream(reportProgress(connection.getInputStream()),
+                digest), output);
+        try {
+            ZipExtractor.extract(input, directory);
+            // read a central directory of ZIP file, to store a whole file
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (input.read(buffer) != -1) {
+                // only written to the file
+            }
+        } finally {
+            input.close();
+            output.flush();
+        }
+        if (expectedLength >= 0 && length() != expectedLength) {
+            throw new IOException("Download is not complete: " + length() + " of " + expectedLength + " bytes");
+        }
+        sha256 = FileUtilsFacade.toHex(digest.digest());
+        complete = true;
+    }
+
+    /**
+     * @return a stream, which informs a lock of the download about read bytes (in chunks of {@link #TRANSFER_SIZE})
+     */
+    private InputStream reportProgress(InputStream input) {
+        if (downloadLock == null) {
+            return input;
+        }
+        return new ProxyInputStream(input) {
+            private long unreported;
+
+            @Override
+            protected void afterRead(int n) throws IOException {
+                if (n > 0) {
+                    unreported += n;
+                }
+                if (unreported > 0 && (n == -1 || unreported >= TRANSFER_SIZE)) {
+                    downloadLock.transferred(unreported);
+                    unreported = 0;
+                }
+            }
+        };
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return a SHA-256 digest calculated while writing
+     */
+    String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * Updates a digest by bytes of the file. The file is read by its locked channel, because on some systems (e.g.
+     * Windows) a locked file can't be opened again.
+     */
+    private void updateDigest(MessageDigest digest, long position, long length) throws IOException {
+        FileChannel channel = randomAccessFile.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("Can't read " + file + " at byte " + position);
+            }
+            digest.update(buffer.array(), 0, read);
+            position += read;
+        }
+    }
+
+    /**
+     * Writes a response content to a preallocated file by many connections at the same time. The given connection
+     * only tells a length and validators of the content, it is closed without reading a body, because the body would
+     * be read far beyond the first segment. All segments are downloaded by <tt>Range</tt> requests and written at
+     * their positions, the first one in this thread. When a download breaks, the file is truncated to the downloaded
+     * part of the first segment, so it can be resumed.
+     * <p>
+     * A SHA-256 digest is calculated from the first segment while it is written. Then this thread follows the other
+     * segments in order and adds their bytes as soon as they are written (usually from a file system cache), so the
+     * file is not read again after the download.
+     */
+    void writeInSegments(final URL url, URLConnection connection, CacheValidators responseValidators, int segments)
+            throws IOException {
+        final long contentLength = getContentLength(connection);
+        final long segmentSize = (contentLength + segments - 1) / segments;
+        final String ifRange = responseValidators.getIfRangeValue();
+        final FileChannel channel = randomAccessFile.getChannel();
+        FileUtilsFacade.disconnect(connection);
+        randomAccessFile.setLength(0);
+        storeWritten(0);
+        randomAccessFile.setLength(contentLength);
+        responseValidators.write(file);
+
+        ExecutorService executor = Executors.newFixedThreadPool(segments - 1,
+                new DaemonThreadFactory("IceBoar-segment-"));
+        AtomicLong firstSegmentWritten = new AtomicLong();
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            List<AtomicLong> segmentsWritten = new ArrayList<AtomicLong>();
+            for (int i = 1; i < segments; i++) {
+                final long start = i * segmentSize;
+                final long end = Math.min(start + segmentSize, contentLength) - 1;
+                final AtomicLong written = new AtomicLong();
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws IOException {
+                        downloadSegment(url, ifRange, channel, start, end, written, null);
+                        return null;
+                    }
+                }));
+                segmentsWritten.add(written);
+            }
+            MessageDigest digest = FileUtilsFacade.createSha256Digest();
+            downloadSegment(url, ifRange, channel, 0, segmentSize - 1, firstSegmentWritten, digest);
+            for (int i = 1; i < segments; i++) {
+                long start = i * segmentSize;
+                long length = Math.min(start + segmentSize, contentLength) - start;
+                updateDigestWhileWritten(digest, futures.get(i - 1), start, length, segmentsWritten.get(i - 1));
+            }
+            for (Future<Object> future : futures) {
+                waitForSegment(future);
+            }
+            sha256 = FileUtilsFacade.toHex(digest.digest());
+            complete = true;
+        } finally {
+            executor.shutdownNow();
+            if (!complete) {
+                randomAccessFile.setLength(firstSegmentWritten.get());
+            }
+            clearWritten();
+        }
+    }
+
+    /**
+     * @param digest a digest updated by bytes of the first segment, which can be resumed, or null for other segments
+     */
+    private void downloadSegment(URL url, String ifRange, FileChannel channel, long start, long end,
+                                 AtomicLong written, MessageDigest digest) throws IOException {
+        URLConnection connection = FileUtilsFacade.openConnection(url);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        connection.setRequestProperty("If-Range", ifRange);
+        try {
+            Matcher matcher = CONTENT_RANGE_PATTERN.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+            if (FileUtilsFacade.getResponseCode(connection) != HttpURLConnection.HTTP_PARTIAL || !matcher.matches()
+                    || Long.parseLong(matcher.group(1)) != start) {
+                throw new IOException("Server doesn't send bytes " + start + "-" + end + " of " + url);
+            }
+            InputStream input = connection.getInputStream();
+            if (digest != null) {
+                input = new DigestInputStream(input, digest);
+            }
+            try {
+                transfer(input, channel, start, end - start + 1, written, digest != null);
+            } finally {
+                input.close();
+            }
+        } finally {
+            FileUtilsFacade.disconnect(connection);
+        }
+    }
+
+    /**
+     * Updates a digest by bytes of a segment written by another thread, as soon as they are written.
+     */
+    private void updateDigestWhileWritten(MessageDigest digest, Future<Object> future, long start, long length,
+                                          AtomicLong written) throws IOException {
+        long hashed = 0;
+        while (hashed < length) {
+            long available = written.get();
+            if (available > hashed) {
+                updateDigest(digest, start + hashed, available - hashed);
+                hashed = available;
+            } else if (waitForSegment(future, SEGMENT_POLL_MILLIS) && written.get() == hashed) {
+                throw new IOException("Download is not complete: " + hashed + " of " + length + " bytes of segment "
+                        + start + "-" + (start + length - 1));
+            }
+        }
+    }
+
+    private static void waitForSegment(Future<Object> future) throws IOException {
+        waitForSegment(future, -1);
+    }
+
+    /**
+     * @param timeoutMillis a time to wait or -1 to wait until a segment is downloaded
+     * @return true when a segment is downloaded, false when the time elapsed
+     * @throws IOException when a download of a segment failed
+     */
+    private static boolean waitForSegment(Future<Object> future, long timeoutMillis) throws IOException {
+        try {
+            if (timeoutMillis < 0) {
+                future.get();
+            } else {
+                future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Download was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Download of a segment failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * Transfers bytes from a stream to a file channel, starting at a given position, in chunks of {@value
+     * #TRANSFER_SIZE} bytes. A stream is read through a small array of a channel adapter into a temporary direct
+     * buffer, which the JDK reuses per thread, so no buffer is allocated per chunk. The number of written bytes is
+     * updated after each chunk, so it is known also when a download breaks. Runs waiting for the download see the
+     * progress by a {@link DownloadLock}.
+     *
+     * @param length        a number of bytes to transfer or -1 to transfer until the end of the stream
+     * @param storesWritten true when bytes are written from the beginning of a preallocated file, so a number of them
+     *                      is stored (see {@link #storeWritten(long)})
+     */
+    private void transfer(InputStream input, FileChannel channel, long position, long length,
+                          AtomicLong written, boolean storesWritten) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(input);
+        while (length < 0 || written.get() < length) {
+            long count = length < 0 ? TRANSFER_SIZE : Math.min(TRANSFER_SIZE, length - written.get());
+            long transferred = channel.transferFrom(source, position + written.get(), count);
+            if (transferred == 0) {
+                if (length < 0) {
+                    return;
+                }
+                throw new IOException("Download is not complete: " + written.get() + " of " + length + " bytes");
+            }
+            written.addAndGet(transferred);
+            if (storesWritten) {
+                storeWritten(position + written.get());
+            }
+            if (downloadLock != null) {
+                downloadLock.transferred(transferred);
+            }
+        }
+    }
+
+    static long getContentLength(URLConnection connection) {
+        String contentLength = connection.getHeaderField("Content-Length");
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Moves a complete file and its validators to a destination. A rename replaces the destination at once on most
+     * systems, on others (e.g. Windows) the destination is deleted first.
+     */
+    void moveTo(File destination) throws IOException {
+        if (!complete) {
+            throw new IOException("Download of " + file + " is not complete");
+        }
+        FileUtils.forceMkdir(destination.getParentFile());
+        rename(CacheValidators.getValidatorsFile(file), CacheValidators.getValidatorsFile(destination));
+        if (!file.renameTo(destination)) {
+            close();
+            rename(file, destination);
+        }
+    }
+
+    private void rename(File source, File destination) throws IOException {
+        if (!source.renameTo(destination)) {
+            FileUtils.deleteQuietly(destination);
+            if (!source.renameTo(destination)) {
+                throw new IOException("Can't move " + source + " to " + destination);
+            }
+        }
+    }
+
+    /**
+     * Closes the file. A temporary or an empty part file is deleted, when its download is not complete.
+     */
+    void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (writtenOutput != null) {
+                writtenOutput.close();
+                writtenOutput = null;
+            }
+            if (lock != null) {
+                lock.release();
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+        if (!complete && (lock == null || file.length() == 0)) {
+            FileUtils.deleteQuietly(file);
+            FileUtils.deleteQuietly(CacheValidators.getValidatorsFile(file));
+            FileUtils.deleteQuietly(writtenFile);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import net.lingala.zip4j.core.ZipFile;
+import net.lingala.zip4j.exception.ZipException;
+import net.lingala.zip4j.model.FileHeader;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts ZIP files. Java ZIP libraries don't restore Unix file permissions, so an executable flag is set based on
+ * external attributes stored in a central directory of a ZIP file (e.g. for <tt>bin/java</tt> in a JRE).
+ */
+class ZipExtractor {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int UNIX_EXECUTABLE_MASK = 0111;
+
+    private ZipExtractor() {
+    }
+
+    /**
+     * Extracts entries from a ZIP stream, e.g. a stream being downloaded. It stops reading at the central directory,
+     * the stream is not closed.
+     */
+    static void extract(InputStream input, File directory) throws IOException {
+        ZipInputStream zipInput = new ZipInputStream(input);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ZipEntry entry;
+        while ((entry = zipInput.getNextEntry()) != null) {
+            File file = getEntryFile(directory, entry.getName());
+            if (entry.isDirectory()) {
+                FileUtils.forceMkdir(file);
+                continue;
+            }
+            FileUtils.forceMkdir(file.getParentFile());
+            OutputStream output = new FileOutputStream(file);
+            try {
+                int read;
+                while ((read = zipInput.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Extracts a ZIP file using a given number of threads. A central directory is read once, all directories are
+     * created up front and then files are inflated at the same time (the biggest ones first, so they don't finish
+     * last). Executable flags are restored.
+     */
+    static void extract(String zipFileName, File directory, int threads) throws IOException {
+        final ZipFile zipFile = newZipFile(zipFileName);
+        List<FileHeader> fileHeaders = getFileHeaders(zipFile, zipFileName);
+        createDirectories(fileHeaders, directory);
+        Collections.sort(fileHeaders, new Comparator<FileHeader>() {
+            public int compare(FileHeader first, FileHeader second) {
+                long firstSize = first.getUncompressedSize();
+                long secondSize = second.getUncompressedSize();
+                return firstSize > secondSize ? -1 : (firstSize == secondSize ? 0 : 1);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new DaemonThreadFactory("IceBoar-unzip-"));
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final FileHeader fileHeader : fileHeaders) {
+                if (fileHeader.isDirectory()) {
+                    continue;
+                }
+                final File file = getEntryFile(directory, fileHeader.getFileName());
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws IOException {
+                        extractEntry(zipFile, fileHeader, file);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                waitForEntry(future, zipFileName);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<FileHeader> getFileHeaders(ZipFile zipFile, String zipFileName) throws IOException {
+        List<FileHeader> fileHeaders = new ArrayList<FileHeader>();
+        try {
+            for (Object header : zipFile.getFileHeaders()) {
+                fileHeaders.add((FileHeader) header);
+            }
+        } catch (ZipException e) {
+            throw new IOException("Can't read " + zipFileName + ": " + e.getMessage());
+        }
+        return fileHeaders;
+    }
+
+    private static ZipFile newZipFile(String zipFileName) throws IOException {
+        try {
+            return new ZipFile(zipFileName);
+        } catch (ZipException e) {
+            throw new IOException("Can't read " + zipFileName + ": " + e.getMessage());
+        }
+    }
+
+    private static void createDirectories(List<FileHeader> fileHeaders, File directory) throws IOException {
+        Set<File> directories = new TreeSet<File>();
+        directories.add(directory);
+        for (FileHeader fileHeader : fileHeaders) {
+            File file = getEntryFile(directory, fileHeader.getFileName());
+            directories.add(fileHeader.isDirectory() ? file : file.getParentFile());
+        }
+        for (File dir : directories) {
+            FileUtils.forceMkdir(dir);
+        }
+    }
+
+    private static void extractEntry(ZipFile zipFile, FileHeader fileHeader, File file) throws IOException {
+        InputStream input;
+        try {
+            input = zipFile.getInputStream(fileHeader);
+        } catch (ZipException e) {
+            throw new IOException("Can't read " + fileHeader.getFileName() + ": " + e.getMessage());
+        }
+        try {
+            OutputStream output = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            // zip4j checks a CRC of an entry on close
+            input.close();
+        }
+        if (isUnixExecutable(fileHeader)) {
+            file.setExecutable(true, false);
+        }
+    }
+
+    private static void waitForEntry(Future<Object> future, String zipFileName) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Unzip of " + zipFileName + " was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unzip of " + zipFileName + " failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * Sets an executable flag of extracted files, which are executable according to a central directory of a ZIP
+     * file.
+     */
+    static void restoreExecutableFlags(String zipFileName, File directory) throws IOException {
+        for (FileHeader fileHeader : getFileHeaders(newZipFile(zipFileName), zipFileName)) {
+            if (isUnixExecutable(fileHeader)) {
+                getEntryFile(directory, fileHeader.getFileName()).setExecutable(true, false);
+            }
+        }
+    }
+
+    static boolean isUnixExecutable(FileHeader header) {
+        if (header.isDirectory()) {
+            return false;
+        }
+        // a Unix mode is stored in 2 high bytes of external attributes (little-endian)
+        byte[] attributes = header.getExternalFileAttr();
+        if (attributes == null || attributes.length < 4) {
+            return false;
+        }
+        int mode = ((attributes[3] & 0xFF) << 8) | (attributes[2] & 0xFF);
+        return (mode & UNIX_EXECUTABLE_MASK) != 0;
+    }
+
+    /**
+     * @throws IOException when an entry points outside of the directory (e.g. <tt>../../file</tt>)
+     */
+    static File getEntryFile(File directory, String entryName) throws IOException {
+        String name = entryName.replace('\\', '/');
+        if (name.startsWith("/") || ("/" + name + "/").contains("/../")) {
+            throw new IOException("Wrong ZIP entry: " + entryName);
+        }
+        return new File(directory, name);
+    }
+}
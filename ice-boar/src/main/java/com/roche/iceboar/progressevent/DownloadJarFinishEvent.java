@@ -24,6 +24,6 @@ package com.roche.iceboar.progressevent;
 public class DownloadJarFinishEvent extends ProgressEvent {
 
     public DownloadJarFinishEvent(String eventName, String message) {
-        super(eventName, message);
+        super(ProgressEventKind.JAR_DOWNLOAD_FINISH, eventName, message);
     }
 }
@@ -24,6 +24,6 @@ package com.roche.iceboar.progressevent;
 public class DownloadJarStartEvent extends ProgressEvent {
 
     public DownloadJarStartEvent(String eventName, String message) {
-        super(eventName, message);
+        super(ProgressEventKind.JAR_DOWNLOAD_START, eventName, message);
     }
 }
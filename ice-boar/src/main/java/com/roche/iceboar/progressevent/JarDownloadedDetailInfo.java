@@ -0,0 +1,56 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.progressevent;
+
+/**
+ * Contains an information, where downloaded JAR file is stored in the local cache.
+ */
+public class JarDownloadedDetailInfo implements ProgressEventDetailInfo {
+
+    private String jarUrl;
+    private String pathToJarFile;
+    private String hash;
+
+    public JarDownloadedDetailInfo() {
+    }
+
+    public String getJarUrl() {
+        return jarUrl;
+    }
+
+    public void setJarUrl(String jarUrl) {
+        this.jarUrl = jarUrl;
+    }
+
+    public String getPathToJarFile() {
+        return pathToJarFile;
+    }
+
+    public void setPathToJarFile(String pathToJarFile) {
+        this.pathToJarFile = pathToJarFile;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+}
@@ -18,22 +18,33 @@
 
 package com.roche.iceboar.progressevent;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-
 /**
- * Class for representing Progress Events.
+ * Class for representing Progress Events. Events are identified by a {@link ProgressEventKind} and a name, observers
+ * usually check only the kind.
  */
 public class ProgressEvent {
+    private final ProgressEventKind kind;
     private final String eventName;
     private String message;
     private ProgressEventDetailInfo detailInfo;
 
     public ProgressEvent(String eventName, String message) {
+        this(ProgressEventKind.forEventName(eventName), eventName, message);
+    }
+
+    protected ProgressEvent(ProgressEventKind kind, String eventName, String message) {
+        this.kind = kind;
         this.eventName = eventName;
         this.message = message;
     }
 
+    /**
+     * @return a kind of this event or null for events with other names than {@link ProgressEventFactory} creates
+     */
+    public ProgressEventKind getKind() {
+        return kind;
+    }
+
     public String getEventName() {
         return eventName;
     }
@@ -62,16 +73,12 @@ public class ProgressEvent {
 
         ProgressEvent that = (ProgressEvent) o;
 
-        return new EqualsBuilder()
-                .append(eventName, that.eventName)
-                .isEquals();
+        return kind == that.kind && (eventName == null ? that.eventName == null : eventName.equals(that.eventName));
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 37)
-                .append(eventName)
-                .toHashCode();
+        return eventName == null ? 0 : eventName.hashCode();
     }
 
     @Override
@@ -21,11 +21,14 @@ package com.roche.iceboar.progressevent;
 import com.roche.iceboar.settings.GlobalSettings;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.roche.iceboar.downloader.FileUtilsFacade.extractFilenameFromURL;
 
 /**
- * Factory for Progress Events.
+ * Factory for Progress Events. Events without a detail info are created once and the same instances are returned
+ * every time, events with a detail info (e.g. {@link #getJREUnzippedEvent()}) are always new.
  */
 public class ProgressEventFactory {
 
@@ -36,8 +39,14 @@ public class ProgressEventFactory {
     public static final String EVENT_APP_STARTING = "app starting";
     public static final String EVENT_APP_STARTED = "app started";
 
+    private final ProgressEvent jreDownloadEvent = new ProgressEvent(EVENT_JRE_DOWNLOAD, "JVM download...");
+    private final ProgressEvent jreUnzipEvent = new ProgressEvent(EVENT_JRE_UNZIP, "JVM unzip...");
+    private final ProgressEvent appStartingEvent = new ProgressEvent(EVENT_APP_STARTING, "Starting application");
+    private final ProgressEvent appStartedEvent = new ProgressEvent(EVENT_APP_STARTED, "Application is started");
+    private final ConcurrentMap<String, ProgressEvent> downloadJarStartEvents =
+            new ConcurrentHashMap<String, ProgressEvent>();
     private Set<ProgressEvent> allEvents = new HashSet<ProgressEvent>();
-    private List<ProgressEvent> eventsToReply = new ArrayList<ProgressEvent>();
+    private Map<ProgressEvent, Set<ProgressEvent>> eventsToReply = new LinkedHashMap<ProgressEvent, Set<ProgressEvent>>();
 
     public void init(GlobalSettings settings) {
         allEvents.add(getJREDownloadEvent());
@@ -51,12 +60,16 @@ public class ProgressEventFactory {
         allEvents.add(getAppStartingEvent());
         allEvents.add(getAppStartedEvent());
 
-        eventsToReply.add(getJREDownloadEvent());
-        eventsToReply.add(getJREUnzipEvent());
+        // JRE and JARs are independent, the application can be started when all of them are ready
+        Set<ProgressEvent> appStartingDependencies = new HashSet<ProgressEvent>();
+        eventsToReply.put(getJREDownloadEvent(), new HashSet<ProgressEvent>());
+        eventsToReply.put(getJREUnzipEvent(), Collections.singleton(getJREDownloadedEvent()));
+        appStartingDependencies.add(getJREUnzippedEvent());
         for (String url : settings.getJarURLs()) {
-            eventsToReply.add(createDownloadStartEvent(url));
+            eventsToReply.put(createDownloadStartEvent(url), new HashSet<ProgressEvent>());
+            appStartingDependencies.add(getDownloadJarFinishEvent(url));
         }
-        eventsToReply.add(getAppStartingEvent());
+        eventsToReply.put(getAppStartingEvent(), appStartingDependencies);
     }
 
     private ProgressEvent createDownloadStartEvent(String url) {
@@ -68,7 +81,7 @@ public class ProgressEventFactory {
     }
 
     public ProgressEvent getJREDownloadEvent() {
-        return new ProgressEvent(EVENT_JRE_DOWNLOAD, "JVM download...");
+        return jreDownloadEvent;
     }
 
     public ProgressEvent getJREDownloadedEvent() {
@@ -76,7 +89,7 @@ public class ProgressEventFactory {
     }
 
     public ProgressEvent getJREUnzipEvent() {
-        return new ProgressEvent(EVENT_JRE_UNZIP, "JVM unzip...");
+        return jreUnzipEvent;
     }
 
     public ProgressEvent getJREUnzippedEvent() {
@@ -84,11 +97,11 @@ public class ProgressEventFactory {
     }
 
     public ProgressEvent getAppStartingEvent() {
-        return new ProgressEvent(EVENT_APP_STARTING, "Starting application");
+        return appStartingEvent;
     }
 
     public ProgressEvent getAppStartedEvent() {
-        return new ProgressEvent(EVENT_APP_STARTED, "Application is started");
+        return appStartedEvent;
     }
 
     public ProgressEvent getDownloadJarFinishEvent(String jarUrl) {
@@ -97,10 +110,21 @@ public class ProgressEventFactory {
     }
 
     public ProgressEvent getDownloadJarStartEvent(String jarUrl) {
-        return new DownloadJarStartEvent(jarUrl, "Download of " + extractFilenameFromURL(jarUrl));
+        ProgressEvent event = downloadJarStartEvents.get(jarUrl);
+        if (event == null) {
+            event = new DownloadJarStartEvent(jarUrl, "Download of " + extractFilenameFromURL(jarUrl));
+            ProgressEvent previous = downloadJarStartEvents.putIfAbsent(jarUrl, event);
+            if (previous != null) {
+                event = previous;
+            }
+        }
+        return event;
     }
 
-    public List<ProgressEvent> getEventsToReply() {
-        return eventsToReply;
+    /**
+     * Returns events to reply, each of them with a set of events that need to happen before it can be replayed.
+     */
+    public Map<ProgressEvent, Set<ProgressEvent>> getEventsToReply() {
+        return Collections.unmodifiableMap(eventsToReply);
     }
 }
@@ -0,0 +1,68 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.progressevent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Kinds of {@link ProgressEvent}s. Observers compare kinds instead of whole events and {@link ProgressEventQueue}
+ * informs an observer only about kinds it is registered for.
+ */
+public enum ProgressEventKind {
+
+    JRE_DOWNLOAD(ProgressEventFactory.EVENT_JRE_DOWNLOAD),
+    JRE_DOWNLOADED(ProgressEventFactory.EVENT_JRE_DOWNLOADED),
+    JRE_UNZIP(ProgressEventFactory.EVENT_JRE_UNZIP),
+    JRE_UNZIPPED(ProgressEventFactory.EVENT_JRE_UNZIPPED),
+    /**
+     * A name of an event of this kind is an URL of a JAR (see {@link DownloadJarStartEvent}).
+     */
+    JAR_DOWNLOAD_START(null),
+    /**
+     * A name of an event of this kind is an URL of a JAR (see {@link DownloadJarFinishEvent}).
+     */
+    JAR_DOWNLOAD_FINISH(null),
+    APP_STARTING(ProgressEventFactory.EVENT_APP_STARTING),
+    APP_STARTED(ProgressEventFactory.EVENT_APP_STARTED);
+
+    private static final Map<String, ProgressEventKind> KINDS_BY_EVENT_NAME = new HashMap<String, ProgressEventKind>();
+
+    static {
+        for (ProgressEventKind kind : values()) {
+            if (kind.eventName != null) {
+                KINDS_BY_EVENT_NAME.put(kind.eventName, kind);
+            }
+        }
+    }
+
+    private final String eventName;
+
+    ProgressEventKind(String eventName) {
+        this.eventName = eventName;
+    }
+
+    /**
+     * @return a kind of an event with the given name or null, when the name isn't one of the fixed names (e.g. an
+     * URL of a JAR)
+     */
+    public static ProgressEventKind forEventName(String eventName) {
+        return KINDS_BY_EVENT_NAME.get(eventName);
+    }
+}
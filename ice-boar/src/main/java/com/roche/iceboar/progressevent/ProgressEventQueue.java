@@ -18,41 +18,73 @@
 
 package com.roche.iceboar.progressevent;
 
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Simple Queue for Progress Events.
+ * Queue for Progress Events. It is only a thread-safe publish queue: events can be published by any thread. They are
+ * queued without a lock and observers are informed about them one by one, in order of publishing, by the thread which
+ * publishes while no other thread does it. An event published by an observer is queued until all observers are
+ * informed about the current event. An observer, which must not hold up the others (e.g. a Swing window), hands
+ * events over to its own thread.
  */
 public class ProgressEventQueue {
 
-    private List<ProgressEventObserver> observers = new ArrayList<ProgressEventObserver>();
-    private List<ProgressEvent> eventsToReplay = new ArrayList<ProgressEvent>();
-    private boolean isInProgress = false;
+    // observers in order of registration, events without a kind are sent only to observers of all kinds
+    private final Map<ProgressEventKind, List<ProgressEventObserver>> observersByKind =
+            new EnumMap<ProgressEventKind, List<ProgressEventObserver>>(ProgressEventKind.class);
+    private final List<ProgressEventObserver> observersOfAllKinds = new CopyOnWriteArrayList<ProgressEventObserver>();
+    private final Queue<ProgressEvent> events = new ConcurrentLinkedQueue<ProgressEvent>();
+    private final AtomicBoolean isInProgress = new AtomicBoolean();
 
-    public void registerObserver(ProgressEventObserver observer) {
-        observers.add(observer);
+    public ProgressEventQueue() {
+        for (ProgressEventKind kind : ProgressEventKind.values()) {
+            observersByKind.put(kind, new CopyOnWriteArrayList<ProgressEventObserver>());
+        }
     }
 
-    public void update(ProgressEvent event) {
-        if (isInProgress) {
-            eventsToReplay.add(event);
+    /**
+     * Registers an observer of events of the given kinds or of all events, when no kind is given. The observer is
+     * informed by a thread which publishes events.
+     */
+    public void registerObserver(ProgressEventObserver observer, ProgressEventKind... kinds) {
+        if (kinds.length == 0) {
+            observersOfAllKinds.add(observer);
+            for (List<ProgressEventObserver> observers : observersByKind.values()) {
+                observers.add(observer);
+            }
             return;
         }
-        if (eventsToReplay.size() == 0) {
-            informAllObservers(event);
+        for (ProgressEventKind kind : kinds) {
+            observersByKind.get(kind).add(observer);
         }
-        while (eventsToReplay.size() > 0) {
-            informAllObservers(eventsToReplay.remove(0));
+    }
+
+    public void update(ProgressEvent event) {
+        events.offer(event);
+        // when another thread (or this one in an observer) informs observers, it takes the event too
+        while (!events.isEmpty() && isInProgress.compareAndSet(false, true)) {
+            try {
+                ProgressEvent next;
+                while ((next = events.poll()) != null) {
+                    informAllObservers(next);
+                }
+            } finally {
+                isInProgress.set(false);
+            }
         }
     }
 
     private void informAllObservers(ProgressEvent event) {
-        isInProgress = true;
+        List<ProgressEventObserver> observers = event.getKind() == null ? observersOfAllKinds
+                : observersByKind.get(event.getKind());
         for (ProgressEventObserver observer : observers) {
             observer.update(event);
         }
-        isInProgress = false;
     }
-
 }
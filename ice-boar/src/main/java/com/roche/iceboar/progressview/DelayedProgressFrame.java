@@ -0,0 +1,147 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.progressview;
+
+import com.roche.iceboar.downloader.DownloadProgressListener;
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventKind;
+import com.roche.iceboar.progressevent.ProgressEventObserver;
+import com.roche.iceboar.settings.GlobalSettings;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Shows {@link ProgressJFrame} only when the target application isn't started after a given delay, e.g. because
+ * something has to be downloaded. When everything is in the cache, the application is started without initializing
+ * AWT and Swing. Events published before the frame is shown are replayed to its {@link ProgressUpdater}. This
+ * observer is informed directly by {@link com.roche.iceboar.progressevent.ProgressEventQueue}, the frame is built
+ * and closed on the event dispatch thread.
+ */
+public class DelayedProgressFrame implements ProgressEventObserver, DownloadProgressListener {
+
+    private final GlobalSettings settings;
+    private final ProgressEventFactory progressEventFactory;
+    private final ImageLoader imageLoader;
+    private final Executor swingExecutor;
+    private final List<ProgressEvent> events = new ArrayList<ProgressEvent>();
+    private ProgressJFrame frame;
+    private ProgressUpdater progress;
+    private boolean appStarted;
+
+    public DelayedProgressFrame(GlobalSettings settings, ProgressEventFactory progressEventFactory,
+                                ImageLoader imageLoader) {
+        this(settings, progressEventFactory, imageLoader, new SwingExecutor());
+    }
+
+    DelayedProgressFrame(GlobalSettings settings, ProgressEventFactory progressEventFactory, ImageLoader imageLoader,
+                         Executor swingExecutor) {
+        this.settings = settings;
+        this.progressEventFactory = progressEventFactory;
+        this.imageLoader = imageLoader;
+        this.swingExecutor = swingExecutor;
+    }
+
+    /**
+     * Shows the frame after a given time, unless the application is already started. AWT isn't touched before.
+     */
+    public void showAfter(final long delayMillis) {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!isAppStarted()) {
+                    swingExecutor.execute(new Runnable() {
+                        public void run() {
+                            show();
+                        }
+                    });
+                }
+            }
+        }, "IceBoar-progress-frame");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private synchronized boolean isAppStarted() {
+        return appStarted;
+    }
+
+    ProgressJFrame createFrame() {
+        return new ProgressJFrame();
+    }
+
+    private void show() {
+        if (isAppStarted()) {
+            return;
+        }
+        // created without holding a lock, so events are not blocked by initialization of Swing
+        ProgressJFrame newFrame = createFrame();
+        ProgressUpdater newProgress = newFrame.init(settings, progressEventFactory, imageLoader);
+        synchronized (this) {
+            if (appStarted) {
+                newFrame.dispose();
+                return;
+            }
+            for (ProgressEvent event : events) {
+                newProgress.update(event);
+            }
+            events.clear();
+            frame = newFrame;
+            progress = newProgress;
+            frame.setVisible(true);
+        }
+    }
+
+    public synchronized void update(ProgressEvent event) {
+        if (progress == null) {
+            events.add(event);
+        } else {
+            progress.update(event);
+        }
+        if (event.getKind() == ProgressEventKind.APP_STARTED) {
+            appStarted = true;
+            // Ice Boar isn't closed, when the cache is updated now or the application runs in this process
+            if (frame != null && (settings.isUpdateInBackground() || settings.isRunInCurrentProcess())) {
+                closeFrame();
+            }
+        }
+    }
+
+    private void closeFrame() {
+        final ProgressJFrame startedFrame = frame;
+        swingExecutor.execute(new Runnable() {
+            public void run() {
+                startedFrame.dispose();
+            }
+        });
+    }
+
+    public synchronized void downloadedByAnotherRun(URL url, long downloaded, long length) {
+        if (progress != null) {
+            progress.downloadedByAnotherRun(url, downloaded, length);
+        }
+    }
+}
@@ -1,21 +1,30 @@
 package com.roche.iceboar.progressview;
 
+import com.roche.iceboar.downloader.FileUtilsFacade;
 import com.roche.iceboar.settings.GlobalSettings;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * This class can load icons used in JFrames as application icons.
+ * This class can load icons used in JFrames as application icons. Icons from a server are stored on disk and
+ * revalidated on next runs (see {@link FileUtilsFacade#saveContentFromURLToFileIfModified(URL, File, File)}).
  */
 public class ImageLoader {
 
+    private final FileUtilsFacade fileUtils;
+
+    public ImageLoader(FileUtilsFacade fileUtils) {
+        this.fileUtils = fileUtils;
+    }
+
     private final String[] DEFAULT_ICONS = new String[]{"/img/IceBoar-icon-128x128.png",
             "/img/IceBoar-icon-64x64.png", "/img/IceBoar-icon-32x32.png", "/img/IceBoar-icon-16x16.png"};
 
@@ -35,25 +44,27 @@ public class ImageLoader {
             return loadDefaultIcons();
         }
 
-        return loadIconsFromServer(iconsULRs.toArray(new String[iconsULRs.size()]));
+        return loadIconsFromServer(settings, iconsULRs.toArray(new String[iconsULRs.size()]));
     }
 
     public Image loadSplashScreen(GlobalSettings settings) {
         String splashImage = settings.getCustomSplashImage();
-        return loadImage(splashImage);
+        return loadImage(settings, splashImage);
     }
 
-    private List<Image> loadIconsFromServer(String... iconsURLs) {
+    private List<Image> loadIconsFromServer(GlobalSettings settings, String... iconsURLs) {
         List<Image> icons = new ArrayList<Image>();
         for (String url : iconsURLs) {
-            icons.add(loadImage(url));
+            icons.add(loadImage(settings, url));
         }
         return icons;
     }
 
-    private Image loadImage(String url) {
+    private Image loadImage(GlobalSettings settings, String url) {
         try {
-            BufferedImage image = ImageIO.read(new URL(url));
+            File imageFile = new File(settings.getDestinationPathForIcon(url));
+            downloadImage(url, imageFile);
+            BufferedImage image = ImageIO.read(imageFile);
             System.out.println("Load icon successful: " + url);
             return image;
         } catch (IOException e) {
@@ -61,4 +72,15 @@ public class ImageLoader {
         }
         return null;
     }
+
+    private void downloadImage(String url, File imageFile) throws IOException {
+        try {
+            fileUtils.saveContentFromURLToFileIfModified(new URL(url), imageFile, imageFile);
+        } catch (IOException e) {
+            if (!imageFile.exists()) {
+                throw e;
+            }
+            System.out.println("Can't revalidate icon: " + url + ", using cached copy");
+        }
+    }
 }
@@ -18,20 +18,25 @@
 
 package com.roche.iceboar.progressview;
 
+import com.roche.iceboar.downloader.DownloadProgressListener;
 import com.roche.iceboar.progressevent.ProgressEvent;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
 import com.roche.iceboar.progressevent.ProgressEventObserver;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.swing.*;
+import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * This class is an observer of events. When next event come (by calling {@link #update(com.roche.iceboar.progressevent.ProgressEvent event)}) a progress
- * bar and information label is updated.
+ * bar and information label is updated. A progress of a download done by another run, which this run waits for, is shown
+ * in the information label.
  */
-public class ProgressUpdater implements ProgressEventObserver {
+public class ProgressUpdater implements ProgressEventObserver, DownloadProgressListener {
+
+    private static final long MEGABYTE = 1024 * 1024;
 
     private final JProgressBar progressBar;
     private final JLabel messageLabel;
@@ -72,6 +77,20 @@ public class ProgressUpdater implements ProgressEventObserver {
         });
     }
 
+    public void downloadedByAnotherRun(URL url, long downloaded, long length) {
+        final String message = "Downloaded by another run: " + toMegabytes(downloaded)
+                + (length < 0 ? "" : " of " + toMegabytes(length)) + " MB";
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                messageLabel.setText(message);
+            }
+        });
+    }
+
+    private String toMegabytes(long bytes) {
+        return bytes < 0 ? "?" : String.valueOf(bytes / MEGABYTE);
+    }
+
     private String prepareStackTrace(StackTraceElement[] stackTrace) {
         if (stackTrace.length < 5) {
             // return only interesting part
@@ -0,0 +1,33 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.progressview;
+
+import javax.swing.*;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the event dispatch thread. It is used to inform an observer, which updates a view, about progress
+ * events (see {@link com.roche.iceboar.progressevent.ProgressEventQueue}).
+ */
+public class SwingExecutor implements Executor {
+
+    public void execute(Runnable task) {
+        SwingUtilities.invokeLater(task);
+    }
+}
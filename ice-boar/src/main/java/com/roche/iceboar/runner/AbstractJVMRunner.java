@@ -1,17 +1,21 @@
 package com.roche.iceboar.runner;
 
+import com.roche.iceboar.cachestorage.CacheUsageLock;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
 import com.roche.iceboar.progressevent.ProgressEventQueue;
 import com.roche.iceboar.settings.GlobalSettings;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * User: koziolek
  */
 public abstract class AbstractJVMRunner implements JVMRunner {
+
+    private static final long PROCESS_OUTPUT_FILE_LIMIT = 1024L * 1024;
+
     protected final ProgressEventFactory progressEventFactory;
     protected GlobalSettings settings;
     protected ExecutableCommandFactory executableCommandFactory;
@@ -26,52 +30,50 @@ public abstract class AbstractJVMRunner implements JVMRunner {
 
     protected abstract void runMainClass();
 
-    protected void redirectProcessOutputsToDebugWindow(final Process process) {
-        startOutputReaderThread(process);
-        startErrorReaderThread(process);
+    /**
+     * Locks JARs and a JRE of the target application in the cache, so they are not deleted while it runs.
+     *
+     * @param jrePath a path to a JRE from the cache or null
+     */
+    protected void lockUsedFiles(String jrePath) {
+        List<File> files = new ArrayList<File>();
+        if (jrePath != null) {
+            files.add(new File(jrePath));
+        }
+        for (String jarPath : executableCommandFactory.getJarPathsFromCache(settings)) {
+            files.add(new File(jarPath));
+        }
+        CacheUsageLock.lockShared(files);
     }
 
-    private void startOutputReaderThread(final Process process) {
-        Thread thread1 = new Thread(new Runnable() {
-            public void run() {
-                BufferedReader inputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                String line;
-                while (true) {
-                    try {
-                        if (inputReader.ready()) {
-                            line = inputReader.readLine();
-                            if (line != null) {
-                                System.out.println("Process input: " + line);
-                            }
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        });
-        thread1.start();
+    /**
+     * Reads outputs of the target application until it closes them and writes them where {@link
+     * GlobalSettings#JNLP_PROCESS_OUTPUT} defines.
+     */
+    protected void redirectProcessOutputs(Process process) {
+        new ProcessOutputPump(createProcessOutputSink()).start(process);
     }
 
-    private void startErrorReaderThread(final Process process) {
-        Thread thread2 = new Thread(new Runnable() {
-            public void run() {
-                BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-                String line;
-                while (true) {
-                    try {
-                        if (errorReader.ready()) {
-                            line = errorReader.readLine();
-                            if (line != null) {
-                                System.out.println("Process error: " + line);
-                            }
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+    private ProcessOutputSink createProcessOutputSink() {
+        if (GlobalSettings.PROCESS_OUTPUT_FILE.equals(settings.getProcessOutput())) {
+            return new RotatingFileOutputSink(new File(settings.getProcessOutputPath()), PROCESS_OUTPUT_FILE_LIMIT);
+        }
+        if (GlobalSettings.PROCESS_OUTPUT_DISCARD.equals(settings.getProcessOutput())) {
+            return new ProcessOutputSink() {
+                public void println(String line) {
                 }
+
+                public void close() {
+                }
+            };
+        }
+        return new ProcessOutputSink() {
+            public void println(String line) {
+                System.out.println(line);
+            }
+
+            public void close() {
             }
-        });
-        thread2.start();
+        };
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.runner;
+
+import com.roche.iceboar.IceBoarException;
+import com.roche.iceboar.downloader.CachedVersion;
+import com.roche.iceboar.downloader.FileUtilsFacade;
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventKind;
+import com.roche.iceboar.progressevent.ProgressEventObserver;
+import com.roche.iceboar.progressevent.ProgressEventQueue;
+import com.roche.iceboar.settings.GlobalSettings;
+import com.roche.iceboar.settings.GlobalSettingsFactory;
+
+import javax.swing.*;
+import java.util.List;
+
+/**
+ * Updates the cache, when the target application was started from it (see {@link
+ * GlobalSettings#JNLP_UPDATE_POLICY}). Settings are read again with a revalidated manifest and a JRE and JARs are
+ * checked and downloaded by {@link TargetApplicationRunner#download(GlobalSettings, ExecutableCommandFactory,
+ * ProgressEventFactory, ProgressEventQueue)}, so a new version is started next time. It is done before Ice Boar is
+ * closed by {@link CloseApplicationObserver}. When the update fails, the cached version is still used.
+ */
+public class BackgroundUpdater implements ProgressEventObserver {
+
+    private final GlobalSettings settings;
+    private final ExecutableCommandFactory executableCommandFactory;
+
+    public BackgroundUpdater(GlobalSettings settings, ExecutableCommandFactory executableCommandFactory) {
+        this.settings = settings;
+        this.executableCommandFactory = executableCommandFactory;
+    }
+
+    public void update(ProgressEvent event) {
+        if (event.getKind() == ProgressEventKind.APP_STARTED) {
+            try {
+                List<String> arguments = settings.getApplicationArguments();
+                updateCache(GlobalSettingsFactory.getGlobalSettingsForUpdate(
+                        arguments.toArray(new String[arguments.size()])));
+            } catch (IceBoarException e) {
+                System.out.println("Update of the cache failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    void updateCache(GlobalSettings newSettings) {
+        ProgressEventFactory updateEventFactory = new ProgressEventFactory();
+        updateEventFactory.init(newSettings);
+        ProgressEventQueue updateEventQueue = new ProgressEventQueue();
+        if (newSettings.isUpdatePrompt() && !isUpToDate(newSettings, updateEventFactory, updateEventQueue)
+                && !confirmDownload()) {
+            System.out.println("Update of the cache declined");
+            return;
+        }
+        System.out.println("Update of the cache started");
+        new TargetApplicationRunner().download(newSettings, executableCommandFactory, updateEventFactory,
+                updateEventQueue);
+        System.out.println("Update of the cache finished");
+    }
+
+    /**
+     * @return true when the cache contains files with SHA-256 digests expected by new settings, other files are
+     * revalidated without asking a user
+     */
+    private boolean isUpToDate(GlobalSettings newSettings, ProgressEventFactory updateEventFactory,
+                               ProgressEventQueue updateEventQueue) {
+        return new CachedVersion(newSettings, new FileUtilsFacade(), updateEventFactory, updateEventQueue)
+                .isComplete();
+    }
+
+    /**
+     * @return true when a user agrees to download a new version
+     */
+    boolean confirmDownload() {
+        int answer = JOptionPane.showConfirmDialog(null, "A new version of " + settings.getFrameTitle()
+                + " is available. Download it now? It will be started next time.", settings.getFrameTitle(),
+                JOptionPane.YES_NO_OPTION);
+        return answer == JOptionPane.YES_OPTION;
+    }
+}
@@ -19,29 +19,28 @@
 package com.roche.iceboar.runner;
 
 import com.roche.iceboar.progressevent.ProgressEvent;
-import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventKind;
 import com.roche.iceboar.progressevent.ProgressEventObserver;
 import com.roche.iceboar.settings.GlobalSettings;
 
 /**
- * Close Ice Boar Application, when {@link GlobalSettings#JNLP_CLOSE_ON_END} is set to true.
+ * Close Ice Boar Application, when {@link GlobalSettings#JNLP_CLOSE_ON_END} is set to true. It is never closed, when
+ * the target application runs in the same process (see {@link GlobalSettings#JNLP_RUN_IN_CURRENT_PROCESS}).
  */
 public class CloseApplicationObserver implements ProgressEventObserver {
 
     private static final int TWO_SECONDS = 2000;
     private final GlobalSettings settings;
-    private final ProgressEventFactory progressEventFactory;
 
-    public CloseApplicationObserver(GlobalSettings settings, ProgressEventFactory progressEventFactory) {
+    public CloseApplicationObserver(GlobalSettings settings) {
         this.settings = settings;
-        this.progressEventFactory = progressEventFactory;
     }
 
     public void update(ProgressEvent event) {
-        if (event.equals(progressEventFactory.getAppStartedEvent())) {
+        if (event.getKind() == ProgressEventKind.APP_STARTED) {
             try {
                 Thread.sleep(TWO_SECONDS);     // time for starting target app
-                if (settings.isCloseOnEnd()) {
+                if (settings.isCloseOnEnd() && !settings.isRunInCurrentProcess()) {
                     System.exit(0);
                 }
             } catch (InterruptedException e) {
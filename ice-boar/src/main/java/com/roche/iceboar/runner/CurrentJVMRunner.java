@@ -18,13 +18,29 @@
 
 package com.roche.iceboar.runner;
 
+import com.roche.iceboar.IceBoarException;
 import com.roche.iceboar.progressevent.ProgressEvent;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventKind;
 import com.roche.iceboar.progressevent.ProgressEventQueue;
 import com.roche.iceboar.settings.GlobalSettings;
 
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.AllPermission;
+import java.security.CodeSource;
+import java.security.PermissionCollection;
+import java.security.Permissions;
+import java.util.List;
+
 /**
- * Runs a target user application on JVM same as JNLP were run.
+ * Runs a target user application on JVM same as JNLP were run. By default a new process of this JVM is started. When
+ * {@link GlobalSettings#isRunInCurrentProcess()}, the application is started in this process: its JARs are loaded by
+ * a dedicated class loader and a main method is called in a new thread.
  */
 public class CurrentJVMRunner extends AbstractJVMRunner {
 
@@ -34,7 +50,11 @@ public class CurrentJVMRunner extends AbstractJVMRunner {
     }
 
     public void runOnJVM() {
-        runMainClass();
+        if (settings.isRunInCurrentProcess()) {
+            runMainClassInCurrentProcess();
+        } else {
+            runMainClass();
+        }
     }
 
     @Override
@@ -42,15 +62,82 @@ public class CurrentJVMRunner extends AbstractJVMRunner {
         ExecutableCommand command = executableCommandFactory.createRunTargetApplicationCommand(
                 settings, settings.getCurrentJavaCommand());
 
+        lockUsedFiles(null);
         Process process = command.exec();
 
-        redirectProcessOutputsToDebugWindow(process);
+        redirectProcessOutputs(process);
+        progressEventQueue.update(progressEventFactory.getAppStartedEvent());
+    }
+
+    private void runMainClassInCurrentProcess() {
+        System.out.println("Start " + settings.getMainClass() + " in current process");
+        ClassLoader classLoader = new TargetClassLoader(getClassPath(),
+                ClassLoader.getSystemClassLoader().getParent());
+        lockUsedFiles(null);
+        final Method mainMethod = getMainMethod(classLoader);
+        List<String> arguments = settings.getApplicationArguments();
+        final String[] args = arguments.toArray(new String[arguments.size()]);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    mainMethod.invoke(null, (Object) args);
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                } catch (InvocationTargetException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        }, "main");
+        thread.setContextClassLoader(classLoader);
+        thread.start();
         progressEventQueue.update(progressEventFactory.getAppStartedEvent());
     }
 
+    private URL[] getClassPath() {
+        List<String> jars = executableCommandFactory.getJarPathsFromCache(settings);
+        URL[] urls = new URL[jars.size()];
+        try {
+            for (int i = 0; i < jars.size(); i++) {
+                urls[i] = new File(jars.get(i)).toURI().toURL();
+            }
+        } catch (MalformedURLException e) {
+            throw new IceBoarException("Can't start " + settings.getMainClass() + ". Please try again.", e);
+        }
+        return urls;
+    }
+
+    private Method getMainMethod(ClassLoader classLoader) {
+        try {
+            return classLoader.loadClass(settings.getMainClass()).getMethod("main", String[].class);
+        } catch (ClassNotFoundException e) {
+            throw new IceBoarException("Can't find a main class " + settings.getMainClass(), e);
+        } catch (NoSuchMethodException e) {
+            throw new IceBoarException("Can't find a main method in " + settings.getMainClass(), e);
+        }
+    }
+
     public void update(ProgressEvent event) {
-        if (event.equals(progressEventFactory.getAppStartingEvent())) {
+        if (event.getKind() == ProgressEventKind.APP_STARTING) {
             runOnJVM();
         }
     }
+
+    /**
+     * Loads only JARs of the target application and classes of the JRE, so it doesn't see libraries of Ice Boar. All
+     * permissions are granted, the same as to Ice Boar, because a security manager of Java Web Start grants only
+     * sandbox permissions to classes from other class loaders.
+     */
+    private static class TargetClassLoader extends URLClassLoader {
+
+        TargetClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected PermissionCollection getPermissions(CodeSource codeSource) {
+            Permissions permissions = new Permissions();
+            permissions.add(new AllPermission());
+            return permissions;
+        }
+    }
 }
@@ -18,6 +18,9 @@
 
 package com.roche.iceboar.runner;
 
+import com.roche.iceboar.IceBoarException;
+import com.roche.iceboar.cachestorage.CacheStatus;
+import com.roche.iceboar.cachestorage.StatusInfo;
 import com.roche.iceboar.downloader.FileUtilsFacade;
 import com.roche.iceboar.settings.GlobalSettings;
 import org.apache.commons.lang3.StringUtils;
@@ -39,7 +42,7 @@ public class ExecutableCommandFactory {
         cmdList.addAll(settings.getJavaVmArgs());
         cmdList.add("-cp");
         // without patch separator on begin doesn't work I don't know why
-        cmdList.add(settings.getPathSeparator() + settings.getClassPathAsText());
+        cmdList.add(settings.getPathSeparator() + createClassPathFromCache(settings));
         cmdList.add(settings.getMainClass());
         cmdList.addAll(settings.getApplicationArguments());
 
@@ -48,6 +51,26 @@ public class ExecutableCommandFactory {
         return new ExecutableCommand(strings.toArray(new String[strings.size()]));
     }
 
+    private String createClassPathFromCache(GlobalSettings settings) {
+        return StringUtils.join(getJarPathsFromCache(settings), settings.getPathSeparator());
+    }
+
+    /**
+     * @return paths of downloaded JARs of the target application
+     */
+    public List<String> getJarPathsFromCache(GlobalSettings settings) {
+        CacheStatus cacheStatus = settings.getCacheStatus();
+        List<String> jars = new ArrayList<String>();
+        for (String jarUrl : settings.getJarURLs()) {
+            StatusInfo statusInfo = cacheStatus.getJarDownloadedStatusInfo(jarUrl);
+            if (statusInfo == null) {
+                throw new IceBoarException("A JAR " + jarUrl + " is not downloaded. Please try again.", null);
+            }
+            jars.add(statusInfo.getPath());
+        }
+        return jars;
+    }
+
     private List<String> removeBlankString(List<String> cmdList) {
         List<String> result = new ArrayList<String>();
         for (String s : cmdList) {
@@ -58,11 +81,6 @@ public class ExecutableCommandFactory {
         return result;
     }
 
-    public ExecutableCommand createJavaExecutableCommand(String javaCmdPath) {
-        String[] cmd = {"chmod", "+x", javaCmdPath};
-        return new ExecutableCommand(cmd);
-    }
-
     public ExecutableCommand createJavaGetVersionNumberCommand(String path) {
         String executablePath = FileUtilsFacade.addJavaCommandPathToPath(path);
         String[] cmd = {executablePath, "-version"};
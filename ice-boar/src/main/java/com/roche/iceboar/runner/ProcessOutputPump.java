@@ -0,0 +1,77 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.runner;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a standard output and an error output of a process and writes their lines to a {@link ProcessOutputSink}.
+ * Each output is read by its own thread, which waits for next lines in a blocking read and ends, when the process
+ * closes the output (usually when it exits).
+ */
+public class ProcessOutputPump {
+
+    private final ProcessOutputSink sink;
+    private final AtomicInteger openOutputs = new AtomicInteger(2);
+
+    public ProcessOutputPump(ProcessOutputSink sink) {
+        this.sink = sink;
+    }
+
+    public void start(Process process) {
+        startReaderThread(process.getInputStream(), "Process input: ", "IceBoar-process-output");
+        startReaderThread(process.getErrorStream(), "Process error: ", "IceBoar-process-error");
+    }
+
+    private void startReaderThread(final InputStream output, final String prefix, String name) {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                pump(output, prefix);
+            }
+        }, name);
+        thread.start();
+    }
+
+    /**
+     * Writes lines of the output to the sink until the end of the output. The sink is closed after the last output.
+     */
+    void pump(InputStream output, String prefix) {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(output));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sink.println(prefix + line);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            IOUtils.closeQuietly(reader);
+            if (openOutputs.decrementAndGet() == 0) {
+                sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.runner;
+
+/**
+ * A destination of lines written by the target application (see {@link
+ * com.roche.iceboar.settings.GlobalSettings#JNLP_PROCESS_OUTPUT}).
+ */
+public interface ProcessOutputSink {
+
+    /**
+     * Writes a line. It is called at the same time by threads reading a standard output and an error output.
+     */
+    void println(String line);
+
+    /**
+     * Called once, when both outputs are closed.
+     */
+    void close();
+}
@@ -0,0 +1,90 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.runner;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes lines to a file. When the file is bigger than a limit, it is renamed to <tt>&lt;name&gt;.1</tt> (an older
+ * one is replaced) and a new file is started, so outputs of a long running application don't fill a disk. Each line
+ * is flushed, because Ice Boar can be closed at any time (see
+ * {@link com.roche.iceboar.settings.GlobalSettings#JNLP_CLOSE_ON_END}).
+ */
+public class RotatingFileOutputSink implements ProcessOutputSink {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final File file;
+    private final long sizeLimit;
+    private Writer writer;
+    private long size;
+
+    public RotatingFileOutputSink(File file, long sizeLimit) {
+        this.file = file;
+        this.sizeLimit = sizeLimit;
+    }
+
+    public synchronized void println(String line) {
+        try {
+            if (writer == null) {
+                open(true);
+            } else if (size >= sizeLimit) {
+                rotate();
+            }
+            writer.write(line);
+            writer.write(LINE_SEPARATOR);
+            writer.flush();
+            size += line.length() + LINE_SEPARATOR.length();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void close() {
+        IOUtils.closeQuietly(writer);
+        writer = null;
+    }
+
+    private void open(boolean append) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append)));
+        size = append ? file.length() : 0;
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        File previous = new File(file.getPath() + ".1");
+        previous.delete();
+        if (!file.renameTo(previous)) {
+            // e.g. the file is open by another run on Windows, so it is started from the beginning
+            System.out.println("Can't rename " + file + " to " + previous);
+        }
+        open(false);
+    }
+}
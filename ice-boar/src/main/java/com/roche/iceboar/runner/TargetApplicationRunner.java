@@ -18,69 +18,185 @@
 
 package com.roche.iceboar.runner;
 
+import com.roche.iceboar.cachestorage.CacheGarbageCollector;
 import com.roche.iceboar.cachestorage.LocalCacheObserver;
 import com.roche.iceboar.cachestorage.LocalCacheStorage;
+import com.roche.iceboar.downloader.CachedVersion;
+import com.roche.iceboar.downloader.DownloadProgressListener;
+import com.roche.iceboar.downloader.DownloadScheduler;
 import com.roche.iceboar.downloader.FileUtilsFacade;
 import com.roche.iceboar.downloader.JREDownloader;
 import com.roche.iceboar.downloader.JarDownloader;
 import com.roche.iceboar.progressevent.*;
 import com.roche.iceboar.settings.GlobalSettings;
 
-import java.util.List;
+import java.util.*;
 
 /**
- * This application handle process of downloading JRE, JARs and run target application. It is event driven.
+ * This application handle process of downloading JRE, JARs and run target application. It is event driven. Each
+ * event is replayed as soon as all events it depends on happened (see {@link ProgressEventFactory#getEventsToReply()}),
+ * so a JRE and JARs are downloaded at the same time.
+ * <p>
+ * When the cache is updated in background (see {@link GlobalSettings#JNLP_UPDATE_POLICY}) and a complete version is
+ * in the cache, it is started by {@link CachedVersion} without any download. Then {@link BackgroundUpdater} downloads
+ * a new version by {@link #download(GlobalSettings, ExecutableCommandFactory, ProgressEventFactory,
+ * ProgressEventQueue)}.
  */
 public class TargetApplicationRunner implements ProgressEventObserver {
 
-    private ProgressEventFactory progressEventFactory;
     private ProgressEventQueue progressEventQueue;
     private JREDownloader jreDownloader;
     private JVMRunner jvmRunner;
     private JarDownloader jarDownloader;
-    private List<ProgressEvent> eventsToReplay;
+    private Map<ProgressEvent, Set<ProgressEvent>> eventsToReplay;
+    // events to replay, which wait for an event, so only they are checked when it happens
+    private Map<ProgressEvent, List<ProgressEvent>> waitingEvents;
 
     public void run(GlobalSettings settings, ExecutableCommandFactory executableCommandFactory,
                     ProgressEventFactory progressEventFactory, ProgressEventQueue progressEventQueue) {
-        this.progressEventFactory = progressEventFactory;
+        run(settings, executableCommandFactory, progressEventFactory, progressEventQueue, null);
+    }
+
+    /**
+     * @param downloadProgressListener shows a progress of a JRE downloaded by another run, which this run waits for
+     *                                 (it can be null)
+     */
+    public void run(GlobalSettings settings, ExecutableCommandFactory executableCommandFactory,
+                    ProgressEventFactory progressEventFactory, ProgressEventQueue progressEventQueue,
+                    DownloadProgressListener downloadProgressListener) {
         this.progressEventQueue = progressEventQueue;
 
         JVMRunnerFactory factory = new JVMRunnerFactory();
         jvmRunner = factory.create(settings, executableCommandFactory, progressEventFactory, progressEventQueue);
-        progressEventQueue.registerObserver(jvmRunner);
+        progressEventQueue.registerObserver(jvmRunner, ProgressEventKind.JRE_UNZIPPED, ProgressEventKind.APP_STARTING);
+
+        DownloadScheduler downloadScheduler = new DownloadScheduler(settings.getDownloadThreads());
+        CachedVersion cachedVersion = new CachedVersion(settings, new FileUtilsFacade(), progressEventFactory,
+                progressEventQueue);
+        boolean startCachedVersion = settings.isUpdateInBackground() && cachedVersion.isComplete();
+        if (startCachedVersion) {
+            System.out.println("Start cached version, the cache is updated after start");
+            progressEventQueue.registerObserver(cachedVersion, ProgressEventKind.JRE_DOWNLOAD,
+                    ProgressEventKind.JRE_UNZIP, ProgressEventKind.JAR_DOWNLOAD_START);
+        } else {
+            registerDownloaders(settings, executableCommandFactory, progressEventFactory, downloadScheduler,
+                    downloadProgressListener);
+        }
 
-        jreDownloader = new JREDownloader(settings, new FileUtilsFacade(), progressEventFactory, progressEventQueue,
-                executableCommandFactory);
-        progressEventQueue.registerObserver(jreDownloader);
+        registerLocalCache(settings);
+
+        progressEventQueue.registerObserver(new CacheGarbageCollector(settings, new LocalCacheStorage(),
+                new FileUtilsFacade()), ProgressEventKind.APP_STARTED);
+
+        progressEventQueue.registerObserver(this);
+
+        if (startCachedVersion) {
+            progressEventQueue.registerObserver(new BackgroundUpdater(settings, executableCommandFactory),
+                    ProgressEventKind.APP_STARTED);
+        }
+
+        progressEventQueue.registerObserver(new CloseApplicationObserver(settings), ProgressEventKind.APP_STARTED);
+
+        initEventsToReplay(copyOf(progressEventFactory.getEventsToReply()));
+        replyReadyEvents();
+        downloadScheduler.publishAll(progressEventQueue);
+    }
+
+    /**
+     * Downloads a JRE and JARs to the cache, without starting the target application. It returns when all downloads
+     * are finished.
+     */
+    public void download(GlobalSettings settings, ExecutableCommandFactory executableCommandFactory,
+                         ProgressEventFactory progressEventFactory, ProgressEventQueue progressEventQueue) {
+        this.progressEventQueue = progressEventQueue;
 
-        jarDownloader = new JarDownloader(settings, new FileUtilsFacade(), progressEventFactory, progressEventQueue);
-        progressEventQueue.registerObserver(jarDownloader);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(settings.getDownloadThreads());
+        registerDownloaders(settings, executableCommandFactory, progressEventFactory, downloadScheduler, null);
 
-        LocalCacheObserver localCache = new LocalCacheObserver(settings, progressEventFactory, new LocalCacheStorage());
-        progressEventQueue.registerObserver(localCache);
+        registerLocalCache(settings);
 
         progressEventQueue.registerObserver(this);
 
-        progressEventQueue.registerObserver(new CloseApplicationObserver(settings, progressEventFactory));
+        Map<ProgressEvent, Set<ProgressEvent>> events = copyOf(progressEventFactory.getEventsToReply());
+        events.remove(progressEventFactory.getAppStartingEvent());
+        initEventsToReplay(events);
+        replyReadyEvents();
+        downloadScheduler.publishAll(progressEventQueue);
+    }
+
+    private void registerDownloaders(GlobalSettings settings, ExecutableCommandFactory executableCommandFactory,
+                                     ProgressEventFactory progressEventFactory, DownloadScheduler downloadScheduler,
+                                     DownloadProgressListener downloadProgressListener) {
+        FileUtilsFacade jreFileUtils = new FileUtilsFacade();
+        jreFileUtils.setDownloadProgressListener(downloadProgressListener);
+        jreDownloader = new JREDownloader(settings, jreFileUtils, progressEventFactory, downloadScheduler,
+                executableCommandFactory);
+        progressEventQueue.registerObserver(jreDownloader, ProgressEventKind.JRE_DOWNLOAD, ProgressEventKind.JRE_UNZIP);
 
-        eventsToReplay = progressEventFactory.getEventsToReply();
-        replyNextEvent();
+        jarDownloader = new JarDownloader(settings, new FileUtilsFacade(), progressEventFactory, downloadScheduler);
+        progressEventQueue.registerObserver(jarDownloader, ProgressEventKind.JAR_DOWNLOAD_START);
     }
 
-    private void replyNextEvent() {
-        progressEventQueue.update(eventsToReplay.remove(0));
+    private void registerLocalCache(GlobalSettings settings) {
+        progressEventQueue.registerObserver(new LocalCacheObserver(settings, new LocalCacheStorage()),
+                ProgressEventKind.JRE_DOWNLOADED, ProgressEventKind.JRE_UNZIPPED,
+                ProgressEventKind.JAR_DOWNLOAD_FINISH);
     }
 
-    public void update(ProgressEvent event) {
-        if (canReplayNextEvent(event)) {
-            replyNextEvent();
+    private Map<ProgressEvent, Set<ProgressEvent>> copyOf(Map<ProgressEvent, Set<ProgressEvent>> events) {
+        Map<ProgressEvent, Set<ProgressEvent>> copy = new LinkedHashMap<ProgressEvent, Set<ProgressEvent>>();
+        for (Map.Entry<ProgressEvent, Set<ProgressEvent>> entry : events.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<ProgressEvent>(entry.getValue()));
         }
+        return copy;
     }
 
-    private boolean canReplayNextEvent(ProgressEvent event) {
-        return event.equals(progressEventFactory.getJREDownloadedEvent())
-                || event.equals(progressEventFactory.getJREUnzippedEvent())
-                || event instanceof DownloadJarFinishEvent;
+    private void initEventsToReplay(Map<ProgressEvent, Set<ProgressEvent>> events) {
+        eventsToReplay = events;
+        waitingEvents = new HashMap<ProgressEvent, List<ProgressEvent>>();
+        for (Map.Entry<ProgressEvent, Set<ProgressEvent>> entry : events.entrySet()) {
+            for (ProgressEvent dependency : entry.getValue()) {
+                List<ProgressEvent> waiting = waitingEvents.get(dependency);
+                if (waiting == null) {
+                    waiting = new ArrayList<ProgressEvent>();
+                    waitingEvents.put(dependency, waiting);
+                }
+                waiting.add(entry.getKey());
+            }
+        }
+    }
+
+    private void replyReadyEvents() {
+        List<ProgressEvent> readyEvents = new ArrayList<ProgressEvent>();
+        Iterator<Map.Entry<ProgressEvent, Set<ProgressEvent>>> iterator = eventsToReplay.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ProgressEvent, Set<ProgressEvent>> entry = iterator.next();
+            if (entry.getValue().isEmpty()) {
+                readyEvents.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+        for (ProgressEvent event : readyEvents) {
+            progressEventQueue.update(event);
+        }
+    }
+
+    public void update(ProgressEvent event) {
+        List<ProgressEvent> waiting = waitingEvents.remove(event);
+        if (waiting == null) {
+            return;
+        }
+        List<ProgressEvent> readyEvents = new ArrayList<ProgressEvent>();
+        for (ProgressEvent waitingEvent : waiting) {
+            Set<ProgressEvent> dependencies = eventsToReplay.get(waitingEvent);
+            if (dependencies != null && dependencies.remove(event) && dependencies.isEmpty()) {
+                eventsToReplay.remove(waitingEvent);
+                readyEvents.add(waitingEvent);
+            }
+        }
+        for (ProgressEvent readyEvent : readyEvents) {
+            progressEventQueue.update(readyEvent);
+        }
     }
 
 }
@@ -24,6 +24,8 @@ import com.roche.iceboar.progressevent.*;
 import com.roche.iceboar.settings.GlobalSettings;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.File;
+
 /**
  * Run a target application on downloaded Java Virtual Machine.
  */
@@ -44,10 +46,10 @@ public class TargetJVMRunner extends AbstractJVMRunner implements ProgressEventO
 
 
     public void update(ProgressEvent event) {
-        if (event.equals(progressEventFactory.getJREUnzippedEvent())) {
+        if (event.getKind() == ProgressEventKind.JRE_UNZIPPED) {
             detailInfo = (JREUnzippedDetailInfo) event.getDetailInfo();
         }
-        if (event.equals(progressEventFactory.getAppStartingEvent())) {
+        if (event.getKind() == ProgressEventKind.APP_STARTING) {
             runOnJVM();
         }
     }
@@ -60,9 +62,11 @@ public class TargetJVMRunner extends AbstractJVMRunner implements ProgressEventO
     private void makeJavaCommandExecutableOnMac() {
         System.out.println("OS: " + settings.getOperationSystemName());
         if (settings.isOperationSystemMacOSX()) {
-            String javaPath = FileUtilsFacade.addJavaCommandPathToPath(detailInfo.getPathToJreUnzipDir());
-            ExecutableCommand command = executableCommandFactory.createJavaExecutableCommand(javaPath);
-            command.exec();
+            File javaCommand = new File(FileUtilsFacade.addJavaCommandPathToPath(detailInfo.getPathToJreUnzipDir()));
+            // set in this process, without starting chmod
+            if (!javaCommand.canExecute() && !javaCommand.setExecutable(true, false)) {
+                System.out.println("Can't make " + javaCommand + " executable");
+            }
         }
     }
 
@@ -72,9 +76,10 @@ public class TargetJVMRunner extends AbstractJVMRunner implements ProgressEventO
         ExecutableCommand command = executableCommandFactory.createRunTargetApplicationCommand(
                 settings, javaCommand);
 
+        lockUsedFiles(detailInfo.getPathToJreUnzipDir());
         Process process = command.exec();
 
-        redirectProcessOutputsToDebugWindow(process);
+        redirectProcessOutputs(process);
         progressEventQueue.update(progressEventFactory.getAppStartedEvent());
     }
 
@@ -27,9 +27,12 @@ import com.roche.iceboar.runner.JVMVersionMatcher;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.roche.iceboar.downloader.FileUtilsFacade.extractFilenameFromURL;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.apache.commons.lang3.StringUtils.join;
 
@@ -80,7 +83,7 @@ public class GlobalSettings {
     /**
      * <tt>{@value #JNLP_JARS_PREFIX}</tt><br>
      * This prefix is used to define properties that specify libraries needed. At least one dependency needs to be
-     * specified. In clear JNLP this properties correspond to:<br>
+     * specified (here or in {@link #JNLP_MANIFEST}). In clear JNLP this properties correspond to:<br>
      * <pre class="code"><code class="xml">
      * {@code
      * <jar href="guava-XX.X.jar"/>
@@ -192,6 +195,205 @@ public class GlobalSettings {
      */
     public static final String JNLP_ALWAYS_RUN_ON_TARGET_JVM = "jnlp.IceBoar.alwaysRunOnTargetJVM";
 
+    /**
+     * <tt>{@value #JNLP_DOWNLOAD_THREADS}</tt><br>
+     * A number of JAR files downloaded at the same time. Default is set to
+     * {@value GlobalSettingsFactory#DEFAULT_DOWNLOAD_THREADS}.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_DOWNLOAD_THREADS = "jnlp.IceBoar.downloadThreads";
+
+    /**
+     * <tt>{@value #JNLP_JRE_DOWNLOAD_CONNECTIONS}</tt><br>
+     * A number of connections used to download parts of a JRE ZIP file at the same time. It is used only when a
+     * server supports <tt>Range</tt> requests. Set to 1 to download JRE by a single connection. Default is set to
+     * {@value GlobalSettingsFactory#DEFAULT_JRE_DOWNLOAD_CONNECTIONS}.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_JRE_DOWNLOAD_CONNECTIONS = "jnlp.IceBoar.jreDownloadConnections";
+
+    /**
+     * <tt>{@value #JNLP_UNZIP_WHILE_DOWNLOADING}</tt><br>
+     * When set to <tt>true</tt> a JRE is unzipped from a network stream while it is downloaded, so installing takes
+     * about as long as downloading. A JRE is then downloaded by a single connection (see {@link
+     * #JNLP_JRE_DOWNLOAD_CONNECTIONS}). Default is set to <tt>false</tt>.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_UNZIP_WHILE_DOWNLOADING = "jnlp.IceBoar.unzipWhileDownloading";
+
+    /**
+     * <tt>{@value #JNLP_KEEP_JRE_ARCHIVE}</tt><br>
+     * When set to <tt>false</tt> a JRE ZIP file unzipped while downloading (see {@link
+     * #JNLP_UNZIP_WHILE_DOWNLOADING}) is not stored in a cache, only the unzipped JRE is. Default is set to
+     * <tt>true</tt>.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_KEEP_JRE_ARCHIVE = "jnlp.IceBoar.keepJreArchive";
+
+    /**
+     * <tt>{@value #JNLP_TARGET_JAVA_SHA256}</tt><br>
+     * An expected SHA-256 digest (hex) of a JRE ZIP file defined in {@link #JNLP_TARGET_JAVA_URL}. When it is set, a
+     * downloaded JRE is verified and downloaded again, when its digest is different. Not set by default.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_TARGET_JAVA_SHA256 = "jnlp.IceBoar.targetJavaSHA256";
+
+    /**
+     * <tt>{@value #JNLP_JARS_SHA256_PREFIX}</tt><br>
+     * This prefix is used to define expected SHA-256 digests (hex) of JAR files. A property suffix is the same as a
+     * suffix of a JAR property ({@link #JNLP_JARS_PREFIX}), e.g.
+     * <pre class="code"><code class="xml">
+     * {@code
+     * <property name="jnlp.IceBoar.jar.0" value="guava-XX.X.jar"/>
+     * <property name="jnlp.IceBoar.jar-sha256.0" value="9f86d081884c7d65...b0f00a08"/>}
+     * </code></pre>
+     * A downloaded JAR with a different digest is downloaded again. JARs without a digest are not verified.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_JARS_SHA256_PREFIX = "jnlp.IceBoar.jar-sha256.";
+
+    /**
+     * <tt>{@value #JNLP_MANIFEST}</tt><br>
+     * A URL of a manifest, which lists the JRE ZIP file and all JAR files with their SHA-256 digests and sizes (see
+     * {@link ResourceManifest}). A manifest can be used instead of {@link #JNLP_TARGET_JAVA_URL}, {@link
+     * #JNLP_JARS_PREFIX} and digest properties, which (when defined) take precedence. Files from a cache that have the
+     * same digest as in a manifest are used without any request, so only changed files are downloaded. JARs are
+     * downloaded in order of their sizes, the biggest first. Not set by default.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_MANIFEST = "jnlp.IceBoar.manifest";
+
+    /**
+     * <tt>{@value #JNLP_CACHE_SIZE_LIMIT}</tt><br>
+     * A size limit of the cache (downloaded JRE ZIP files, unzipped JREs and JAR files) in megabytes. When the cache
+     * is bigger, files used least recently are deleted in the background after the target application has started.
+     * Set to 0 to keep all files. Default is set to {@value GlobalSettingsFactory#DEFAULT_CACHE_SIZE_LIMIT}.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_CACHE_SIZE_LIMIT = "jnlp.IceBoar.cacheSizeLimitMB";
+
+    /**
+     * <tt>{@value #JNLP_CACHE_GRACE_PERIOD}</tt><br>
+     * A number of hours, for which files used by any run are never deleted from the cache (they can be used by a
+     * running application), even when the cache is bigger than {@link #JNLP_CACHE_SIZE_LIMIT}. The same applies to
+     * temporary files left by broken runs. Default is set to {@value GlobalSettingsFactory#DEFAULT_CACHE_GRACE_PERIOD}.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_CACHE_GRACE_PERIOD = "jnlp.IceBoar.cacheGracePeriodHours";
+
+    /**
+     * <tt>{@value #JNLP_CACHE_DIRECTORY}</tt><br>
+     * A root directory of a persistent cache, which survives reboots and temporary directory cleaners. Files of each
+     * application are stored in its own subdirectory named after a code base of a JNLP file, JARs and JREs are stored
+     * once in repositories shared by all applications (<tt>{@value #JARS_REPOSITORY_NAME}</tt> and
+     * <tt>{@value #JRES_REPOSITORY_NAME}</tt>). By default it is
+     * <tt>$XDG_CACHE_HOME/iceboar</tt> (or <tt>~/.cache/iceboar</tt>) on Linux, <tt>~/Library/Caches/IceBoar</tt> on
+     * Mac OS X and <tt>%LOCALAPPDATA%\IceBoar</tt> on Windows. Files cached by older versions in a temporary
+     * directory are moved there on the first start. When the directory can't be created, the temporary directory is
+     * used.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_CACHE_DIRECTORY = "jnlp.IceBoar.cacheDirectory";
+
+    /**
+     * <tt>{@value #JNLP_SHARED_CACHE_DIRECTORY}</tt><br>
+     * A read-only directory shared by users of a machine (e.g. a terminal server) or mounted from a network share. It
+     * has the same layout as a cache directory: JARs in <tt>IceBoar_jars/&lt;SHA-256&gt;/&lt;file name&gt;</tt> and
+     * installed JREs in <tt>IceBoar_jres/&lt;SHA-256 of a ZIP file&gt;</tt>, so it can be filled by copying these
+     * directories from a cache of one user. A JAR or a JRE with an expected digest (see {@link
+     * #JNLP_JARS_SHA256_PREFIX}, {@link #JNLP_TARGET_JAVA_SHA256} and {@link #JNLP_MANIFEST}) is used directly from
+     * there, only missing ones are downloaded to a cache of a user. Files of this directory are never deleted.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_SHARED_CACHE_DIRECTORY = "jnlp.IceBoar.sharedCacheDirectory";
+
+    /**
+     * A name of a repository of JARs in a root of a cache or in a shared cache (see {@link #getDestinationJARsPath()}).
+     */
+    public static final String JARS_REPOSITORY_NAME = "IceBoar_jars";
+
+    /**
+     * A name of a repository of JREs in a root of a cache or in a shared cache (see {@link #getJreRepositoryPath()}).
+     */
+    public static final String JRES_REPOSITORY_NAME = "IceBoar_jres";
+
+    /**
+     * A prefix of files unique per run, e.g. a JRE being unzipped (see {@link #getUnzipPath()}). They end with a start
+     * time of a run, so files left by broken runs are recognised and deleted.
+     */
+    public static final String RUN_FILE_PREFIX = "IceBoar_";
+
+    /**
+     * <tt>{@value #JNLP_UPDATE_POLICY}</tt><br>
+     * Defines when a new version of the target application is downloaded (similar to an <tt>update</tt> element of a
+     * JNLP file):
+     * <ul>
+     * <li><tt>{@value #UPDATE_POLICY_ALWAYS}</tt> - a manifest, a JRE and JARs are checked before the application is
+     * started,</li>
+     * <li><tt>{@value #UPDATE_POLICY_BACKGROUND}</tt> - when a complete version of the application is in the cache, it
+     * is started at once, without any request. Then a manifest, a JRE and JARs are checked and a new version is
+     * downloaded to the cache, so it is started next time,</li>
+     * <li><tt>{@value #UPDATE_POLICY_PROMPT}</tt> - the same as <tt>background</tt>, but a user is asked before a new
+     * version with other SHA-256 digests (e.g. in {@link #JNLP_MANIFEST}) is downloaded.</li>
+     * </ul>
+     * Ice Boar is closed (see {@link #JNLP_CLOSE_ON_END}) when an update is finished. The first start always waits for
+     * downloads. Default is set to {@value #UPDATE_POLICY_ALWAYS}.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_UPDATE_POLICY = "jnlp.IceBoar.updatePolicy";
+
+    public static final String UPDATE_POLICY_ALWAYS = "always";
+    public static final String UPDATE_POLICY_BACKGROUND = "background";
+    public static final String UPDATE_POLICY_PROMPT = "prompt";
+
+    /**
+     * <tt>{@value #JNLP_RUN_IN_CURRENT_PROCESS}</tt><br>
+     * When set to true and the current JVM matches the target Java version, the target application is started in the
+     * Ice Boar process, without starting a second JVM. JARs are loaded by their own class loader and <tt>jnlp.</tt>
+     * properties are already set. A new JVM is still started, when {@link #JNLP_INITIAL_HEAP_SIZE}, {@link
+     * #JNLP_MAX_HEAP_SIZE} or {@link #JNLP_JAVA_VM_ARGS} are defined, because they can't be applied to a running JVM.
+     * Ice Boar isn't closed in this case (see {@link #JNLP_CLOSE_ON_END}). Default is set to false.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_RUN_IN_CURRENT_PROCESS = "jnlp.IceBoar.runInCurrentProcess";
+
+    /**
+     * <tt>{@value #JNLP_PROCESS_OUTPUT}</tt><br>
+     * Defines where a standard output and an error output of the target application are written, when it is started
+     * in a new JVM:
+     * <ul>
+     * <li><tt>{@value #PROCESS_OUTPUT_CONSOLE}</tt> - to the output of Ice Boar, so it is shown in a debug window (see
+     * {@link #JNLP_SHOW_DEBUG}),</li>
+     * <li><tt>{@value #PROCESS_OUTPUT_FILE}</tt> - to a file <tt>{@value #PROCESS_OUTPUT_FILE_NAME}</tt> in the cache
+     * directory. When the file is bigger than 1 MB, it is renamed to <tt>{@value #PROCESS_OUTPUT_FILE_NAME}.1</tt>
+     * and a new one is started,</li>
+     * <li><tt>{@value #PROCESS_OUTPUT_DISCARD}</tt> - nowhere.</li>
+     * </ul>
+     * Outputs are read until the target application closes them. Default is set to
+     * {@value #PROCESS_OUTPUT_CONSOLE}.
+     *
+     * @since 1.1
+     */
+    public static final String JNLP_PROCESS_OUTPUT = "jnlp.IceBoar.processOutput";
+
+    public static final String PROCESS_OUTPUT_CONSOLE = "console";
+    public static final String PROCESS_OUTPUT_FILE = "file";
+    public static final String PROCESS_OUTPUT_DISCARD = "discard";
+    public static final String PROCESS_OUTPUT_FILE_NAME = "IceBoar-output.log";
+
     private JVMVersionMatcher versionMatcher = new JVMVersionMatcher();
 
     private List<String> applicationArguments;
@@ -202,6 +404,7 @@ public class GlobalSettings {
     private String currentJavaVersion;
     private String targetJavaURL;
     private String tempDirectory;
+    private String cacheRootDirectory;
     private List<String> jarURLs;
     private String mainClass;
     private List<String> allPropertiesForTarget;
@@ -218,7 +421,18 @@ public class GlobalSettings {
     private boolean hideFrameBorder;
     private boolean alwaysRunOnTargetJVM;
     private String currentJavaCommand;
-
+    private int downloadThreads;
+    private int jreDownloadConnections;
+    private boolean unzipWhileDownloading;
+    private boolean keepJreArchive;
+    private String targetJavaSha256;
+    private Map<String, String> jarsSha256;
+    private int cacheSizeLimit;
+    private int cacheGracePeriod;
+    private String sharedCacheDirectory;
+    private String updatePolicy;
+    private boolean runInCurrentProcess;
+    private String processOutput;
 
     /**
      * Arguments that come from JNLP file and should be propagated to the destination JAR.
@@ -255,6 +469,10 @@ public class GlobalSettings {
         return targetJavaURL;
     }
 
+    /**
+     * A directory of the cache of the application (see {@link #JNLP_CACHE_DIRECTORY}), which holds downloaded and
+     * temporary files of runs.
+     */
     public String getTempDirectory() {
         if (tempDirectory == null) {
             throw new IceBoarException("User temp directory is not defined!", null);
@@ -262,20 +480,57 @@ public class GlobalSettings {
         return tempDirectory;
     }
 
+    /**
+     * A root directory of the cache (see {@link #JNLP_CACHE_DIRECTORY}), which holds repositories of JARs and JREs
+     * shared by all applications and a {@link #getTempDirectory()} of each application. When it isn't defined, the
+     * directory of the application is used.
+     */
+    public String getCacheRootDirectory() {
+        if (cacheRootDirectory == null) {
+            return getTempDirectory();
+        }
+        return cacheRootDirectory;
+    }
+
     public String getDestinationJREPath() {
         String fileName = targetJavaURL.substring(targetJavaURL.lastIndexOf('/') + 1);
         return getTempDirectory() + fileName;
     }
 
+    /**
+     * A persistent store of downloaded JAR files shared between runs and applications. Each JAR is stored in a
+     * subdirectory named by a hash of its content.
+     */
     public String getDestinationJARsPath() {
-        return getTempDirectory() + "IceBoar_" + jvmStartTime;
+        return getCacheRootDirectory() + JARS_REPOSITORY_NAME;
+    }
+
+    /**
+     * A repository of unzipped JREs shared between runs and applications. Each JRE is installed in a subdirectory
+     * named by a SHA-256 digest of its ZIP file (see {@link #getJreInstallPath(String)}).
+     */
+    public String getJreRepositoryPath() {
+        return getCacheRootDirectory() + JRES_REPOSITORY_NAME;
     }
 
+    public String getJreInstallPath(String jreZipSha256) {
+        return getJreRepositoryPath() + File.separator + jreZipSha256;
+    }
+
+    /**
+     * A temporary directory for unzipping a JRE. It is unique per run and it is moved to {@link
+     * #getJreInstallPath(String)}, when unzipping is finished.
+     */
     public String getUnzipPath() {
-        String tempDirectory = getTempDirectory();
-        String fileNameWithoutExtension = targetJavaURL
-                .substring(targetJavaURL.lastIndexOf('/') + 1, targetJavaURL.lastIndexOf('.'));
-        return tempDirectory + fileNameWithoutExtension + "_" + jvmStartTime;
+        return getTempDirectory() + RUN_FILE_PREFIX + getJreZipNameWithoutExtension() + "_" + jvmStartTime;
+    }
+
+    /**
+     * A name of a JRE ZIP file without an extension. Version 1.0 unzipped a JRE to
+     * <tt>&lt;name&gt;_&lt;start time of a run&gt;</tt> in a temporary directory.
+     */
+    public String getJreZipNameWithoutExtension() {
+        return targetJavaURL.substring(targetJavaURL.lastIndexOf('/') + 1, targetJavaURL.lastIndexOf('.'));
     }
 
     public String getUnzipJavaCommandPath() {
@@ -299,16 +554,25 @@ public class GlobalSettings {
         return mainClass;
     }
 
-    public String getClassPathAsText() {
-        List<String> jars = new ArrayList<String>();
-        for (String jarURL : jarURLs) {
-            jars.add(getDestinationPathForJar(jarURL));
-        }
-        return join(jars, getPathSeparator());
+    public String getDestinationPathForJar(String jarUrl, String hash) {
+        return getDestinationJARsPath() + File.separator + hash + File.separator + extractFilenameFromURL(jarUrl);
     }
 
-    public String getDestinationPathForJar(String jarUrl) {
-        return getDestinationJARsPath() + File.separator + extractFilenameFromURL(jarUrl);
+    /**
+     * A temporary file for downloading a JAR, before it is moved to {@link #getDestinationPathForJar(String, String)}.
+     * It is unique per run, so many Ice Boar instances can download the same JAR at the same time.
+     */
+    public String getDownloadPathForJar(String jarUrl) {
+        return getDestinationJARsPath() + File.separator + RUN_FILE_PREFIX + extractFilenameFromURL(jarUrl) + "_"
+                + jvmStartTime + ".tmp";
+    }
+
+    /**
+     * A file for a JAR content being downloaded. It is the same for all runs, so a broken download can be resumed.
+     */
+    public String getPartialDownloadPathForJar(String jarUrl) {
+        return getDestinationJARsPath() + File.separator + Integer.toHexString(jarUrl.hashCode()) + "_"
+                + extractFilenameFromURL(jarUrl) + ".part";
     }
 
     public List<String> getAllPropertiesForTarget() {
@@ -370,7 +634,7 @@ public class GlobalSettings {
 
     public String getDestinationJreZipPathFromCache() {
         CacheStatus cacheStatus = getCacheStatus();
-        StatusInfo statusInfo = cacheStatus.getJreDownloadedStatusInfo(getTargetJavaVersion());
+        StatusInfo statusInfo = cacheStatus.getJreDownloadedStatusInfo(getTargetJavaURL());
         if (statusInfo == null || statusInfo.getPath() == null) {
             return "";
         }
@@ -379,7 +643,7 @@ public class GlobalSettings {
 
     public String getUnzippedJrePathFromCache() {
         CacheStatus cacheStatus = getCacheStatus();
-        StatusInfo statusInfo = cacheStatus.getJreUnzippedStatusInfo(getTargetJavaVersion());
+        StatusInfo statusInfo = cacheStatus.getJreUnzippedStatusInfo(getTargetJavaURL());
         if (statusInfo == null || statusInfo.getPath() == null) {
             return "";
         }
@@ -394,6 +658,15 @@ public class GlobalSettings {
         return icons;
     }
 
+    /**
+     * A place where icons and a splash screen image are stored between runs. A file name starts with a hash of URL,
+     * because many applications can use icons with the same file name.
+     */
+    public String getDestinationPathForIcon(String iconUrl) {
+        return getTempDirectory() + "IceBoar_icons" + File.separator + Integer.toHexString(iconUrl.hashCode()) + "_"
+                + extractFilenameFromURL(iconUrl);
+    }
+
     public String getCustomSplashImage() {
         return customSplashImage;
     }
@@ -414,6 +687,128 @@ public class GlobalSettings {
         return removeQuotationMarksAtBeginAndEnd(currentJavaCommand);
     }
 
+    public int getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    public int getJreDownloadConnections() {
+        return jreDownloadConnections;
+    }
+
+    public boolean isUnzipWhileDownloading() {
+        return unzipWhileDownloading;
+    }
+
+    public boolean isKeepJreArchive() {
+        return keepJreArchive;
+    }
+
+    /**
+     * @return an expected SHA-256 digest of a JRE ZIP file or null, when it is not defined
+     */
+    public String getTargetJavaSha256() {
+        return targetJavaSha256;
+    }
+
+    /**
+     * @return an expected SHA-256 digest of a JAR file or null, when it is not defined
+     */
+    public String getExpectedSha256ForJar(String jarUrl) {
+        return jarsSha256.get(jarUrl);
+    }
+
+    /**
+     * @return a size limit of the cache in megabytes or 0, when it is not limited
+     */
+    public int getCacheSizeLimit() {
+        return cacheSizeLimit;
+    }
+
+    /**
+     * @return a number of hours
+     */
+    public int getCacheGracePeriod() {
+        return cacheGracePeriod;
+    }
+
+    /**
+     * @return a shared read-only cache directory (see {@link #JNLP_SHARED_CACHE_DIRECTORY}) or null
+     */
+    public String getSharedCacheDirectory() {
+        return sharedCacheDirectory;
+    }
+
+    /**
+     * @return a path of a JAR in {@link #getSharedCacheDirectory()} or null, when there is no shared cache
+     */
+    public String getSharedPathForJar(String jarUrl, String hash) {
+        if (sharedCacheDirectory == null) {
+            return null;
+        }
+        return sharedCacheDirectory + File.separator + JARS_REPOSITORY_NAME + File.separator + hash + File.separator
+                + extractFilenameFromURL(jarUrl);
+    }
+
+    /**
+     * @return a path of an installed JRE in {@link #getSharedCacheDirectory()} or null, when there is no shared cache
+     */
+    public String getSharedJreInstallPath(String jreZipSha256) {
+        if (sharedCacheDirectory == null) {
+            return null;
+        }
+        return sharedCacheDirectory + File.separator + JRES_REPOSITORY_NAME + File.separator + jreZipSha256;
+    }
+
+    public boolean isInSharedCacheDirectory(File file) {
+        if (sharedCacheDirectory == null) {
+            return false;
+        }
+        String directory = new File(sharedCacheDirectory).getAbsolutePath() + File.separator;
+        return file.getAbsolutePath().startsWith(directory);
+    }
+
+    /**
+     * @return one of {@link #UPDATE_POLICY_ALWAYS}, {@link #UPDATE_POLICY_BACKGROUND} or {@link #UPDATE_POLICY_PROMPT}
+     */
+    public String getUpdatePolicy() {
+        return updatePolicy;
+    }
+
+    /**
+     * @return true when the target application is started from the cache and updated after that (see {@link
+     * #JNLP_UPDATE_POLICY})
+     */
+    public boolean isUpdateInBackground() {
+        return UPDATE_POLICY_BACKGROUND.equals(updatePolicy) || isUpdatePrompt();
+    }
+
+    public boolean isUpdatePrompt() {
+        return UPDATE_POLICY_PROMPT.equals(updatePolicy);
+    }
+
+    /**
+     * @return true when the target application is started in the Ice Boar process (see {@link
+     * #JNLP_RUN_IN_CURRENT_PROCESS})
+     */
+    public boolean isRunInCurrentProcess() {
+        return runInCurrentProcess && !runOnTargetJVM() && isBlank(initialHeapSize) && isBlank(maxHeapSize)
+                && isBlank(javaVmArgs);
+    }
+
+    /**
+     * @return one of {@link #PROCESS_OUTPUT_CONSOLE}, {@link #PROCESS_OUTPUT_FILE} or {@link #PROCESS_OUTPUT_DISCARD}
+     */
+    public String getProcessOutput() {
+        return processOutput;
+    }
+
+    /**
+     * @return a path of a file with outputs of the target application (see {@link #JNLP_PROCESS_OUTPUT})
+     */
+    public String getProcessOutputPath() {
+        return getTempDirectory() + PROCESS_OUTPUT_FILE_NAME;
+    }
+
     private String removeQuotationMarksAtBeginAndEnd(String input) {
         String text = input;
         if(input.charAt(0) == '\"') {
@@ -434,6 +829,7 @@ public class GlobalSettings {
         private String currentJavaVersion;
         private String targetJavaURL;
         private String tempDirectory;
+        private String cacheRootDirectory;
         private List<String> jarURLs;
         private String mainClass;
         private List<String> allPropertiesForTarget;
@@ -450,6 +846,18 @@ public class GlobalSettings {
         private boolean hideFrameBorder;
         private boolean alwaysRunOnTargetJVM;
         private String currentJavaCommand;
+        private int downloadThreads;
+        private int jreDownloadConnections;
+        private boolean unzipWhileDownloading;
+        private boolean keepJreArchive = true;
+        private String targetJavaSha256;
+        private Map<String, String> jarsSha256 = new HashMap<String, String>();
+        private int cacheSizeLimit;
+        private int cacheGracePeriod;
+        private String sharedCacheDirectory;
+        private String updatePolicy = UPDATE_POLICY_ALWAYS;
+        private boolean runInCurrentProcess;
+        private String processOutput = PROCESS_OUTPUT_CONSOLE;
 
         public Builder applicationArguments(String[] applicationArguments) {
             if (applicationArguments != null) {
@@ -497,6 +905,15 @@ public class GlobalSettings {
             return this;
         }
 
+        public Builder cacheRootDirectory(String cacheRootDirectory) {
+            if (cacheRootDirectory.endsWith(File.separator)) {
+                this.cacheRootDirectory = cacheRootDirectory;
+            } else {
+                this.cacheRootDirectory = cacheRootDirectory + File.separator;
+            }
+            return this;
+        }
+
         public Builder jarURLs(List<String> jarURLs) {
             this.jarURLs = jarURLs;
             return this;
@@ -577,6 +994,66 @@ public class GlobalSettings {
             return this;
         }
 
+        public Builder downloadThreads(int downloadThreads) {
+            this.downloadThreads = downloadThreads;
+            return this;
+        }
+
+        public Builder jreDownloadConnections(int jreDownloadConnections) {
+            this.jreDownloadConnections = jreDownloadConnections;
+            return this;
+        }
+
+        public Builder unzipWhileDownloading(boolean unzipWhileDownloading) {
+            this.unzipWhileDownloading = unzipWhileDownloading;
+            return this;
+        }
+
+        public Builder keepJreArchive(boolean keepJreArchive) {
+            this.keepJreArchive = keepJreArchive;
+            return this;
+        }
+
+        public Builder targetJavaSha256(String targetJavaSha256) {
+            this.targetJavaSha256 = targetJavaSha256;
+            return this;
+        }
+
+        public Builder jarsSha256(Map<String, String> jarsSha256) {
+            this.jarsSha256 = jarsSha256;
+            return this;
+        }
+
+        public Builder cacheSizeLimit(int cacheSizeLimit) {
+            this.cacheSizeLimit = cacheSizeLimit;
+            return this;
+        }
+
+        public Builder cacheGracePeriod(int cacheGracePeriod) {
+            this.cacheGracePeriod = cacheGracePeriod;
+            return this;
+        }
+
+        public Builder sharedCacheDirectory(String sharedCacheDirectory) {
+            this.sharedCacheDirectory = sharedCacheDirectory;
+            return this;
+        }
+
+        public Builder updatePolicy(String updatePolicy) {
+            this.updatePolicy = updatePolicy;
+            return this;
+        }
+
+        public Builder runInCurrentProcess(boolean runInCurrentProcess) {
+            this.runInCurrentProcess = runInCurrentProcess;
+            return this;
+        }
+
+        public Builder processOutput(String processOutput) {
+            this.processOutput = processOutput;
+            return this;
+        }
+
         public GlobalSettings build() {
             GlobalSettings settings = new GlobalSettings(applicationArguments);
             settings.jvmStartTime = jvmStartTime;
@@ -586,6 +1063,7 @@ public class GlobalSettings {
             settings.currentJavaVersion = currentJavaVersion;
             settings.targetJavaURL = targetJavaURL;
             settings.tempDirectory = tempDirectory;
+            settings.cacheRootDirectory = cacheRootDirectory;
             settings.jarURLs = jarURLs;
             settings.mainClass = mainClass;
             settings.allPropertiesForTarget = allPropertiesForTarget;
@@ -602,6 +1080,18 @@ public class GlobalSettings {
             settings.hideFrameBorder = hideFrameBorder;
             settings.alwaysRunOnTargetJVM = alwaysRunOnTargetJVM;
             settings.currentJavaCommand = currentJavaCommand;
+            settings.downloadThreads = downloadThreads;
+            settings.jreDownloadConnections = jreDownloadConnections;
+            settings.unzipWhileDownloading = unzipWhileDownloading;
+            settings.keepJreArchive = keepJreArchive;
+            settings.targetJavaSha256 = targetJavaSha256;
+            settings.jarsSha256 = jarsSha256;
+            settings.cacheSizeLimit = cacheSizeLimit;
+            settings.cacheGracePeriod = cacheGracePeriod;
+            settings.sharedCacheDirectory = sharedCacheDirectory;
+            settings.updatePolicy = updatePolicy;
+            settings.runInCurrentProcess = runInCurrentProcess;
+            settings.processOutput = processOutput;
             return settings;
         }
     }
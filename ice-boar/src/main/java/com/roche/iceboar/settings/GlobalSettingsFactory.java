@@ -19,19 +19,27 @@
 package com.roche.iceboar.settings;
 
 import com.roche.iceboar.IceBoarException;
+import com.roche.iceboar.cachestorage.CacheMigration;
 import com.roche.iceboar.cachestorage.CacheStatus;
 import com.roche.iceboar.cachestorage.LocalCacheStorage;
+import com.roche.iceboar.downloader.FileUtilsFacade;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.jnlp.BasicService;
 import javax.jnlp.ServiceManager;
 import javax.jnlp.UnavailableServiceException;
+import java.io.File;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import static com.roche.iceboar.downloader.FileUtilsFacade.extractFilenameFromURL;
 import static com.roche.iceboar.settings.GlobalSettings.*;
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -48,10 +56,35 @@ public class GlobalSettingsFactory {
      */
     public static final String DEFAULT_FRAME_TITLE = "Ice Boar";
 
+    /**
+     * <tt>{@value #DEFAULT_DOWNLOAD_THREADS}</tt><br>
+     * Default number of JAR files downloaded at the same time.
+     */
+    public static final int DEFAULT_DOWNLOAD_THREADS = 4;
+
+    /**
+     * <tt>{@value #DEFAULT_JRE_DOWNLOAD_CONNECTIONS}</tt><br>
+     * Default number of connections used to download a JRE ZIP file.
+     */
+    public static final int DEFAULT_JRE_DOWNLOAD_CONNECTIONS = 4;
+
+    /**
+     * <tt>{@value #DEFAULT_CACHE_SIZE_LIMIT}</tt><br>
+     * Default size limit of the cache in megabytes.
+     */
+    public static final int DEFAULT_CACHE_SIZE_LIMIT = 2048;
+
+    /**
+     * <tt>{@value #DEFAULT_CACHE_GRACE_PERIOD}</tt><br>
+     * Default number of hours, for which used files are not deleted from the cache.
+     */
+    public static final int DEFAULT_CACHE_GRACE_PERIOD = 24;
+
     private static final String JAVA_VERSION = "java.version";
 
     private static final String OS_NAME = "os.name";
     private static final String TEMP_DIRECTORY = "java.io.tmpdir";
+    private static final String USER_HOME = "user.home";
     private static final String JNLP_ICE_BOAR_PREFIX = "jnlp.IceBoar.";
     private static final String PATH_SEPARATOR = "path.separator";
     private static final String CURRENT_JAVA_EXECUTABLE_COMMAND = "jnlpx.jvm";
@@ -62,6 +95,18 @@ public class GlobalSettingsFactory {
      * @param args
      */
     public static GlobalSettings getGlobalSettings(String[] args) {
+        return getGlobalSettings(args, false);
+    }
+
+    /**
+     * Reads system properties again to update the cache after the target application was started from it (see
+     * {@link GlobalSettings#JNLP_UPDATE_POLICY}). A manifest is always revalidated.
+     */
+    public static GlobalSettings getGlobalSettingsForUpdate(String[] args) {
+        return getGlobalSettings(args, true);
+    }
+
+    private static GlobalSettings getGlobalSettings(String[] args, boolean forUpdate) {
         long jvmStartTime = ManagementFactory.getRuntimeMXBean()
                                              .getStartTime();
 
@@ -72,10 +117,16 @@ public class GlobalSettingsFactory {
         String frameTitle = properties.getProperty(JNLP_FRAME_TITLE, DEFAULT_FRAME_TITLE);
         String currentJavaVersion = properties.getProperty(JAVA_VERSION);
         String targetJavaVersion = getTargetJavaVersion(currentJavaVersion, properties);
-        String tempDirectory = properties.getProperty(TEMP_DIRECTORY);
+        String tempDirectory = getCacheDirectory(codeBase, properties, System.getenv());
         String mainClass = properties.getProperty(JNLP_MAIN_CLASS);
-        String targetJavaURL = getTargetJavaUrl(codeBase, properties);
-        List<String> jarURLs = getDependenciesJars(codeBase, properties);
+        String updatePolicy = getUpdatePolicy(properties);
+        boolean revalidateManifest = forUpdate || UPDATE_POLICY_ALWAYS.equals(updatePolicy);
+        ResourceManifest manifest = getManifest(codeBase, tempDirectory, properties, revalidateManifest);
+        String targetJavaURL = getTargetJavaUrl(codeBase, properties, manifest);
+        List<String> jarURLs = getDependenciesJars(codeBase, properties, manifest);
+        String cacheRootDirectory = getCacheRootDirectory(tempDirectory, properties);
+        migrateCache(properties.getProperty(TEMP_DIRECTORY), tempDirectory, cacheRootDirectory, targetJavaVersion,
+                targetJavaURL, jarURLs);
         List<String> allPropertiesForTarget = getAllPropertiesForTarget(properties);
         String initialHeapSize = properties.getProperty(JNLP_INITIAL_HEAP_SIZE);
         String maxHeapSize = properties.getProperty(JNLP_MAX_HEAP_SIZE);
@@ -83,13 +134,25 @@ public class GlobalSettingsFactory {
         String operationSystemName = properties.getProperty(OS_NAME);
         String pathSeparator = properties.getProperty(PATH_SEPARATOR);
         boolean closeOnEnd = getCloseOnEnd(properties);
-        String cachePath = tempDirectory + ".IceBoar.cache";
+        String cachePath = new File(tempDirectory, LocalCacheStorage.CACHE_FILE_NAME).getPath();
         CacheStatus cacheStatus = getCacheStatus(cachePath);
         List<String> icons = getIcons(codeBase, properties);
         String splash = getSplashScreen(codeBase, properties);
         boolean hideFrameBorder = getHideFrameBorder(properties);
         boolean alwaysRunOnTargetJVM = getAlwaysRunOnTargetJVM(properties);
         String currentJavaCommand = getCurrentJavaCommand(properties);
+        int downloadThreads = getIntProperty(properties, JNLP_DOWNLOAD_THREADS, DEFAULT_DOWNLOAD_THREADS);
+        int jreDownloadConnections = getIntProperty(properties, JNLP_JRE_DOWNLOAD_CONNECTIONS,
+                DEFAULT_JRE_DOWNLOAD_CONNECTIONS);
+        boolean unzipWhileDownloading = getUnzipWhileDownloading(properties);
+        boolean keepJreArchive = getKeepJreArchive(properties);
+        String targetJavaSha256 = getTargetJavaSha256(properties, targetJavaURL, manifest);
+        Map<String, String> jarsSha256 = getJarsSha256(codeBase, properties, manifest);
+        int cacheSizeLimit = getIntProperty(properties, JNLP_CACHE_SIZE_LIMIT, DEFAULT_CACHE_SIZE_LIMIT);
+        int cacheGracePeriod = getIntProperty(properties, JNLP_CACHE_GRACE_PERIOD, DEFAULT_CACHE_GRACE_PERIOD);
+        String sharedCacheDirectory = StringUtils.trimToNull(properties.getProperty(JNLP_SHARED_CACHE_DIRECTORY));
+        boolean runInCurrentProcess = getRunInCurrentProcess(properties);
+        String processOutput = getProcessOutput(properties);
 
         GlobalSettings settings = GlobalSettings.builder()
                                                 .applicationArguments(args)
@@ -99,6 +162,7 @@ public class GlobalSettingsFactory {
                                                 .currentJavaVersion(currentJavaVersion)
                                                 .targetJavaVersion(targetJavaVersion)
                                                 .tempDirectory(tempDirectory)
+                                                .cacheRootDirectory(cacheRootDirectory)
                                                 .mainClass(mainClass)
                                                 .targetJavaURL(targetJavaURL)
                                                 .jarURLs(jarURLs)
@@ -116,6 +180,18 @@ public class GlobalSettingsFactory {
                                                 .hideFrameBorder(hideFrameBorder)
                                                 .alwaysRunOnTargetJVM(alwaysRunOnTargetJVM)
                                                 .currentJavaCommand(currentJavaCommand)
+                                                .downloadThreads(downloadThreads)
+                                                .jreDownloadConnections(jreDownloadConnections)
+                                                .unzipWhileDownloading(unzipWhileDownloading)
+                                                .keepJreArchive(keepJreArchive)
+                                                .targetJavaSha256(targetJavaSha256)
+                                                .jarsSha256(jarsSha256)
+                                                .cacheSizeLimit(cacheSizeLimit)
+                                                .cacheGracePeriod(cacheGracePeriod)
+                                                .sharedCacheDirectory(sharedCacheDirectory)
+                                                .updatePolicy(updatePolicy)
+                                                .runInCurrentProcess(runInCurrentProcess)
+                                                .processOutput(processOutput)
                                                 .build();
         return settings;
     }
@@ -153,24 +229,141 @@ public class GlobalSettingsFactory {
         return targetJavaVersion;
     }
 
-    private static String getTargetJavaUrl(String codeBase, Properties properties) {
+    private static String getUpdatePolicy(Properties properties) {
+        String updatePolicy = StringUtils.trimToNull(properties.getProperty(JNLP_UPDATE_POLICY));
+        if (updatePolicy == null) {
+            return UPDATE_POLICY_ALWAYS;
+        }
+        if (!updatePolicy.equals(UPDATE_POLICY_ALWAYS) && !updatePolicy.equals(UPDATE_POLICY_BACKGROUND)
+                && !updatePolicy.equals(UPDATE_POLICY_PROMPT)) {
+            System.out.println("Wrong value of " + JNLP_UPDATE_POLICY + ": " + updatePolicy);
+            return UPDATE_POLICY_ALWAYS;
+        }
+        return updatePolicy;
+    }
+
+    private static String getProcessOutput(Properties properties) {
+        String processOutput = StringUtils.trimToNull(properties.getProperty(JNLP_PROCESS_OUTPUT));
+        if (processOutput == null) {
+            return PROCESS_OUTPUT_CONSOLE;
+        }
+        if (!processOutput.equals(PROCESS_OUTPUT_CONSOLE) && !processOutput.equals(PROCESS_OUTPUT_FILE)
+                && !processOutput.equals(PROCESS_OUTPUT_DISCARD)) {
+            System.out.println("Wrong value of " + JNLP_PROCESS_OUTPUT + ": " + processOutput);
+            return PROCESS_OUTPUT_CONSOLE;
+        }
+        return processOutput;
+    }
+
+    /**
+     * Downloads a manifest (when it is defined) or uses a copy from a cache, when the download fails.
+     *
+     * @param revalidate when false, a copy from a cache is used without any request
+     */
+    private static ResourceManifest getManifest(String codeBase, String tempDirectory, Properties properties,
+                                                boolean revalidate) {
+        String manifestURL = StringUtils.trimToNull(properties.getProperty(JNLP_MANIFEST));
+        if (manifestURL == null) {
+            return null;
+        }
+        manifestURL = getAbsoluteUrl(codeBase, manifestURL);
+        File manifestFile = new File(tempDirectory + "IceBoar_manifests" + File.separator
+                + Integer.toHexString(manifestURL.hashCode()) + "_" + extractFilenameFromURL(manifestURL));
+        try {
+            URL url = new URL(manifestURL);
+            if (!revalidate && manifestFile.exists()) {
+                System.out.println("Using cached manifest: " + manifestURL);
+                return ResourceManifest.read(url, manifestFile);
+            }
+            try {
+                new FileUtilsFacade().saveContentFromURLToFileIfModified(url, manifestFile, manifestFile);
+            } catch (IOException e) {
+                if (!manifestFile.exists()) {
+                    throw e;
+                }
+                System.out.println("Can't revalidate manifest: " + manifestURL + ", using cached copy");
+            }
+            return ResourceManifest.read(url, manifestFile);
+        } catch (IOException e) {
+            throw new IceBoarException("Can't read manifest: " + manifestURL + ". Please try again.", e);
+        }
+    }
+
+    private static String getTargetJavaUrl(String codeBase, Properties properties, ResourceManifest manifest) {
         String targetJavaURL;
         targetJavaURL = properties.getProperty(JNLP_TARGET_JAVA_URL, "");
+        if (StringUtils.isBlank(targetJavaURL) && manifest != null && manifest.getJre() != null) {
+            return manifest.getJre().getUrl();
+        }
         if (!isAbsolutePath(targetJavaURL) && StringUtils.isNotBlank(codeBase)) {
             targetJavaURL = codeBase + targetJavaURL;
         }
         return targetJavaURL;
     }
 
-    private static List<String> getDependenciesJars(String codeBase, Properties properties) {
-        List<String> jarURLs = readRemoteResourcesByPrefix(codeBase, properties, JNLP_JARS_PREFIX);
+    private static String getTargetJavaSha256(Properties properties, String targetJavaURL,
+                                              ResourceManifest manifest) {
+        String targetJavaSha256 = StringUtils.trimToNull(properties.getProperty(JNLP_TARGET_JAVA_SHA256));
+        if (targetJavaSha256 == null && manifest != null && manifest.getJre() != null
+                && manifest.getJre().getUrl().equals(targetJavaURL)) {
+            return manifest.getJre().getSha256();
+        }
+        return targetJavaSha256;
+    }
+
+    /**
+     * @return JARs from a manifest (the biggest first) and then JARs from properties
+     */
+    private static List<String> getDependenciesJars(String codeBase, Properties properties,
+                                                    ResourceManifest manifest) {
+        List<String> jarURLs = new ArrayList<String>();
+        if (manifest != null) {
+            for (ResourceManifest.Resource jar : manifest.getJars()) {
+                jarURLs.add(jar.getUrl());
+            }
+        }
+        for (String jarURL : readRemoteResourcesByPrefix(codeBase, properties, JNLP_JARS_PREFIX)) {
+            if (!jarURLs.contains(jarURL)) {
+                jarURLs.add(jarURL);
+            }
+        }
         if (jarURLs.isEmpty()) {
-            throw new IceBoarException("Please specify minimum a one JAR file in property: " + JNLP_JARS_PREFIX +
-                    "0", null);
+            String message = "Please specify minimum a one JAR file in property: " + JNLP_JARS_PREFIX + "0";
+            if (manifest != null) {
+                message += " or in manifest: " + properties.getProperty(JNLP_MANIFEST);
+            }
+            throw new IceBoarException(message, null);
         }
         return jarURLs;
     }
 
+    /**
+     * @return expected digests of JARs by their URLs. A digest from properties is matched with a JAR by a property
+     * suffix and it takes precedence over a digest from a manifest.
+     */
+    private static Map<String, String> getJarsSha256(String codeBase, Properties properties,
+                                                     ResourceManifest manifest) {
+        Map<String, String> jarsSha256 = new HashMap<String, String>();
+        if (manifest != null) {
+            for (ResourceManifest.Resource jar : manifest.getJars()) {
+                jarsSha256.put(jar.getUrl(), jar.getSha256());
+            }
+        }
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            Object key = entry.getKey();
+            if (key instanceof String && ((String) key).startsWith(JNLP_JARS_SHA256_PREFIX)) {
+                String suffix = ((String) key).substring(JNLP_JARS_SHA256_PREFIX.length());
+                String jarUrl = properties.getProperty(JNLP_JARS_PREFIX + suffix);
+                if (jarUrl == null) {
+                    System.out.println("There is no JAR for " + key + ", please define " + JNLP_JARS_PREFIX + suffix);
+                } else {
+                    jarsSha256.put(getAbsoluteUrl(codeBase, jarUrl), entry.getValue().toString().trim());
+                }
+            }
+        }
+        return jarsSha256;
+    }
+
     private static List<String> readRemoteResourcesByPrefix(String codeBase, Properties properties, String prefix) {
         List<String> urls = new ArrayList<String>();
         for (Map.Entry<Object, Object> entry : properties.entrySet()) {
@@ -208,6 +401,93 @@ public class GlobalSettingsFactory {
         return urlText.contains("://");
     }
 
+    /**
+     * @return a persistent cache directory of the application (see {@link GlobalSettings#JNLP_CACHE_DIRECTORY}) or
+     * the temporary directory, when it can't be created
+     */
+    public static String getCacheDirectory(String codeBase, Properties properties, Map<String, String> environment) {
+        File directory = new File(getCacheRoot(properties, environment), getApplicationNamespace(codeBase));
+        directory.mkdirs();
+        if (!directory.isDirectory() || !directory.canWrite()) {
+            System.out.println("Can't create a cache directory: " + directory + ", using a temporary directory");
+            return properties.getProperty(TEMP_DIRECTORY);
+        }
+        return directory.getPath() + File.separator;
+    }
+
+    /**
+     * @return a parent of a cache directory of the application, where repositories of JARs and JREs are shared by all
+     * applications, or the temporary directory, when it is used instead
+     */
+    private static String getCacheRootDirectory(String cacheDirectory, Properties properties) {
+        String parent = new File(cacheDirectory).getParent();
+        if (parent == null || StringUtils.equals(cacheDirectory, properties.getProperty(TEMP_DIRECTORY))) {
+            return cacheDirectory;
+        }
+        return parent + File.separator;
+    }
+
+    private static File getCacheRoot(Properties properties, Map<String, String> environment) {
+        String cacheDirectory = StringUtils.trimToNull(properties.getProperty(JNLP_CACHE_DIRECTORY));
+        if (cacheDirectory != null) {
+            return new File(cacheDirectory);
+        }
+        String userHome = properties.getProperty(USER_HOME);
+        String operationSystemName = StringUtils.defaultString(properties.getProperty(OS_NAME));
+        if (operationSystemName.startsWith("Windows")) {
+            String localAppData = environment.get("LOCALAPPDATA");
+            if (StringUtils.isBlank(localAppData)) {
+                localAppData = userHome + File.separator + "AppData" + File.separator + "Local";
+            }
+            return new File(localAppData, "IceBoar");
+        }
+        if (operationSystemName.startsWith("Mac")) {
+            return new File(userHome, "Library" + File.separator + "Caches" + File.separator + "IceBoar");
+        }
+        String xdgCacheHome = environment.get("XDG_CACHE_HOME");
+        if (StringUtils.isBlank(xdgCacheHome) || !new File(xdgCacheHome).isAbsolute()) {
+            xdgCacheHome = userHome + File.separator + ".cache";
+        }
+        return new File(xdgCacheHome, "iceboar");
+    }
+
+    /**
+     * @return a name of a subdirectory of an application: a host of a code base and a hash of the whole code base (so
+     * applications from the same server don't share their caches)
+     */
+    private static String getApplicationNamespace(String codeBase) {
+        if (StringUtils.isBlank(codeBase)) {
+            return "default";
+        }
+        String host = codeBase;
+        try {
+            host = StringUtils.defaultIfBlank(new URL(codeBase).getHost(), "local");
+        } catch (MalformedURLException e) {
+            // a whole code base is used instead
+        }
+        return host.replaceAll("[^A-Za-z0-9.-]", "_") + "_" + Integer.toHexString(codeBase.hashCode());
+    }
+
+    private static void migrateCache(String oldDirectory, String cacheDirectory, String cacheRootDirectory,
+                                     String targetJavaVersion, String targetJavaURL, List<String> jarURLs) {
+        if (oldDirectory == null) {
+            return;
+        }
+        Map<String, String> versions = new HashMap<String, String>();
+        for (String jarURL : jarURLs) {
+            versions.put(jarURL, jarURL);
+        }
+        if (isNotBlank(targetJavaURL)) {
+            versions.put(targetJavaURL, targetJavaURL);
+            // version 1.0 stored a JRE by a target Java version
+            if (isNotBlank(targetJavaVersion)) {
+                versions.put(targetJavaVersion, targetJavaURL);
+            }
+        }
+        new CacheMigration(new LocalCacheStorage()).migrate(new File(oldDirectory), new File(cacheDirectory),
+                new File(cacheRootDirectory), versions);
+    }
+
     private static CacheStatus getCacheStatus(String cachePath) {
         LocalCacheStorage localCacheStorage = new LocalCacheStorage();
         CacheStatus cacheStatus = localCacheStorage.loadCacheStatus(cachePath);
@@ -233,8 +513,35 @@ public class GlobalSettingsFactory {
         return (isNotBlank(alwaysRunOnTargetJVM) && alwaysRunOnTargetJVM.equals("true"));
     }
 
+    private static boolean getUnzipWhileDownloading(Properties properties) {
+        String unzipWhileDownloading = properties.getProperty(JNLP_UNZIP_WHILE_DOWNLOADING);
+        return (isNotBlank(unzipWhileDownloading) && unzipWhileDownloading.equals("true"));
+    }
+
+    private static boolean getKeepJreArchive(Properties properties) {
+        String keepJreArchive = properties.getProperty(JNLP_KEEP_JRE_ARCHIVE);
+        return !(isNotBlank(keepJreArchive) && keepJreArchive.equals("false"));
+    }
+
+    private static boolean getRunInCurrentProcess(Properties properties) {
+        String runInCurrentProcess = properties.getProperty(JNLP_RUN_IN_CURRENT_PROCESS);
+        return isNotBlank(runInCurrentProcess) && runInCurrentProcess.equals("true");
+    }
+
     private static String getCurrentJavaCommand(Properties properties) {
         return properties.getProperty(CURRENT_JAVA_EXECUTABLE_COMMAND);
     }
 
+    private static int getIntProperty(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        if (isNotBlank(value)) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Wrong value of " + name + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
 }
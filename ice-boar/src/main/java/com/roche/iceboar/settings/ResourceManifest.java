@@ -0,0 +1,151 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.settings;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A manifest of application resources defined in {@value GlobalSettings#JNLP_MANIFEST}. It is a text file, where each
+ * line describes one resource by a type (<tt>jre</tt> or <tt>jar</tt>), a SHA-256 digest (hex), a size in bytes and
+ * a URL, e.g.
+ * <pre>
+ * # type sha256 size url
+ * jre 3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b 52428800 jre-1.8.0_92-win-x64.zip
+ * jar 9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08 1048576 hello-world-swing.jar
+ * </pre>
+ * A relative URL is resolved against the manifest URL. Empty lines and lines starting with <tt>#</tt> are ignored.
+ */
+public class ResourceManifest {
+
+    public static final String TYPE_JRE = "jre";
+    public static final String TYPE_JAR = "jar";
+
+    private final List<Resource> jars = new ArrayList<Resource>();
+    private Resource jre;
+
+    private ResourceManifest() {
+    }
+
+    /**
+     * Reads a manifest downloaded from a given URL.
+     *
+     * @param manifestURL a URL used to resolve relative URLs of resources
+     */
+    public static ResourceManifest read(URL manifestURL, File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return read(manifestURL, input);
+        } finally {
+            input.close();
+        }
+    }
+
+    static ResourceManifest read(URL manifestURL, InputStream input) throws IOException {
+        ResourceManifest manifest = new ResourceManifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 4) {
+                throw new IOException("Wrong line " + lineNumber + " of manifest " + manifestURL + ": " + line);
+            }
+            Resource resource;
+            try {
+                resource = new Resource(fields[1], Long.parseLong(fields[2]), new URL(manifestURL, fields[3])
+                        .toString());
+            } catch (NumberFormatException e) {
+                throw new IOException("Wrong size in line " + lineNumber + " of manifest " + manifestURL + ": "
+                        + line);
+            }
+            if (TYPE_JRE.equals(fields[0])) {
+                manifest.jre = resource;
+            } else if (TYPE_JAR.equals(fields[0])) {
+                manifest.jars.add(resource);
+            } else {
+                throw new IOException("Wrong type in line " + lineNumber + " of manifest " + manifestURL + ": "
+                        + line);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @return JARs ordered by size, the biggest first (they are downloaded first, so they don't finish last)
+     */
+    public List<Resource> getJars() {
+        List<Resource> sortedJars = new ArrayList<Resource>(jars);
+        Collections.sort(sortedJars, new Comparator<Resource>() {
+            public int compare(Resource first, Resource second) {
+                return first.size > second.size ? -1 : (first.size == second.size ? 0 : 1);
+            }
+        });
+        return sortedJars;
+    }
+
+    /**
+     * @return a JRE ZIP file or null, when it is not defined in the manifest
+     */
+    public Resource getJre() {
+        return jre;
+    }
+
+    /**
+     * A resource described by a manifest.
+     */
+    public static class Resource {
+
+        private final String sha256;
+        private final long size;
+        private final String url;
+
+        public Resource(String sha256, long size, String url) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.url = url;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+}
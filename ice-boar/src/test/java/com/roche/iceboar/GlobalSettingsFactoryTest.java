@@ -20,6 +20,8 @@ package com.roche.iceboar;
 
 import com.roche.iceboar.settings.GlobalSettings;
 import com.roche.iceboar.settings.GlobalSettingsFactory;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -27,8 +29,14 @@ import javax.jnlp.BasicService;
 import javax.jnlp.ServiceManager;
 import javax.jnlp.ServiceManagerStub;
 import javax.jnlp.UnavailableServiceException;
+import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -37,8 +45,13 @@ import static org.testng.Assert.fail;
 
 public class GlobalSettingsFactoryTest {
 
+    private File cacheDirectory;
+
     @BeforeMethod
     public void setup() {
+        cacheDirectory = new File(System.getProperty("java.io.tmpdir"), "GlobalSettingsFactoryTest_cache_"
+                + System.nanoTime());
+        System.setProperty("jnlp.IceBoar.cacheDirectory", cacheDirectory.getPath());
         // reset all properties
         System.clearProperty("jnlp.IceBoar.jar.0");
         System.clearProperty("jnlp.IceBoar.jar.1");
@@ -51,6 +64,18 @@ public class GlobalSettingsFactoryTest {
         System.clearProperty("jnlp.IceBoar.initial-heap-size");
         System.clearProperty("jnlp.IceBoar.max-heap-size");
         System.clearProperty("jnlp.IceBoar.java-vm-args");
+        System.clearProperty("jnlp.IceBoar.downloadThreads");
+        System.clearProperty("jnlp.IceBoar.jreDownloadConnections");
+        System.clearProperty("jnlp.IceBoar.unzipWhileDownloading");
+        System.clearProperty("jnlp.IceBoar.keepJreArchive");
+        System.clearProperty("jnlp.IceBoar.targetJavaSHA256");
+        System.clearProperty("jnlp.IceBoar.jar-sha256.0");
+        System.clearProperty("jnlp.IceBoar.manifest");
+        System.clearProperty("jnlp.IceBoar.cacheSizeLimitMB");
+        System.clearProperty("jnlp.IceBoar.cacheGracePeriodHours");
+        System.clearProperty("jnlp.IceBoar.sharedCacheDirectory");
+        System.clearProperty("jnlp.IceBoar.updatePolicy");
+        System.clearProperty("jnlp.IceBoar.processOutput");
         System.clearProperty("jnlp.setting1");
         System.clearProperty("jnlp.setting2");
         System.clearProperty("jnlp.setting3");
@@ -338,6 +363,308 @@ public class GlobalSettingsFactoryTest {
                 .isEmpty();
     }
 
+    @Test
+    public void shouldReadDownloadThreads() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.downloadThreads", "8");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getDownloadThreads())
+                .isEqualTo(8);
+    }
+
+    @Test
+    public void shouldUseDefaultDownloadThreadsWhenValueIsWrong() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.downloadThreads", "many");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getDownloadThreads())
+                .isEqualTo(GlobalSettingsFactory.DEFAULT_DOWNLOAD_THREADS);
+    }
+
+    @Test
+    public void shouldReadJreDownloadConnections() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.jreDownloadConnections", "2");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getJreDownloadConnections())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void shouldReadCacheSizeLimitAndGracePeriod() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.cacheSizeLimitMB", "512");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getCacheSizeLimit())
+                .isEqualTo(512);
+        assertThat(settings.getCacheGracePeriod())
+                .isEqualTo(GlobalSettingsFactory.DEFAULT_CACHE_GRACE_PERIOD);
+    }
+
+    @Test
+    public void shouldReadUpdatePolicy() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.updatePolicy", "prompt");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getUpdatePolicy())
+                .isEqualTo(GlobalSettings.UPDATE_POLICY_PROMPT);
+        assertThat(settings.isUpdateInBackground())
+                .isTrue();
+    }
+
+    @Test
+    public void shouldCheckUpdatesBeforeStartWhenUpdatePolicyIsWrong() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.updatePolicy", "never");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getUpdatePolicy())
+                .isEqualTo(GlobalSettings.UPDATE_POLICY_ALWAYS);
+        assertThat(settings.isUpdateInBackground())
+                .isFalse();
+    }
+
+    @Test
+    public void shouldReadProcessOutput() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.processOutput", "file");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getProcessOutput())
+                .isEqualTo(GlobalSettings.PROCESS_OUTPUT_FILE);
+        assertThat(settings.getProcessOutputPath())
+                .endsWith(GlobalSettings.PROCESS_OUTPUT_FILE_NAME);
+    }
+
+    @Test
+    public void shouldReadUnzipWhileDownloadingAndKeepJreArchive() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.unzipWhileDownloading", "true");
+        System.setProperty("jnlp.IceBoar.keepJreArchive", "false");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.isUnzipWhileDownloading())
+                .isTrue();
+        assertThat(settings.isKeepJreArchive())
+                .isFalse();
+    }
+
+    @Test
+    public void shouldReadExpectedDigests() {
+        // given
+        minimumSettingsProperties();
+        System.setProperty("jnlp.IceBoar.jar-sha256.0", "abc123 ");
+        System.setProperty("jnlp.IceBoar.targetJavaSHA256", "def456");
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(settings.getJarURLs())
+                .containsExactly("xyz.jar");
+        assertThat(settings.getExpectedSha256ForJar("xyz.jar"))
+                .isEqualTo("abc123");
+        assertThat(settings.getTargetJavaSha256())
+                .isEqualTo("def456");
+    }
+
+    @Test
+    public void shouldReadResourcesFromManifest() throws IOException {
+        // given
+        File directory = new File(System.getProperty("java.io.tmpdir"),
+                "GlobalSettingsFactoryTest_" + System.nanoTime());
+        File manifest = new File(directory, "manifest.txt");
+        FileUtils.writeStringToFile(manifest, "# type sha256 size url\n"
+                + "jar aaa111 10 small.jar\n"
+                + "\n"
+                + "jre ccc333 1000 jre.zip\n"
+                + "jar bbb222 500 libs/big.jar\n", "UTF-8");
+        String manifestURL = manifest.toURI().toURL().toString();
+        System.setProperty("jnlp.IceBoar.manifest", manifestURL);
+        String baseURL = manifestURL.substring(0, manifestURL.lastIndexOf('/') + 1);
+
+        try {
+            // when
+            GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+            // then
+            assertThat(settings.getJarURLs())
+                    .containsExactly(baseURL + "libs/big.jar", baseURL + "small.jar");
+            assertThat(settings.getExpectedSha256ForJar(baseURL + "small.jar"))
+                    .isEqualTo("aaa111");
+            assertThat(settings.getTargetJavaURL())
+                    .isEqualTo(baseURL + "jre.zip");
+            assertThat(settings.getTargetJavaSha256())
+                    .isEqualTo("ccc333");
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        System.clearProperty("jnlp.IceBoar.cacheDirectory");
+        FileUtils.deleteQuietly(cacheDirectory);
+    }
+
+    @Test
+    public void shouldStoreCacheInApplicationSubdirectoryOfCacheDirectory() {
+        // given
+        minimumSettingsProperties();
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(new File(settings.getTempDirectory()).getParentFile())
+                .isEqualTo(cacheDirectory);
+        assertThat(settings.getCachePath())
+                .isEqualTo(settings.getTempDirectory() + ".IceBoar.index");
+    }
+
+    @Test
+    public void shouldShareRepositoriesOfJarsAndJresInCacheDirectory() {
+        // given
+        minimumSettingsProperties();
+
+        // when
+        GlobalSettings settings = GlobalSettingsFactory.getGlobalSettings(null);
+
+        // then
+        assertThat(new File(settings.getJreRepositoryPath()).getParentFile())
+                .isEqualTo(cacheDirectory);
+        assertThat(new File(settings.getDestinationJARsPath()).getParentFile())
+                .isEqualTo(cacheDirectory);
+    }
+
+    @Test
+    public void shouldUseXdgCacheHomeOnLinux() {
+        // given
+        Properties properties = createCacheProperties("Linux");
+        Map<String, String> environment = new HashMap<String, String>();
+        environment.put("XDG_CACHE_HOME", new File(cacheDirectory, "xdg").getAbsolutePath());
+
+        // when
+        String directory = GlobalSettingsFactory.getCacheDirectory("http://example.com:8080/app/", properties,
+                environment);
+
+        // then
+        assertThat(directory)
+                .startsWith(new File(cacheDirectory, "xdg" + File.separator + "iceboar" + File.separator
+                        + "example.com_").getAbsolutePath());
+        assertThat(new File(directory).isDirectory())
+                .isTrue();
+    }
+
+    @Test
+    public void shouldUseDifferentDirectoriesForApplicationsFromTheSameServer() {
+        // given
+        Properties properties = createCacheProperties("Linux");
+        Map<String, String> environment = Collections.emptyMap();
+
+        // when
+        String first = GlobalSettingsFactory.getCacheDirectory("http://example.com/app1/", properties, environment);
+        String second = GlobalSettingsFactory.getCacheDirectory("http://example.com/app2/", properties, environment);
+
+        // then
+        assertThat(first)
+                .startsWith(new File(cacheDirectory, ".cache" + File.separator + "iceboar").getAbsolutePath());
+        assertThat(first)
+                .isNotEqualTo(second);
+    }
+
+    @Test
+    public void shouldUseLibraryCachesOnMac() {
+        // given
+        Properties properties = createCacheProperties("Mac OS X");
+
+        // when
+        String directory = GlobalSettingsFactory.getCacheDirectory("", properties,
+                Collections.<String, String>emptyMap());
+
+        // then
+        assertThat(directory)
+                .isEqualTo(new File(cacheDirectory, "Library/Caches/IceBoar/default").getAbsolutePath()
+                        + File.separator);
+    }
+
+    @Test
+    public void shouldUseLocalAppDataOnWindows() {
+        // given
+        Properties properties = createCacheProperties("Windows 10");
+        Map<String, String> environment = new HashMap<String, String>();
+        environment.put("LOCALAPPDATA", new File(cacheDirectory, "Local").getAbsolutePath());
+
+        // when
+        String directory = GlobalSettingsFactory.getCacheDirectory("", properties, environment);
+
+        // then
+        assertThat(directory)
+                .isEqualTo(new File(cacheDirectory, "Local/IceBoar/default").getAbsolutePath() + File.separator);
+    }
+
+    @Test
+    public void shouldUseTemporaryDirectoryWhenCacheDirectoryCantBeCreated() throws IOException {
+        // given
+        Properties properties = createCacheProperties("Linux");
+        File file = new File(cacheDirectory, "file");
+        FileUtils.writeStringToFile(file, "not a directory");
+        properties.setProperty("jnlp.IceBoar.cacheDirectory", file.getPath());
+
+        // when
+        String directory = GlobalSettingsFactory.getCacheDirectory("", properties,
+                Collections.<String, String>emptyMap());
+
+        // then
+        assertThat(directory)
+                .isEqualTo(System.getProperty("java.io.tmpdir"));
+    }
+
+    private Properties createCacheProperties(String operationSystemName) {
+        Properties properties = new Properties();
+        properties.setProperty("os.name", operationSystemName);
+        properties.setProperty("user.home", cacheDirectory.getAbsolutePath());
+        properties.setProperty("java.io.tmpdir", System.getProperty("java.io.tmpdir"));
+        return properties;
+    }
+
     private void minimumSettingsProperties() {
         System.setProperty("jnlp.IceBoar.targetJavaURL", "abc");
         System.setProperty("jnlp.IceBoar.jar.0", "xyz.jar");
@@ -22,8 +22,6 @@ import com.roche.iceboar.settings.GlobalSettings;
 import org.testng.annotations.Test;
 
 import java.io.File;
-import java.util.Arrays;
-import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.testng.Assert.fail;
@@ -76,27 +74,24 @@ public class GlobalSettingsTest {
 
         // then
         assertThat(actual)
-                .isEqualTo("/tmp" + File.separator + "jre1_0" + File.separator + "bin" + File.separator + "java");
+                .isEqualTo("/tmp" + File.separator + "IceBoar_jre1_0" + File.separator + "bin" + File.separator
+                        + "java");
     }
 
     @Test
-    public void shouldGetClassPathAsText() {
+    public void shouldGetDestinationPathForJar() {
         // given
-        List<String> jarURLs = Arrays.asList("jar1.jar", "jar2.jar", "jar3.jar");
         GlobalSettings settings = GlobalSettings.builder()
                                                 .tempDirectory("/tmp")
-                                                .jarURLs(jarURLs)
-                                                .pathSeparator(";")
                                                 .build();
 
         // when
-        String actual = settings.getClassPathAsText();
+        String actual = settings.getDestinationPathForJar("http://www.example.com/jar1.jar", "abc123");
 
         // then
         assertThat(actual)
-                .isEqualTo("/tmp" + File.separator + "IceBoar_0" + File.separator + "jar1.jar;" +
-                        "/tmp" + File.separator + "IceBoar_0" + File.separator + "jar2.jar;" +
-                        "/tmp" + File.separator + "IceBoar_0" + File.separator + "jar3.jar");
+                .isEqualTo("/tmp" + File.separator + "IceBoar_jars" + File.separator + "abc123" + File.separator
+                        + "jar1.jar");
     }
 
     @Test
@@ -0,0 +1,223 @@
+package com.roche.iceboar.cachestorage;
+
+import com.roche.iceboar.downloader.FileUtilsFacade;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
+import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheGarbageCollectorTest {
+
+    private static final long TWO_DAYS = 2 * 24 * 60 * 60 * 1000L;
+    private static final int KILOBYTE = 1024;
+
+    private File tempDir;
+    private GlobalSettings settings;
+    private LocalCacheStorage storage;
+    private CacheGarbageCollector collector;
+
+    @BeforeMethod
+    public void setUp() {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "CacheGarbageCollectorTest_" + System.nanoTime());
+        settings = GlobalSettings.builder()
+                                 .tempDirectory(tempDir.getPath())
+                                 .targetJavaURL("http://www.example.com/jre-1.8.0.zip")
+                                 .cachePath(new File(tempDir, ".IceBoar.cache").getPath())
+                                 .cacheSizeLimit(1)
+                                 .cacheGracePeriod(24)
+                                 .build();
+        storage = new LocalCacheStorage();
+        collector = new CacheGarbageCollector(settings, storage, new FileUtilsFacade());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FileUtils.deleteQuietly(tempDir);
+    }
+
+    @Test
+    public void shouldDeleteLeastRecentlyUsedJarWhenCacheIsTooBig() throws Exception {
+        // given
+        File oldJar = addJar("http://www.example.com/old.jar", "aaa", 700);
+        Thread.sleep(10);
+        File newJar = addJar("http://www.example.com/new.jar", "bbb", 700);
+
+        // when
+        collector.collect(System.currentTimeMillis() + TWO_DAYS);
+
+        // then
+        assertThat(oldJar.exists())
+                .isFalse();
+        assertThat(oldJar.getParentFile().exists())
+                .isFalse();
+        assertThat(newJar.exists())
+                .isTrue();
+        CacheStatus cacheStatus = storage.loadCacheStatus(settings.getCachePath());
+        assertThat(cacheStatus.getJarDownloadedStatusInfo("http://www.example.com/old.jar"))
+                .isNull();
+        assertThat(cacheStatus.getJarDownloadedStatusInfo("http://www.example.com/new.jar"))
+                .isNotNull();
+    }
+
+    @Test
+    public void shouldNotDeleteFilesUsedInGracePeriod() throws Exception {
+        // given
+        File oldJar = addJar("http://www.example.com/old.jar", "aaa", 700);
+        File newJar = addJar("http://www.example.com/new.jar", "bbb", 700);
+
+        // when
+        collector.collect(System.currentTimeMillis());
+
+        // then
+        assertThat(oldJar.exists())
+                .isTrue();
+        assertThat(newJar.exists())
+                .isTrue();
+    }
+
+    @Test
+    public void shouldDeleteFilesLeftByOldRuns() throws Exception {
+        // given
+        long now = System.currentTimeMillis();
+        long oldRun = now - TWO_DAYS;
+        File oldUnzipDir = new File(tempDir, "IceBoar_jre-1.8.0_" + oldRun);
+        FileUtils.forceMkdir(new File(oldUnzipDir, "bin"));
+        oldUnzipDir.setLastModified(oldRun);
+        File legacyUnzipDir = new File(tempDir, "jre-1.8.0_" + oldRun);
+        FileUtils.forceMkdir(new File(legacyUnzipDir, "bin"));
+        legacyUnzipDir.setLastModified(oldRun);
+        File currentUnzipDir = new File(tempDir, "IceBoar_jre-1.8.0_" + now);
+        FileUtils.forceMkdir(new File(currentUnzipDir, "bin"));
+        File otherAppDir = new File(tempDir, "other_" + oldRun);
+        FileUtils.forceMkdir(new File(otherAppDir, "bin"));
+        otherAppDir.setLastModified(oldRun);
+        File oldTemporaryJar = new File(settings.getDestinationJARsPath(), "IceBoar_a.jar_" + oldRun + ".tmp");
+        FileUtils.writeStringToFile(oldTemporaryJar, "content");
+        oldTemporaryJar.setLastModified(oldRun);
+
+        // when
+        collector.collect(now);
+
+        // then
+        assertThat(oldUnzipDir.exists())
+                .isFalse();
+        assertThat(legacyUnzipDir.exists())
+                .isFalse();
+        assertThat(oldTemporaryJar.exists())
+                .isFalse();
+        assertThat(currentUnzipDir.exists())
+                .isTrue();
+        assertThat(otherAppDir.exists())
+                .isTrue();
+    }
+
+    @Test
+    public void shouldNotDeleteFileUsedByAnotherApplication() throws Exception {
+        // given
+        GlobalSettings appSettings = createSettingsOfApplication("app");
+        GlobalSettings otherSettings = createSettingsOfApplication("other");
+        File sharedJar = addJar(otherSettings, "http://www.example.com/old.jar", "aaa", 700);
+        addJar(appSettings, "http://www.example.com/old.jar", "aaa", 700);
+        Thread.sleep(10);
+        File newJar = addJar(appSettings, "http://www.example.com/new.jar", "bbb", 700);
+
+        // when
+        new CacheGarbageCollector(appSettings, storage, new FileUtilsFacade())
+                .collect(System.currentTimeMillis() + TWO_DAYS);
+
+        // then
+        assertThat(sharedJar.exists())
+                .isTrue();
+        assertThat(newJar.exists())
+                .isTrue();
+        assertThat(storage.loadCacheStatus(appSettings.getCachePath())
+                          .getJarDownloadedStatusInfo("http://www.example.com/old.jar"))
+                .isNull();
+    }
+
+    @Test
+    public void shouldNotDeleteFilesLockedByRunningApplication() throws Exception {
+        // given
+        File lockedJar = addJar("http://www.example.com/old.jar", "aaa", 700);
+        File orphanJre = new File(settings.getJreInstallPath("ccc"));
+        FileUtils.forceMkdir(new File(orphanJre, "bin"));
+        orphanJre.setLastModified(System.currentTimeMillis() - TWO_DAYS);
+        CacheUsageLock.lockShared(Arrays.asList(lockedJar, orphanJre));
+        File newJar = addJar("http://www.example.com/new.jar", "bbb", 700);
+
+        // when
+        collector.collect(System.currentTimeMillis() + TWO_DAYS);
+
+        // then
+        assertThat(lockedJar.exists())
+                .isTrue();
+        assertThat(orphanJre.exists())
+                .isTrue();
+        assertThat(storage.loadCacheStatus(settings.getCachePath())
+                          .getJarDownloadedStatusInfo("http://www.example.com/old.jar"))
+                .isNotNull();
+        assertThat(newJar.exists())
+                .isFalse();
+    }
+
+    @Test
+    public void shouldNotDeleteOrphanStartedInGracePeriod() throws Exception {
+        // given
+        long now = System.currentTimeMillis();
+        File orphanJre = new File(settings.getJreInstallPath("ccc"));
+        FileUtils.forceMkdir(new File(orphanJre, "bin"));
+        orphanJre.setLastModified(now - TWO_DAYS);
+        File usedJre = new File(settings.getJreInstallPath("ddd"));
+        FileUtils.forceMkdir(new File(usedJre, "bin"));
+        usedJre.setLastModified(now - TWO_DAYS);
+        // left by a run of an application, which is still running after Ice Boar was closed
+        FileUtils.touch(CacheUsageLock.getLockFile(usedJre));
+
+        // when
+        collector.collect(now);
+
+        // then
+        assertThat(orphanJre.exists())
+                .isFalse();
+        assertThat(usedJre.exists())
+                .isTrue();
+        assertThat(CacheUsageLock.getLockFile(usedJre).exists())
+                .isTrue();
+    }
+
+    private GlobalSettings createSettingsOfApplication(String name) {
+        File directory = new File(tempDir, name);
+        return GlobalSettings.builder()
+                             .tempDirectory(directory.getPath())
+                             .cacheRootDirectory(tempDir.getPath())
+                             .cachePath(new File(directory, LocalCacheStorage.CACHE_FILE_NAME).getPath())
+                             .cacheSizeLimit(1)
+                             .cacheGracePeriod(24)
+                             .build();
+    }
+
+    private File addJar(String jarUrl, String hash, int sizeInKilobytes) throws IOException {
+        return addJar(settings, jarUrl, hash, sizeInKilobytes);
+    }
+
+    private File addJar(GlobalSettings settings, String jarUrl, String hash, int sizeInKilobytes)
+            throws IOException {
+        File jar = new File(settings.getDestinationPathForJar(jarUrl, hash));
+        FileUtils.writeByteArrayToFile(jar, new byte[sizeInKilobytes * KILOBYTE]);
+        JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+        detailInfo.setJarUrl(jarUrl);
+        detailInfo.setPathToJarFile(jar.getPath());
+        detailInfo.setHash(hash);
+        storage.addAndSaveDownloadedJarInCache(settings, detailInfo);
+        return jar;
+    }
+}
@@ -0,0 +1,253 @@
+package com.roche.iceboar.cachestorage;
+
+import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheMigrationTest {
+
+    private static final String JAR_URL = "http://example.com/app/app.jar";
+    private static final String JRE_URL = "http://example.com/app/jre.zip";
+    private static final String OTHER_JAR_URL = "http://example.com/other/other.jar";
+    private static final String LEGACY_CACHE = "src/test/resources/cache01_ok.cache";
+    private static final String LEGACY_TEMP_DIRECTORY = "/var/folders/_s/4m_b_3js5px16n_7hn9841xr0000gn/T/";
+
+    private File tempDir;
+    private File oldDirectory;
+    private File newDirectory;
+    private File rootDirectory;
+    private LocalCacheStorage storage;
+
+    @BeforeMethod
+    public void setup() {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "CacheMigrationTest_" + System.nanoTime());
+        oldDirectory = new File(tempDir, "tmp");
+        rootDirectory = new File(tempDir, "cache");
+        newDirectory = new File(rootDirectory, "app");
+        storage = new LocalCacheStorage();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FileUtils.deleteQuietly(tempDir);
+    }
+
+    @Test
+    public void shouldMoveFilesOfApplicationToNewDirectory() throws IOException {
+        // given
+        File jar = createFile(oldDirectory, "IceBoar_jars/hash1/app.jar", "app");
+        File validators = createFile(oldDirectory, "IceBoar_jars/hash1/app.jar.validators", "etag");
+        File jre = createFile(oldDirectory, "IceBoar_jres/sha1/bin/java", "java");
+        jre.setExecutable(true, false);
+        File otherJar = createFile(oldDirectory, "IceBoar_jars/hash2/other.jar", "other");
+        saveJar(JAR_URL, jar);
+        saveUnzippedJre(JRE_URL, new File(oldDirectory, "IceBoar_jres/sha1"));
+        saveJar(OTHER_JAR_URL, otherJar);
+
+        // when
+        new CacheMigration(storage).migrate(oldDirectory, newDirectory, rootDirectory, versions(JAR_URL, JRE_URL));
+
+        // then
+        File movedJar = new File(rootDirectory, "IceBoar_jars/hash1/app.jar");
+        File movedJava = new File(rootDirectory, "IceBoar_jres/sha1/bin/java");
+        assertThat(jar.exists())
+                .isFalse();
+        assertThat(validators.exists())
+                .isFalse();
+        assertThat(FileUtils.readFileToString(movedJar))
+                .isEqualTo("app");
+        assertThat(new File(rootDirectory, "IceBoar_jars/hash1/app.jar.validators").exists())
+                .isTrue();
+        assertThat(movedJava.canExecute())
+                .isTrue();
+        assertThat(otherJar.exists())
+                .isTrue();
+
+        CacheStatus newStatus = storage.loadCacheStatus(getCachePath(newDirectory));
+        assertThat(newStatus.getJarDownloadedStatusInfo(JAR_URL).getPath())
+                .isEqualTo(movedJar.getAbsolutePath());
+        assertThat(newStatus.getJarDownloadedStatusInfo(JAR_URL).getHash())
+                .isEqualTo("hash");
+        assertThat(newStatus.getJreUnzippedStatusInfo(JRE_URL).getPath())
+                .isEqualTo(new File(rootDirectory, "IceBoar_jres/sha1").getAbsolutePath());
+        assertThat(newStatus.getJarDownloadedStatusInfo(OTHER_JAR_URL))
+                .isNull();
+
+        CacheStatus oldStatus = storage.loadCacheStatus(getCachePath(oldDirectory));
+        assertThat(oldStatus.getJarDownloadedStatusInfo(JAR_URL))
+                .isNull();
+        assertThat(oldStatus.getJarDownloadedStatusInfo(OTHER_JAR_URL).getPath())
+                .isEqualTo(otherJar.getAbsolutePath());
+    }
+
+    @Test
+    public void shouldNotMigrateWhenNewCacheExists() throws IOException {
+        // given
+        File jar = createFile(oldDirectory, "IceBoar_jars/hash1/app.jar", "app");
+        saveJar(JAR_URL, jar);
+        new CacheMigration(storage).migrate(oldDirectory, newDirectory, rootDirectory, versions(JAR_URL));
+        File newJar = createFile(oldDirectory, "IceBoar_jars/hash3/app.jar", "new app");
+        saveJar(JAR_URL, newJar);
+
+        // when
+        new CacheMigration(storage).migrate(oldDirectory, newDirectory, rootDirectory, versions(JAR_URL));
+
+        // then
+        assertThat(newJar.exists())
+                .isTrue();
+        assertThat(storage.loadCacheStatus(getCachePath(newDirectory)).getJarDownloadedStatusInfo(JAR_URL).getPath())
+                .isEqualTo(new File(rootDirectory, "IceBoar_jars/hash1/app.jar").getAbsolutePath());
+    }
+
+    @Test
+    public void shouldUseFileMovedByAnotherApplication() throws IOException {
+        // given
+        File jar = createFile(oldDirectory, "IceBoar_jars/hash1/app.jar", "app");
+        saveJar(JAR_URL, jar);
+        File movedJar = createFile(rootDirectory, "IceBoar_jars/hash1/app.jar", "app");
+
+        // when
+        new CacheMigration(storage).migrate(oldDirectory, newDirectory, rootDirectory, versions(JAR_URL));
+
+        // then
+        assertThat(jar.exists())
+                .isFalse();
+        assertThat(FileUtils.readFileToString(movedJar))
+                .isEqualTo("app");
+        assertThat(storage.loadCacheStatus(getCachePath(newDirectory)).getJarDownloadedStatusInfo(JAR_URL).getPath())
+                .isEqualTo(movedJar.getAbsolutePath());
+    }
+
+    @Test
+    public void shouldMoveJreCachedByJavaVersionInVersion10() throws IOException {
+        // given
+        copyLegacyCache(oldDirectory);
+        File zip = createFile(oldDirectory, "jre-1.7.0_01-macosx-x64.zip", "zip");
+        File unzipped = new File(oldDirectory, "jre-1.7.0_01-macosx-x64_1455230359049");
+        createFile(unzipped, "bin/java", "java");
+        Map<String, String> versions = versions(JAR_URL, JRE_URL);
+        versions.put("1.7.0_01", JRE_URL);
+
+        // when
+        new CacheMigration(storage).migrate(oldDirectory, newDirectory, rootDirectory, versions);
+
+        // then
+        File movedZip = new File(newDirectory, "jre-1.7.0_01-macosx-x64.zip");
+        File movedUnzipped = new File(newDirectory, "jre-1.7.0_01-macosx-x64_1455230359049");
+        assertThat(zip.exists())
+                .isFalse();
+        assertThat(unzipped.exists())
+                .isFalse();
+        assertThat(FileUtils.readFileToString(movedZip))
+                .isEqualTo("zip");
+        assertThat(new File(movedUnzipped, "bin/java").exists())
+                .isTrue();
+
+        CacheStatus newStatus = storage.loadCacheStatus(getCachePath(newDirectory));
+        assertThat(newStatus.getJreDownloadedStatusInfo(JRE_URL).getPath())
+                .isEqualTo(movedZip.getAbsolutePath());
+        assertThat(newStatus.getJreUnzippedStatusInfo(JRE_URL).getPath())
+                .isEqualTo(movedUnzipped.getAbsolutePath());
+        assertThat(newStatus.getJreDownloadedStatusInfo("1.7.0_01"))
+                .isNull();
+
+        CacheStatus oldStatus = storage.loadCacheStatus(getCachePath(oldDirectory));
+        assertThat(oldStatus.getJreDownloadedStatusInfo("1.7.0_01"))
+                .isNull();
+        assertThat(oldStatus.getJreUnzippedStatusInfo("1.7.0_01"))
+                .isNull();
+    }
+
+    /**
+     * Copies a cache file written by version 1.0 on Mac OS X, with paths moved from its temporary directory to the
+     * given directory. Paths are serialized as strings prefixed with a length.
+     */
+    private void copyLegacyCache(File directory) throws IOException {
+        byte[] cache = FileUtils.readFileToByteArray(new File(LEGACY_CACHE));
+        String newTempDirectory = directory.getAbsolutePath() + File.separator;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int i = 0;
+        while (i < cache.length) {
+            String path = readLegacyPath(cache, i);
+            if (path != null) {
+                out.writeByte(cache[i]);
+                out.writeUTF(newTempDirectory + path.substring(LEGACY_TEMP_DIRECTORY.length()));
+                i += 3 + path.length();
+            } else {
+                out.writeByte(cache[i]);
+                i++;
+            }
+        }
+        out.close();
+        FileUtils.writeByteArrayToFile(new File(directory, LocalCacheStorage.LEGACY_CACHE_FILE_NAME),
+                bytes.toByteArray());
+    }
+
+    /**
+     * @return a string starting with {@link #LEGACY_TEMP_DIRECTORY} serialized at the given index or null
+     */
+    private String readLegacyPath(byte[] cache, int index) throws IOException {
+        if (cache[index] != 0x74 || index + 3 > cache.length) {
+            return null;
+        }
+        int length = ((cache[index + 1] & 0xff) << 8) | (cache[index + 2] & 0xff);
+        if (index + 3 + length > cache.length) {
+            return null;
+        }
+        String string = new String(cache, index + 3, length, "UTF-8");
+        return string.startsWith(LEGACY_TEMP_DIRECTORY) ? string : null;
+    }
+
+    private Map<String, String> versions(String... urls) {
+        Map<String, String> versions = new HashMap<String, String>();
+        for (String url : urls) {
+            versions.put(url, url);
+        }
+        return versions;
+    }
+
+    private File createFile(File directory, String path, String content) throws IOException {
+        File file = new File(directory, path);
+        FileUtils.writeStringToFile(file, content);
+        return file;
+    }
+
+    private void saveJar(String url, File file) {
+        JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+        detailInfo.setJarUrl(url);
+        detailInfo.setPathToJarFile(file.getAbsolutePath());
+        detailInfo.setHash("hash");
+        storage.addAndSaveDownloadedJarInCache(createSettings(null), detailInfo);
+    }
+
+    private void saveUnzippedJre(String url, File directory) {
+        JREUnzippedDetailInfo detailInfo = new JREUnzippedDetailInfo();
+        detailInfo.setPathToJreUnzipDir(directory.getAbsolutePath());
+        storage.addAndSaveUnzippedJreInCache(createSettings(url), detailInfo);
+    }
+
+    private GlobalSettings createSettings(String jreUrl) {
+        return GlobalSettings.builder()
+                             .targetJavaURL(jreUrl)
+                             .cachePath(getCachePath(oldDirectory))
+                             .build();
+    }
+
+    private String getCachePath(File directory) {
+        return new File(directory, LocalCacheStorage.CACHE_FILE_NAME).getPath();
+    }
+}
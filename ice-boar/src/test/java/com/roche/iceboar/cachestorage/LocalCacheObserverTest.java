@@ -18,10 +18,11 @@
 
 package com.roche.iceboar.cachestorage;
 
+import com.roche.iceboar.progressevent.DownloadJarFinishEvent;
 import com.roche.iceboar.progressevent.JREDownloadedDetailInfo;
 import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
 import com.roche.iceboar.progressevent.ProgressEvent;
-import com.roche.iceboar.progressevent.ProgressEventFactory;
 import com.roche.iceboar.settings.GlobalSettings;
 import org.testng.annotations.Test;
 
@@ -30,18 +31,13 @@ import static org.mockito.Mockito.*;
 public class LocalCacheObserverTest {
 
     private static final ProgressEvent JRE_DOWNLOADED_EVENT = new ProgressEvent("jre downloaded", "");
-    private static final ProgressEvent JRE_UNZIPPED_EVENT = new ProgressEvent("jre unzipped", "");
 
     @Test
     public void shouldHandleJREDownloadedEvent() {
         // given
         LocalCacheStorage localCacheStorage = mock(LocalCacheStorage.class);
         GlobalSettings settings = GlobalSettings.builder().build();
-        ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
-        when(progressEventFactory.getJREDownloadedEvent())
-                .thenReturn(JRE_DOWNLOADED_EVENT);
-        LocalCacheObserver observer = new LocalCacheObserver(settings, progressEventFactory,
-                localCacheStorage);
+        LocalCacheObserver observer = new LocalCacheObserver(settings, localCacheStorage);
         JREDownloadedDetailInfo detailInfo = new JREDownloadedDetailInfo();
         detailInfo.setPathToJreZipFile("aa/b/c");
         JRE_DOWNLOADED_EVENT.addDetailInfo(detailInfo);
@@ -58,11 +54,7 @@ public class LocalCacheObserverTest {
         // given
         LocalCacheStorage localCacheStorage = mock(LocalCacheStorage.class);
         GlobalSettings settings = GlobalSettings.builder().build();
-        ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
-        when(progressEventFactory.getJREUnzippedEvent())
-                .thenReturn(JRE_UNZIPPED_EVENT);
-        LocalCacheObserver observer = new LocalCacheObserver(settings, progressEventFactory,
-                localCacheStorage);
+        LocalCacheObserver observer = new LocalCacheObserver(settings, localCacheStorage);
         ProgressEvent jreUnzippedEvent = new ProgressEvent("jre unzipped", "");
         JREUnzippedDetailInfo detailInfo = new JREUnzippedDetailInfo();
         detailInfo.setPathToJreUnzipDir("aa/b/c");
@@ -74,4 +66,22 @@ public class LocalCacheObserverTest {
         // then
         verify(localCacheStorage).addAndSaveUnzippedJreInCache(settings, detailInfo);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldHandleDownloadJarFinishEvent() {
+        // given
+        LocalCacheStorage localCacheStorage = mock(LocalCacheStorage.class);
+        GlobalSettings settings = GlobalSettings.builder().build();
+        LocalCacheObserver observer = new LocalCacheObserver(settings, localCacheStorage);
+        ProgressEvent downloadJarFinishEvent = new DownloadJarFinishEvent("jar1", "");
+        JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+        detailInfo.setPathToJarFile("aa/b/c");
+        downloadJarFinishEvent.addDetailInfo(detailInfo);
+
+        // when
+        observer.update(downloadJarFinishEvent);
+
+        // then
+        verify(localCacheStorage).addAndSaveDownloadedJarInCache(settings, detailInfo);
+    }
+}
@@ -0,0 +1,116 @@
+package com.roche.iceboar.cachestorage;
+
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many Ice Boar instances (separate JVMs) store statuses in one cache directory at the same time.
+ */
+public class LocalCacheStorageConcurrencyTest {
+
+    private static final int PROCESSES = 8;
+    private static final int JARS_PER_PROCESS = 100;
+    private static final int SHARED_JAR_UPDATES = 5;
+    private static final String SHARED_JAR_URL = "http://www.example.com/shared.jar";
+
+    private File dir;
+
+    @BeforeMethod
+    public void setUp() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "LocalCacheStorageConcurrencyTest_" + System.nanoTime());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void shouldNotLoseStatusesStoredByManyProcesses() throws Exception {
+        // given
+        FileUtils.copyFile(new File("src/test/resources/cache01_ok.cache"),
+                new File(dir, LocalCacheStorage.LEGACY_CACHE_FILE_NAME));
+        String indexPath = new File(dir, ".IceBoar.index").getPath();
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        // when
+        List<Process> processes = new ArrayList<Process>();
+        for (int i = 0; i < PROCESSES; i++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    Launcher.class.getName(), indexPath, String.valueOf(i)).start());
+        }
+        for (Process process : processes) {
+            assertThat(process.waitFor())
+                    .isEqualTo(0);
+        }
+
+        // then
+        CacheStatus cacheStatus = new LocalCacheStorage().loadCacheStatus(indexPath);
+        for (int i = 0; i < PROCESSES; i++) {
+            for (int j = 0; j < JARS_PER_PROCESS; j++) {
+                assertThat(cacheStatus.getJarDownloadedStatusInfo(getJarUrl(i, j)).getPath())
+                        .isEqualTo(getJarPath(i, j));
+            }
+        }
+        assertThat(cacheStatus.getJarDownloadedStatusInfo(SHARED_JAR_URL))
+                .isNotNull();
+        assertThat(cacheStatus.getJreDownloadedStatusInfo("1.7.0_01"))
+                .isNotNull();
+    }
+
+    private static String getJarUrl(int process, int jar) {
+        return "http://www.example.com/" + process + "/" + jar + ".jar";
+    }
+
+    private static String getJarPath(int process, int jar) {
+        return "/path/" + process + "/" + jar + ".jar";
+    }
+
+    /**
+     * Stores statuses like an Ice Boar instance, which downloads JARs.
+     */
+    public static class Launcher {
+
+        public static void main(String[] args) {
+            // nobody reads an output of this process
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            String indexPath = args[0];
+            int process = Integer.parseInt(args[1]);
+            GlobalSettings settings = GlobalSettings.builder()
+                                                    .cachePath(indexPath)
+                                                    .build();
+            LocalCacheStorage storage = new LocalCacheStorage();
+            for (int jar = 0; jar < JARS_PER_PROCESS; jar++) {
+                storage.addAndSaveDownloadedJarInCache(settings, createDetailInfo(getJarUrl(process, jar),
+                        getJarPath(process, jar)));
+                for (int i = 0; i < SHARED_JAR_UPDATES; i++) {
+                    // replaced records, so the index is compacted
+                    storage.addAndSaveDownloadedJarInCache(settings, createDetailInfo(SHARED_JAR_URL,
+                            getJarPath(process, jar)));
+                }
+                if (jar % 10 == 0) {
+                    storage.loadCacheStatus(indexPath);
+                }
+            }
+        }
+
+        private static JarDownloadedDetailInfo createDetailInfo(String jarUrl, String path) {
+            JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+            detailInfo.setJarUrl(jarUrl);
+            detailInfo.setPathToJarFile(path);
+            return detailInfo;
+        }
+    }
+}
@@ -2,13 +2,17 @@ package com.roche.iceboar.cachestorage;
 
 import com.roche.iceboar.progressevent.JREDownloadedDetailInfo;
 import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
 import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -28,6 +32,7 @@ public class LocalCacheStorageTest {
     public void cleanUp() {
         File file = new File(cachePath);
         file.delete();
+        new File(cachePath + ".lock").delete();
     }
 
     @Test
@@ -59,10 +64,10 @@ public class LocalCacheStorageTest {
     @Test
     public void shouldStoreJreDownloadedStatusInCache() {
         // given
-        String jreVersion = "1.2.3";
+        String jreUrl = "http://www.example.com/jre.zip";
         String jrePath = "/path/to/jre/zip/file.zip";
         GlobalSettings settings = GlobalSettings.builder()
-                                                .targetJavaVersion(jreVersion)
+                                                .targetJavaURL(jreUrl)
                                                 .cachePath(cachePath)
                                                 .build();
 
@@ -75,7 +80,7 @@ public class LocalCacheStorageTest {
 
         // then
         CacheStatus cacheStatus = cache.loadCacheStatus(cachePath);
-        StatusInfo statusInfo = cacheStatus.getJreDownloadedStatusInfo(jreVersion);
+        StatusInfo statusInfo = cacheStatus.getJreDownloadedStatusInfo(jreUrl);
         assertThat(statusInfo.getPath())
                 .isEqualTo(jrePath);
     }
@@ -83,10 +88,10 @@ public class LocalCacheStorageTest {
     @Test
     public void shouldNotStoreJreDownloadedStatusInCacheWhenPathIsEmpty() {
         // given
-        String jreVersion = "1.2.3";
+        String jreUrl = "http://www.example.com/jre.zip";
         String jrePath = "";    // empty path
         GlobalSettings settings = GlobalSettings.builder()
-                                                .targetJavaVersion(jreVersion)
+                                                .targetJavaURL(jreUrl)
                                                 .cachePath(cachePath)
                                                 .build();
 
@@ -99,17 +104,17 @@ public class LocalCacheStorageTest {
 
         // then
         CacheStatus cacheStatus = cache.loadCacheStatus(cachePath);
-        StatusInfo statusInfo = cacheStatus.getJreDownloadedStatusInfo(jreVersion);
+        StatusInfo statusInfo = cacheStatus.getJreDownloadedStatusInfo(jreUrl);
         assertThat(statusInfo).isNull();
     }
 
     @Test
     public void shouldStoreJreUnzippedStatusInCache() {
         // given
-        String jreVersion = "1.2.3.4";
+        String jreUrl = "http://www.example.com/jre.zip";
         String jrePath = "/path/to/jre/zip/file2.zip";
         GlobalSettings settings = GlobalSettings.builder()
-                                                .targetJavaVersion(jreVersion)
+                                                .targetJavaURL(jreUrl)
                                                 .cachePath(cachePath)
                                                 .build();
 
@@ -122,7 +127,7 @@ public class LocalCacheStorageTest {
 
         // then
         CacheStatus cacheStatus = cache.loadCacheStatus(cachePath);
-        StatusInfo statusInfo = cacheStatus.getJreUnzippedStatusInfo(jreVersion);
+        StatusInfo statusInfo = cacheStatus.getJreUnzippedStatusInfo(jreUrl);
         assertThat(statusInfo.getPath())
                 .isEqualTo(jrePath);
     }
@@ -130,10 +135,10 @@ public class LocalCacheStorageTest {
     @Test
     public void shouldNotStoreJreUnzippedStatusInCacheWhenPathToJreUnzipDirIsEmpty() {
         // given
-        String jreVersion = "1.2.3.4.5";
+        String jreUrl = "http://www.example.com/jre.zip";
         String jrePath = "";    // empty PathToJreUnzipDir
         GlobalSettings settings = GlobalSettings.builder()
-                                                .targetJavaVersion(jreVersion)
+                                                .targetJavaURL(jreUrl)
                                                 .cachePath(cachePath)
                                                 .build();
 
@@ -146,7 +151,117 @@ public class LocalCacheStorageTest {
 
         // then
         CacheStatus cacheStatus = cache.loadCacheStatus(cachePath);
-        StatusInfo statusInfo = cacheStatus.getJreUnzippedStatusInfo(jreVersion);
+        StatusInfo statusInfo = cacheStatus.getJreUnzippedStatusInfo(jreUrl);
         assertThat(statusInfo).isNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldStoreJarDownloadedStatusInCacheAndInCurrentCacheStatus() {
+        // given
+        String jarUrl = "http://www.example.com/jar1.jar";
+        String jarPath = "/path/to/jars/abc123/jar1.jar";
+        CacheStatus currentCacheStatus = new CacheStatus();
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .cachePath(cachePath)
+                                                .cacheStatus(currentCacheStatus)
+                                                .build();
+
+        JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+        detailInfo.setJarUrl(jarUrl);
+        detailInfo.setPathToJarFile(jarPath);
+        detailInfo.setHash("abc123");
+
+        // when
+        cache.addAndSaveDownloadedJarInCache(settings, detailInfo);
+
+        // then
+        StatusInfo statusInfo = cache.loadCacheStatus(cachePath).getJarDownloadedStatusInfo(jarUrl);
+        assertThat(statusInfo.getPath())
+                .isEqualTo(jarPath);
+        assertThat(statusInfo.getHash())
+                .isEqualTo("abc123");
+        assertThat(currentCacheStatus.getJarDownloadedStatusInfo(jarUrl).getPath())
+                .isEqualTo(jarPath);
+    }
+
+    @Test
+    public void shouldMigrateStatusesFromOldCacheFileOnFirstWrite() throws IOException {
+        // given
+        File dir = new File(System.getProperty("java.io.tmpdir"), "LocalCacheStorageTest_" + System.nanoTime());
+        File legacyFile = new File(dir, LocalCacheStorage.LEGACY_CACHE_FILE_NAME);
+        FileUtils.copyFile(new File("src/test/resources/cache01_ok.cache"), legacyFile);
+        String indexPath = new File(dir, ".IceBoar.index").getPath();
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .cachePath(indexPath)
+                                                .build();
+        JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+        detailInfo.setJarUrl("http://www.example.com/jar1.jar");
+        detailInfo.setPathToJarFile("/path/to/jars/abc123/jar1.jar");
+
+        try {
+            // when
+            cache.addAndSaveDownloadedJarInCache(settings, detailInfo);
+
+            // then
+            assertThat(new CacheIndex(new File(indexPath)).exists())
+                    .isTrue();
+            CacheStatus cacheStatus = cache.loadCacheStatus(indexPath);
+            assertThat(cacheStatus.getJreDownloadedStatusInfo("1.7.0_01").getPath())
+                    .isEqualTo("/var/folders/_s/4m_b_3js5px16n_7hn9841xr0000gn/T/jre-1.7.0_01-macosx-x64.zip");
+            assertThat(cacheStatus.getJarDownloadedStatusInfo("http://www.example.com/jar1.jar").getPath())
+                    .isEqualTo("/path/to/jars/abc123/jar1.jar");
+            assertThat(legacyFile.exists())
+                    .isTrue();
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    @Test
+    public void shouldReadStatusesWrittenBeforeBrokenRecord() throws IOException {
+        // given
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .cachePath(cachePath)
+                                                .targetJavaURL("http://www.example.com/jre.zip")
+                                                .build();
+        JREDownloadedDetailInfo detailInfo = new JREDownloadedDetailInfo();
+        detailInfo.setPathToJreZipFile("/path/to/jre.zip");
+        cache.addAndSaveDownloadedJreInCache(settings, detailInfo);
+        // an interrupted write of the next record
+        FileOutputStream output = new FileOutputStream(cachePath, true);
+        output.write(new byte[]{0, 0, 0, 40, 1, 0});
+        output.close();
+
+        // when
+        CacheStatus cacheStatus = cache.loadCacheStatus(cachePath);
+
+        // then
+        assertThat(cacheStatus.getJreDownloadedStatusInfo("http://www.example.com/jre.zip").getPath())
+                .isEqualTo("/path/to/jre.zip");
+        assertThat(cache.loadCacheStatus(cachePath).getStatusInfos())
+                .hasSize(1);
+    }
+
+    @Test
+    public void shouldReplaceStatusWithNewPath() {
+        // given
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .cachePath(cachePath)
+                                                .build();
+        for (int i = 0; i < 1000; i++) {
+            JarDownloadedDetailInfo detailInfo = new JarDownloadedDetailInfo();
+            detailInfo.setJarUrl("http://www.example.com/jar" + (i % 100) + ".jar");
+            detailInfo.setPathToJarFile("/path/" + i);
+            cache.addAndSaveDownloadedJarInCache(settings, detailInfo);
+        }
+
+        // when
+        CacheStatus cacheStatus = cache.loadCacheStatus(cachePath);
+
+        // then
+        assertThat(cacheStatus.getStatusInfos())
+                .hasSize(100);
+        assertThat(cacheStatus.getJarDownloadedStatusInfo("http://www.example.com/jar99.jar").getPath())
+                .isEqualTo("/path/999");
+    }
+}
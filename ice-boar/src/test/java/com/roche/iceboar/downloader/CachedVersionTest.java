@@ -0,0 +1,105 @@
+package com.roche.iceboar.downloader;
+
+import com.roche.iceboar.cachestorage.CacheStatus;
+import com.roche.iceboar.cachestorage.StatusInfo;
+import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventQueue;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class CachedVersionTest {
+
+    private static final String JRE_URL = "http://www.example.com/jre1.zip";
+    private static final String JAR_URL = "http://www.example.com/jar1.jar";
+
+    @Test
+    public void shouldAnswerDownloadEventsWithFilesFromCache() {
+        // given
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.isInstallValid(new File("/cache/IceBoar_jres/abc")))
+                .thenReturn(true);
+        when(fileUtils.checkFileExist("/cache/jar1.jar"))
+                .thenReturn(true);
+        GlobalSettings settings = createSettings(Collections.<String, String>emptyMap());
+        ProgressEventFactory progressEventFactory = new ProgressEventFactory();
+        progressEventFactory.init(settings);
+        ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        CachedVersion cachedVersion = new CachedVersion(settings, fileUtils, progressEventFactory,
+                progressEventQueue);
+
+        // when
+        boolean complete = cachedVersion.isComplete();
+        cachedVersion.update(progressEventFactory.getJREUnzipEvent());
+        cachedVersion.update(progressEventFactory.getDownloadJarStartEvent(JAR_URL));
+
+        // then
+        assertThat(complete)
+                .isTrue();
+        ArgumentCaptor<ProgressEvent> captor = ArgumentCaptor.forClass(ProgressEvent.class);
+        verify(progressEventQueue, times(2)).update(captor.capture());
+        JREUnzippedDetailInfo jreDetailInfo = (JREUnzippedDetailInfo) captor.getAllValues().get(0).getDetailInfo();
+        assertThat(jreDetailInfo.getPathToJreUnzipDir())
+                .isEqualTo("/cache/IceBoar_jres/abc");
+        JarDownloadedDetailInfo jarDetailInfo = (JarDownloadedDetailInfo) captor.getAllValues().get(1).getDetailInfo();
+        assertThat(jarDetailInfo.getPathToJarFile())
+                .isEqualTo("/cache/jar1.jar");
+        assertThat(jarDetailInfo.getHash())
+                .isEqualTo("abc123");
+    }
+
+    @Test
+    public void shouldNotBeCompleteWhenCachedJarHasAnotherDigest() {
+        // given
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.isInstallValid(new File("/cache/IceBoar_jres/abc")))
+                .thenReturn(true);
+        when(fileUtils.checkFileExist("/cache/jar1.jar"))
+                .thenReturn(true);
+        GlobalSettings settings = createSettings(Collections.singletonMap(JAR_URL, "def456"));
+        CachedVersion cachedVersion = new CachedVersion(settings, fileUtils, new ProgressEventFactory(),
+                mock(ProgressEventQueue.class));
+
+        // when
+        boolean complete = cachedVersion.isComplete();
+
+        // then
+        assertThat(complete)
+                .isFalse();
+    }
+
+    private GlobalSettings createSettings(Map<String, String> jarsSha256) {
+        StatusInfo jreStatus = mock(StatusInfo.class);
+        when(jreStatus.getPath())
+                .thenReturn("/cache/IceBoar_jres/abc");
+        StatusInfo jarStatus = mock(StatusInfo.class);
+        when(jarStatus.getPath())
+                .thenReturn("/cache/jar1.jar");
+        when(jarStatus.getHash())
+                .thenReturn("abc123");
+        CacheStatus cacheStatus = mock(CacheStatus.class);
+        when(cacheStatus.getJreUnzippedStatusInfo(JRE_URL))
+                .thenReturn(jreStatus);
+        when(cacheStatus.getJarDownloadedStatusInfo(JAR_URL))
+                .thenReturn(jarStatus);
+        return GlobalSettings.builder()
+                             .targetJavaURL(JRE_URL)
+                             .currentJavaVersion("1.5.0")
+                             .targetJavaVersion("1.6.0")
+                             .jarURLs(Collections.singletonList(JAR_URL))
+                             .jarsSha256(jarsSha256)
+                             .cacheStatus(cacheStatus)
+                             .updatePolicy(GlobalSettings.UPDATE_POLICY_BACKGROUND)
+                             .build();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import com.roche.iceboar.IceBoarException;
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventQueue;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.fail;
+
+public class DownloadSchedulerTest {
+
+    @Test
+    public void shouldPublishEventsOfAllTasks() {
+        // given
+        DownloadScheduler scheduler = new DownloadScheduler(2);
+        ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        ProgressEvent event1 = new ProgressEvent("event 1", "");
+        ProgressEvent event2 = new ProgressEvent("event 2", "");
+        scheduler.submit(createTask(event1));
+        scheduler.submit(createTask(event2));
+
+        // when
+        scheduler.publishAll(progressEventQueue);
+
+        // then
+        verify(progressEventQueue).update(event1);
+        verify(progressEventQueue).update(event2);
+    }
+
+    @Test(timeOut = 5000)
+    public void shouldRunTasksAtTheSameTime() {
+        // given
+        DownloadScheduler scheduler = new DownloadScheduler(2);
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final ProgressEvent event = new ProgressEvent("event", "");
+        Callable<ProgressEvent> task = new Callable<ProgressEvent>() {
+            public ProgressEvent call() throws Exception {
+                bothStarted.countDown();
+                // it would wait in vain, when tasks were run one by one
+                assertThat(bothStarted.await(2, TimeUnit.SECONDS)).isTrue();
+                return event;
+            }
+        };
+        scheduler.submit(task);
+        scheduler.submit(task);
+
+        // when
+        scheduler.publishAll(mock(ProgressEventQueue.class));
+
+        // then
+        assertThat(bothStarted.getCount())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void shouldThrowIceBoarExceptionWhenTaskFailed() {
+        // given
+        DownloadScheduler scheduler = new DownloadScheduler(1);
+        final IOException cause = new IOException("connection reset");
+        scheduler.submit(new Callable<ProgressEvent>() {
+            public ProgressEvent call() throws Exception {
+                throw cause;
+            }
+        });
+
+        // when
+        try {
+            scheduler.publishAll(mock(ProgressEventQueue.class));
+
+            // then
+            fail("It should throw an Exception");
+        } catch (IceBoarException e) {
+            assertThat(e.getCause())
+                    .isSameAs(cause);
+        }
+    }
+
+    private Callable<ProgressEvent> createTask(final ProgressEvent event) {
+        return new Callable<ProgressEvent>() {
+            public ProgressEvent call() {
+                return event;
+            }
+        };
+    }
+}
@@ -0,0 +1,803 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public class FileUtilsFacadeTest {
+
+    private static final String CONTENT = "jar content";
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+    private URL url;
+    private File tempDir;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile String cacheControl;
+    private volatile String lastRange;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+    private volatile byte[] body;
+    private volatile boolean acceptRanges;
+    private volatile boolean chunked;
+    private volatile long responseDelayMillis;
+    private ExecutorService serverExecutor;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        requests.set(0);
+        cacheControl = "no-cache";
+        lastRange = null;
+        ranges.clear();
+        body = CONTENT.getBytes("UTF-8");
+        acceptRanges = false;
+        chunked = false;
+        responseDelayMillis = 0;
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/file.jar", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                sleep(responseDelayMillis);
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+                if (acceptRanges) {
+                    exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                }
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (range != null) {
+                    lastRange = range;
+                    ranges.add(range);
+                }
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                } else if (range != null && ETAG.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+                    String[] fromTo = range.substring("bytes=".length()).split("-");
+                    int from = Integer.parseInt(fromTo[0]);
+                    int to = fromTo.length > 1 ? Integer.parseInt(fromTo[1]) : body.length - 1;
+                    exchange.getResponseHeaders().add("Content-Range",
+                            "bytes " + from + "-" + to + "/" + body.length);
+                    sendBody(exchange, 206, Arrays.copyOfRange(body, from, to + 1), to + 1 - from);
+                } else {
+                    // a length 0 sends a body in chunks, without Content-Length
+                    sendBody(exchange, 200, body, chunked ? 0 : body.length);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/file.jar");
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "FileUtilsFacadeTest_" + System.nanoTime());
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendBody(HttpExchange exchange, int code, byte[] body, int contentLength) throws IOException {
+        exchange.sendResponseHeaders(code, contentLength);
+        OutputStream output = exchange.getResponseBody();
+        output.write(body);
+        output.close();
+    }
+
+    /**
+     * Starts a server which sends only 3 of 100 bytes and closes a connection.
+     */
+    private URL startBrokenServer() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    OutputStream output = socket.getOutputStream();
+                    output.write(("HTTP/1.1 200 OK\r\nETag: " + ETAG + "\r\nContent-Length: 100\r\n\r\njar")
+                            .getBytes("UTF-8"));
+                    output.flush();
+                    socket.close();
+                    serverSocket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }).start();
+        return new URL("http://127.0.0.1:" + serverSocket.getLocalPort() + "/broken.jar");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        FileUtils.deleteQuietly(tempDir);
+    }
+
+    @Test
+    public void shouldDownloadFileAndStoreValidators() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, null, destination);
+
+        // then
+        assertThat(downloaded)
+                .isTrue();
+        assertThat(FileUtils.readFileToString(destination))
+                .isEqualTo(CONTENT);
+        assertThat(CacheValidators.read(destination).getETag())
+                .isEqualTo(ETAG);
+    }
+
+    @Test
+    public void shouldUseCachedFileWhenServerRespondsNotModified() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File cachedFile = new File(tempDir, "cached.jar");
+        fileUtils.saveContentFromURLToFileIfModified(url, null, cachedFile);
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, cachedFile, destination);
+
+        // then
+        assertThat(downloaded)
+                .isFalse();
+        assertThat(destination.exists())
+                .isFalse();
+        assertThat(requests.get())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotSendRequestWhenCachedFileIsFresh() throws IOException {
+        // given
+        cacheControl = "max-age=3600";
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File cachedFile = new File(tempDir, "cached.jar");
+        fileUtils.saveContentFromURLToFileIfModified(url, null, cachedFile);
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, cachedFile, cachedFile);
+
+        // then
+        assertThat(downloaded)
+                .isFalse();
+        assertThat(requests.get())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void shouldMoveValidatorsWithFile() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File source = new File(tempDir, "file.jar");
+        fileUtils.saveContentFromURLToFileIfModified(url, null, source);
+        File destination = new File(tempDir, "hash" + File.separator + "file.jar");
+
+        // when
+        fileUtils.moveFile(source, destination);
+
+        // then
+        assertThat(CacheValidators.getValidatorsFile(source).exists())
+                .isFalse();
+        assertThat(CacheValidators.read(destination).getETag())
+                .isEqualTo(ETAG);
+    }
+
+    @Test
+    public void shouldStoreDigestCalculatedDuringDownload() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        fileUtils.saveContentFromURLToFileIfModified(url, null, destination);
+
+        // then
+        assertThat(CacheValidators.read(destination).getSha256())
+                .isEqualTo(sha256(CONTENT));
+        assertThat(fileUtils.getSha256(destination))
+                .isEqualTo(fileUtils.calculateSha256(destination));
+    }
+
+    @Test
+    public void shouldDownloadContentLongerThanTransferredChunk() throws IOException {
+        // given
+        body = new byte[(int) (2.5 * PartFile.TRANSFER_SIZE)];
+        new Random(1).nextBytes(body);
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        fileUtils.saveContentFromURLToFileIfModified(url, null, destination);
+
+        // then
+        assertThat(FileUtils.readFileToByteArray(destination))
+                .isEqualTo(body);
+        assertThat(CacheValidators.read(destination).getSha256())
+                .isEqualTo(FileUtilsFacade.toHex(FileUtilsFacade.createSha256Digest().digest(body)));
+    }
+
+    @Test
+    public void shouldDownloadContentWithoutContentLength() throws IOException {
+        // given
+        chunked = true;
+        body = new byte[(int) (1.5 * PartFile.TRANSFER_SIZE)];
+        new Random(2).nextBytes(body);
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        fileUtils.saveContentFromURLToFileIfModified(url, null, destination);
+
+        // then
+        assertThat(FileUtils.readFileToByteArray(destination))
+                .isEqualTo(body);
+        assertThat(CacheValidators.read(destination).getSha256())
+                .isEqualTo(FileUtilsFacade.toHex(FileUtilsFacade.createSha256Digest().digest(body)));
+    }
+
+    @Test
+    public void shouldDownloadAgainWhenResumedContentHasWrongDigest() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+        File partFile = FileUtilsFacade.getPartFile(destination);
+        FileUtils.writeStringToFile(partFile, "JAR ");
+        new CacheValidators(ETAG, null, 0).write(partFile);
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, null, partFile, destination,
+                sha256(CONTENT));
+
+        // then
+        assertThat(downloaded)
+                .isTrue();
+        assertThat(FileUtils.readFileToString(destination))
+                .isEqualTo(CONTENT);
+        assertThat(ranges)
+                .containsExactly("bytes=4-");
+        assertThat(requests.get())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRejectContentWithWrongDigest() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        try {
+            fileUtils.saveContentFromURLToFileIfModified(url, null, FileUtilsFacade.getPartFile(destination),
+                    destination, sha256("other content"));
+            // then
+            fail("It should throw an IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage())
+                    .contains("but expected is " + sha256("other content"));
+        }
+        assertThat(destination.exists())
+                .isFalse();
+        assertThat(FileUtilsFacade.getPartFile(destination).exists())
+                .isFalse();
+        assertThat(requests.get())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void shouldUseCachedFileWithExpectedDigestWithoutRequest() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File cachedFile = new File(tempDir, "cached.jar");
+        fileUtils.saveContentFromURLToFileIfModified(url, null, cachedFile);
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, cachedFile,
+                FileUtilsFacade.getPartFile(destination), destination, sha256(CONTENT));
+
+        // then
+        assertThat(downloaded)
+                .isFalse();
+        assertThat(requests.get())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotUseCachedFileWithWrongDigest() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File cachedFile = new File(tempDir, "cached.jar");
+        FileUtils.writeStringToFile(cachedFile, "corrupted");
+        new CacheValidators(ETAG, null, 0).write(cachedFile);
+        File destination = new File(tempDir, "file.jar");
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, cachedFile,
+                FileUtilsFacade.getPartFile(destination), destination, sha256(CONTENT));
+
+        // then
+        assertThat(downloaded)
+                .isTrue();
+        assertThat(FileUtils.readFileToString(destination))
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void shouldResumeBrokenDownload() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+        File partFile = FileUtilsFacade.getPartFile(destination);
+        FileUtils.writeStringToFile(partFile, CONTENT.substring(0, 4));
+        new CacheValidators(ETAG, null, 0).write(partFile);
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, null, destination);
+
+        // then
+        assertThat(downloaded)
+                .isTrue();
+        assertThat(lastRange)
+                .isEqualTo("bytes=4-");
+        assertThat(FileUtils.readFileToString(destination))
+                .isEqualTo(CONTENT);
+        assertThat(partFile.exists())
+                .isFalse();
+    }
+
+    @Test
+    public void shouldResumePreallocatedPartFileOfKilledRun() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+        File partFile = FileUtilsFacade.getPartFile(destination);
+        FileUtils.writeByteArrayToFile(partFile, Arrays.copyOf(CONTENT.substring(0, 4).getBytes(), CONTENT.length()));
+        new CacheValidators(ETAG, null, 0).write(partFile);
+        RandomAccessFile written = new RandomAccessFile(partFile.getPath() + PartFile.WRITTEN_SUFFIX, "rw");
+        written.writeLong(4);
+        written.close();
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileIfModified(url, null, destination);
+
+        // then
+        assertThat(downloaded)
+                .isTrue();
+        assertThat(lastRange)
+                .isEqualTo("bytes=4-");
+        assertThat(FileUtils.readFileToString(destination))
+                .isEqualTo(CONTENT);
+        assertThat(new File(partFile.getPath() + PartFile.WRITTEN_SUFFIX).exists())
+                .isFalse();
+    }
+
+    @Test
+    public void shouldDownloadWholeFileWhenPartFileIsOutdated() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "file.jar");
+        File partFile = FileUtilsFacade.getPartFile(destination);
+        FileUtils.writeStringToFile(partFile, "old content of file");
+        new CacheValidators("\"v0\"", null, 0).write(partFile);
+
+        // when
+        fileUtils.saveContentFromURLToFileIfModified(url, null, destination);
+
+        // then
+        assertThat(FileUtils.readFileToString(destination))
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void shouldKeepPartFileWhenDownloadIsNotComplete() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        URL brokenUrl = startBrokenServer();
+        File destination = new File(tempDir, "broken.jar");
+
+        // when
+        try {
+            fileUtils.saveContentFromURLToFileIfModified(brokenUrl, null, destination);
+            // then
+            fail("It should throw an IOException");
+        } catch (IOException e) {
+            assertThat(destination.exists())
+                    .isFalse();
+            assertThat(FileUtilsFacade.getPartFile(destination).length())
+                    .isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void shouldDownloadFileInSegments() throws IOException {
+        // given
+        acceptRanges = true;
+        body = new byte[(int) (3 * FileUtilsFacade.MIN_SEGMENT_SIZE)];
+        new Random(1).nextBytes(body);
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "jre.zip");
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileInSegments(url, null, destination, 4,
+                FileUtilsFacade.toHex(FileUtilsFacade.createSha256Digest().digest(body)));
+
+        // then
+        assertThat(downloaded)
+                .isTrue();
+        assertThat(FileUtils.readFileToByteArray(destination))
+                .isEqualTo(body);
+        assertThat(ranges)
+                .containsOnly("bytes=0-1048575", "bytes=1048576-2097151", "bytes=2097152-3145727");
+    }
+
+    @Test
+    public void shouldStoreDigestCalculatedWhileDownloadingInSegments() throws IOException {
+        // given
+        acceptRanges = true;
+        body = new byte[(int) (3 * FileUtilsFacade.MIN_SEGMENT_SIZE) + 12345];
+        new Random(2).nextBytes(body);
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "jre.zip");
+
+        // when
+        fileUtils.saveContentFromURLToFileInSegments(url, null, destination, 4, null);
+
+        // then
+        assertThat(ranges)
+                .hasSize(3);
+        assertThat(fileUtils.getStoredSha256(destination))
+                .isEqualTo(FileUtilsFacade.toHex(FileUtilsFacade.createSha256Digest().digest(body)));
+    }
+
+    @Test
+    public void shouldDownloadFileBySingleConnectionWhenServerDoesNotAcceptRanges() throws IOException {
+        // given
+        body = new byte[(int) (3 * FileUtilsFacade.MIN_SEGMENT_SIZE)];
+        new Random(1).nextBytes(body);
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "jre.zip");
+
+        // when
+        fileUtils.saveContentFromURLToFileInSegments(url, null, destination, 4, null);
+
+        // then
+        assertThat(FileUtils.readFileToByteArray(destination))
+                .isEqualTo(body);
+        assertThat(requests.get())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void shouldExtractZipFileWhileDownloading() throws IOException {
+        // given
+        body = createZip("jre/bin/java", "jre/lib/rt.jar");
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "jre.zip");
+        File unzipDirectory = new File(tempDir, "jre_1234");
+
+        // when
+        boolean downloaded = fileUtils.saveContentFromURLToFileAndExtract(url, null, destination, unzipDirectory,
+                true, null);
+
+        // then
+        assertThat(downloaded)
+                .isTrue();
+        assertThat(FileUtils.readFileToString(new File(unzipDirectory, "jre/lib/rt.jar")))
+                .isEqualTo("jre/lib/rt.jar");
+        assertThat(FileUtils.readFileToByteArray(destination))
+                .isEqualTo(body);
+    }
+
+    @Test
+    public void shouldStoreValidatorsNextToUnzippedDirectoryWhenArchiveIsNotKept() throws IOException {
+        // given
+        body = createZip("jre/bin/java");
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "jre.zip");
+        File unzipDirectory = new File(tempDir, "jre_1234");
+
+        // when
+        fileUtils.saveContentFromURLToFileAndExtract(url, null, destination, unzipDirectory, false, null);
+
+        // then
+        assertThat(destination.exists())
+                .isFalse();
+        assertThat(new File(unzipDirectory, "jre/bin/java").exists())
+                .isTrue();
+        assertThat(CacheValidators.read(unzipDirectory).getETag())
+                .isEqualTo(ETAG);
+    }
+
+    @Test
+    public void shouldInstallUnzippedDirectoryWithValidators() throws IOException {
+        // given
+        body = createZip("jre/bin/java");
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File unzipDirectory = new File(tempDir, "jre_1234");
+        fileUtils.saveContentFromURLToFileAndExtract(url, null, new File(tempDir, "jre.zip"), unzipDirectory, false,
+                null);
+        File installDirectory = new File(tempDir, "IceBoar_jres" + File.separator + "abc");
+
+        // when
+        fileUtils.installDirectory(unzipDirectory, installDirectory);
+
+        // then
+        assertThat(unzipDirectory.exists())
+                .isFalse();
+        assertThat(fileUtils.isInstallComplete(installDirectory))
+                .isTrue();
+        assertThat(new File(installDirectory, "jre/bin/java").exists())
+                .isTrue();
+        assertThat(CacheValidators.read(installDirectory).getSha256())
+                .isEqualTo(FileUtilsFacade.toHex(FileUtilsFacade.createSha256Digest().digest(body)));
+    }
+
+    @Test
+    public void shouldKeepDirectoryInstalledByAnotherRun() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File installDirectory = new File(tempDir, "abc");
+        File first = new File(tempDir, "jre_1");
+        FileUtils.write(new File(first, "first"), CONTENT);
+        fileUtils.installDirectory(first, installDirectory);
+        File second = new File(tempDir, "jre_2");
+        FileUtils.write(new File(second, "second"), CONTENT);
+
+        // when
+        fileUtils.installDirectory(second, installDirectory);
+
+        // then
+        assertThat(second.exists())
+                .isFalse();
+        assertThat(new File(installDirectory, "first").exists())
+                .isTrue();
+    }
+
+    @Test
+    public void shouldReplaceIncompleteInstall() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File installDirectory = new File(tempDir, "abc");
+        FileUtils.write(new File(installDirectory, "broken"), CONTENT);
+        File unzipDirectory = new File(tempDir, "jre_1");
+        FileUtils.write(new File(unzipDirectory, "java"), CONTENT);
+
+        // when
+        fileUtils.installDirectory(unzipDirectory, installDirectory);
+
+        // then
+        assertThat(fileUtils.isInstallComplete(installDirectory))
+                .isTrue();
+        assertThat(new File(installDirectory, "java").exists())
+                .isTrue();
+        assertThat(new File(installDirectory, "broken").exists())
+                .isFalse();
+    }
+
+    @Test
+    public void shouldValidateInstalledDirectoryByManifest() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File unzipDirectory = new File(tempDir, "jre_1");
+        FileUtils.write(new File(unzipDirectory, "release"), "JAVA_VERSION=\"1.8.0\"");
+        File java = new File(unzipDirectory, "bin" + File.separator + "java");
+        FileUtils.write(java, CONTENT);
+        java.setExecutable(true, false);
+        File installDirectory = new File(tempDir, "abc");
+        fileUtils.installDirectory(unzipDirectory, installDirectory);
+
+        // when
+        boolean valid = fileUtils.isInstallValid(installDirectory);
+
+        // then
+        assertThat(valid)
+                .isTrue();
+    }
+
+    @Test
+    public void shouldNotValidateModifiedInstall() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File unzipDirectory = new File(tempDir, "jre_1");
+        FileUtils.write(new File(unzipDirectory, "release"), "JAVA_VERSION=\"1.8.0\"");
+        File installDirectory = new File(tempDir, "abc");
+        fileUtils.installDirectory(unzipDirectory, installDirectory);
+
+        // when
+        FileUtils.write(new File(installDirectory, "release"), "truncated");
+
+        // then
+        assertThat(fileUtils.isInstallComplete(installDirectory))
+                .isTrue();
+        assertThat(fileUtils.isInstallValid(installDirectory))
+                .isFalse();
+    }
+
+    @Test
+    public void shouldDownloadOnceWhenRunsDownloadTheSameContentAtTheSameTime() throws Exception {
+        // given
+        responseDelayMillis = 1000;
+        final File destination = new File(tempDir, "file.jar");
+        final List<Long> lengths = Collections.synchronizedList(new ArrayList<Long>());
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        // when
+        try {
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        FileUtilsFacade fileUtils = new FileUtilsFacade();
+                        fileUtils.setDownloadProgressListener(new DownloadProgressListener() {
+                            public void downloadedByAnotherRun(URL url, long downloaded, long length) {
+                                lengths.add(length);
+                            }
+                        });
+                        return fileUtils.saveContentFromURLToFileInSegments(url, null, destination, 1, null);
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get())
+                        .isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then
+        assertThat(requests.get())
+                .isEqualTo(1);
+        assertThat(FileUtils.readFileToString(destination))
+                .isEqualTo(CONTENT);
+        assertThat(lengths)
+                .isNotEmpty();
+    }
+
+    @Test
+    public void shouldReportBytesExtractedWhileDownloadingToWaitingRuns() throws IOException {
+        // given
+        body = createZip("jre/bin/java", "jre/lib/rt.jar");
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "jre.zip");
+        File lockFile = new File(FileUtilsFacade.getPartFile(destination).getAbsolutePath() + DownloadLock.SUFFIX);
+
+        // when
+        fileUtils.saveContentFromURLToFileAndExtract(url, null, destination, new File(tempDir, "jre_1234"), true,
+                null);
+
+        // then
+        assertThat(FileUtils.readLines(lockFile))
+                .containsExactly("complete " + body.length + " " + body.length);
+    }
+
+    @Test
+    public void shouldCopyDirectoryUnzippedByAnotherRunWhenArchiveIsNotKept() throws Exception {
+        // given
+        body = createZip("jre/bin/java", "jre/lib/rt.jar");
+        responseDelayMillis = 1000;
+        final File destination = new File(tempDir, "jre.zip");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        // when
+        try {
+            for (int i = 0; i < 3; i++) {
+                final File unzipDirectory = new File(tempDir, "jre_" + i);
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        return new FileUtilsFacade().saveContentFromURLToFileAndExtract(url, null, destination,
+                                unzipDirectory, false, null);
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get())
+                        .isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then
+        assertThat(requests.get())
+                .isEqualTo(1);
+        for (int i = 0; i < 3; i++) {
+            File unzipDirectory = new File(tempDir, "jre_" + i);
+            assertThat(FileUtils.readFileToString(new File(unzipDirectory, "jre/lib/rt.jar")))
+                    .isEqualTo("jre/lib/rt.jar");
+            assertThat(CacheValidators.read(unzipDirectory).getSha256())
+                    .isEqualTo(FileUtilsFacade.toHex(FileUtilsFacade.createSha256Digest().digest(body)));
+        }
+    }
+
+    @Test
+    public void shouldPublishInstalledDirectoryToWaitingRuns() throws IOException {
+        // given
+        body = createZip("jre/bin/java");
+        FileUtilsFacade fileUtils = new FileUtilsFacade();
+        File destination = new File(tempDir, "jre.zip");
+        File unzipDirectory = new File(tempDir, "jre_1234");
+        File lockFile = new File(FileUtilsFacade.getPartFile(destination).getAbsolutePath() + DownloadLock.SUFFIX);
+        fileUtils.saveContentFromURLToFileAndExtract(url, null, destination, unzipDirectory, false, null);
+        File installDirectory = new File(tempDir, "abc");
+
+        // when
+        fileUtils.installDirectory(unzipDirectory, installDirectory);
+
+        // then
+        assertThat(FileUtils.readLines(lockFile))
+                .containsExactly("complete -1 -1", installDirectory.getAbsolutePath());
+    }
+
+    private byte[] createZip(String... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        for (String entry : entries) {
+            zip.putNextEntry(new ZipEntry(entry));
+            zip.write(entry.getBytes("UTF-8"));
+            zip.closeEntry();
+        }
+        zip.close();
+        return bytes.toByteArray();
+    }
+
+    private String sha256(String content) throws IOException {
+        return FileUtilsFacade.toHex(FileUtilsFacade.createSha256Digest().digest(content.getBytes("UTF-8")));
+    }
+}
@@ -24,6 +24,7 @@ import com.roche.iceboar.cachestorage.StatusInfo;
 import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
 import com.roche.iceboar.progressevent.ProgressEvent;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventObserver;
 import com.roche.iceboar.progressevent.ProgressEventQueue;
 import com.roche.iceboar.runner.ExecutableCommand;
 import com.roche.iceboar.runner.ExecutableCommandFactory;
@@ -37,6 +38,9 @@ import java.io.IOException;
 import java.net.URL;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.fail;
@@ -59,21 +63,25 @@ public class JREDownloaderTest {
                                                 .currentJavaVersion("1.3")
                                                 .targetJavaVersion("1.6")
                                                 .cacheStatus(mock(CacheStatus.class))
+                                                .jreDownloadConnections(3)
                                                 .build();
         ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
         when(progressEventFactory.getJREDownloadEvent())
                 .thenReturn(JRE_DOWNLOAD_EVENT);
         when(progressEventFactory.getJREDownloadedEvent())
                 .thenReturn(JRE_DOWNLOADED_EVENT);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
         JREDownloader downloader = new JREDownloader(settings, fileUtils,
-                progressEventFactory, mock(ProgressEventQueue.class), mock(ExecutableCommandFactory.class));
+                progressEventFactory, downloadScheduler, mock(ExecutableCommandFactory.class));
 
         // when
         downloader.update(JRE_DOWNLOAD_EVENT);
+        downloadScheduler.publishAll(mock(ProgressEventQueue.class));
 
         // then
         verify(fileUtils)
-                .saveContentFromURLToFile(new URL("http://www.example.com/jre1.zip"), new File(tempDirPlusFilename("jre1.zip")));
+                .saveContentFromURLToFileInSegments(new URL("http://www.example.com/jre1.zip"), null,
+                        new File(tempDirPlusFilename("jre1.zip")), 3, null);
     }
 
     @Test
@@ -101,15 +109,17 @@ public class JREDownloaderTest {
         when(executableCommandFactory.createJavaGetVersionNumberCommand(anyString()))
                 .thenReturn(javaCheckVersionCommand);
 
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
         JREDownloader downloader = new JREDownloader(settings, fileUtils,
-                progressEventFactory, mock(ProgressEventQueue.class), executableCommandFactory);
+                progressEventFactory, downloadScheduler, executableCommandFactory);
 
         // when
         downloader.update(JRE_UNZIP_EVENT);
+        downloadScheduler.publishAll(mock(ProgressEventQueue.class));
 
         // then
         verify(fileUtils)
-                .extractZipFile(tempDirPlusFilename("jre1.zip"), tempDirPlusFilename("jre1_0"));
+                .extractZipFile(tempDirPlusFilename("jre1.zip"), tempDirPlusFilename("IceBoar_jre1_0"));
     }
 
     @Test
@@ -130,10 +140,12 @@ public class JREDownloaderTest {
                 .thenReturn(JRE_DOWNLOADED_EVENT);
         ArgumentCaptor<ProgressEvent> captor = ArgumentCaptor.forClass(ProgressEvent.class);
         ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
         JREDownloader downloader = new JREDownloader(settings, fileUtils,
-                progressEventFactory, progressEventQueue, mock(ExecutableCommandFactory.class));
+                progressEventFactory, downloadScheduler, mock(ExecutableCommandFactory.class));
 
         downloader.update(JRE_DOWNLOAD_EVENT);
+        downloadScheduler.publishAll(progressEventQueue);
         verify(progressEventQueue).update(captor.capture());
         assertThat(captor.getValue())
                 .isEqualTo(JRE_DOWNLOADED_EVENT);
@@ -150,7 +162,7 @@ public class JREDownloaderTest {
         StatusInfo statusInfo = mock(StatusInfo.class);
         when(statusInfo.getPath())
                 .thenReturn(jreCachePath);
-        when(cacheStatus.getJreUnzippedStatusInfo(javaVersion))
+        when(cacheStatus.getJreUnzippedStatusInfo("http://www.example.com/jre1.zip"))
                 .thenReturn(statusInfo);
         GlobalSettings settings = GlobalSettings.builder()
                                                 .targetJavaURL("http://www.example.com/jre1.zip")
@@ -173,11 +185,13 @@ public class JREDownloaderTest {
                 .thenReturn(process);
         when(executableCommandFactory.createJavaGetVersionNumberCommand(jreCachePath))
                 .thenReturn(executableCommand);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
         JREDownloader downloader = new JREDownloader(settings, fileUtils,
-                progressEventFactory, mock(ProgressEventQueue.class), executableCommandFactory);
+                progressEventFactory, downloadScheduler, executableCommandFactory);
 
         // when
         downloader.update(JRE_UNZIP_EVENT);
+        downloadScheduler.publishAll(mock(ProgressEventQueue.class));
 
         // then
         assertThat(((JREUnzippedDetailInfo) JRE_UNZIPPED_EVENT.getDetailInfo()).getPathToJreUnzipDir())
@@ -195,7 +209,7 @@ public class JREDownloaderTest {
         StatusInfo statusInfo = mock(StatusInfo.class);
         when(statusInfo.getPath())
                 .thenReturn(jreCachePath);
-        when(cacheStatus.getJreUnzippedStatusInfo(javaVersion))
+        when(cacheStatus.getJreUnzippedStatusInfo("abc.zip"))
                 .thenReturn(statusInfo);
         GlobalSettings settings = GlobalSettings.builder()
                                                 .targetJavaURL("http://www.example.com/jre1.zip")
@@ -220,15 +234,183 @@ public class JREDownloaderTest {
                 .thenReturn(process);
         when(executableCommandFactory.createJavaGetVersionNumberCommand(jreCachePath))
                 .thenReturn(executableCommand);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
         JREDownloader downloader = new JREDownloader(settings, fileUtils,
-                progressEventFactory, mock(ProgressEventQueue.class), executableCommandFactory);
+                progressEventFactory, downloadScheduler, executableCommandFactory);
 
         // when
         downloader.update(JRE_UNZIP_EVENT);
+        downloadScheduler.publishAll(mock(ProgressEventQueue.class));
 
         // then
         assertThat(((JREUnzippedDetailInfo) JRE_UNZIPPED_EVENT.getDetailInfo()).getPathToJreUnzipDir())
-                .isEqualTo(dirWithFileSeparatorOnEnd(javaTempDir) + "abc_1234");
+                .isEqualTo(dirWithFileSeparatorOnEnd(javaTempDir) + "IceBoar_abc_1234");
+    }
+
+    @Test
+    public void shouldNotExtractJreUnzippedWhileDownloading() throws Exception {
+        // given
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.saveContentFromURLToFileAndExtract(any(URL.class), any(File.class), any(File.class),
+                any(File.class), anyBoolean(), anyString()))
+                .thenReturn(true);
+        when(fileUtils.getStoredSha256(new File(tempDirPlusFilename("jre1.zip"))))
+                .thenReturn("abc");
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .targetJavaURL("http://www.example.com/jre1.zip")
+                                                .tempDirectory(System.getProperty("java.io.tmpdir"))
+                                                .currentJavaVersion("1.3")
+                                                .targetJavaVersion("1.6")
+                                                .cacheStatus(mock(CacheStatus.class))
+                                                .unzipWhileDownloading(true)
+                                                .build();
+        ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
+        when(progressEventFactory.getJREDownloadEvent())
+                .thenReturn(JRE_DOWNLOAD_EVENT);
+        when(progressEventFactory.getJREDownloadedEvent())
+                .thenReturn(JRE_DOWNLOADED_EVENT);
+        when(progressEventFactory.getJREUnzipEvent())
+                .thenReturn(JRE_UNZIP_EVENT);
+        when(progressEventFactory.getJREUnzippedEvent())
+                .thenReturn(JRE_UNZIPPED_EVENT);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
+        final JREDownloader downloader = new JREDownloader(settings, fileUtils,
+                progressEventFactory, downloadScheduler, mock(ExecutableCommandFactory.class));
+        ProgressEventQueue progressEventQueue = new ProgressEventQueue();
+        progressEventQueue.registerObserver(new ProgressEventObserver() {
+            public void update(ProgressEvent event) {
+                if (event.equals(JRE_DOWNLOADED_EVENT)) {
+                    downloader.update(JRE_UNZIP_EVENT);
+                }
+            }
+        });
+
+        // when
+        downloader.update(JRE_DOWNLOAD_EVENT);
+        downloadScheduler.publishAll(progressEventQueue);
+
+        // then
+        verify(fileUtils)
+                .saveContentFromURLToFileAndExtract(new URL("http://www.example.com/jre1.zip"), null,
+                        new File(tempDirPlusFilename("jre1.zip")), new File(tempDirPlusFilename("IceBoar_jre1_0")),
+                        true, null);
+        verify(fileUtils, never())
+                .extractZipFile(anyString(), anyString());
+        verify(fileUtils)
+                .installDirectory(new File(tempDirPlusFilename("IceBoar_jre1_0")),
+                        new File(tempDirPlusFilename("IceBoar_jres") + File.separator + "abc"));
+        assertThat(((JREUnzippedDetailInfo) JRE_UNZIPPED_EVENT.getDetailInfo()).getPathToJreUnzipDir())
+                .isEqualTo(tempDirPlusFilename("IceBoar_jres") + File.separator + "abc");
+    }
+
+    @Test
+    public void shouldUseJreInstalledByAnotherRun() throws Exception {
+        // given
+        String installPath = tempDirPlusFilename("IceBoar_jres") + File.separator + "abc";
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.saveContentFromURLToFileInSegments(any(URL.class), any(File.class), any(File.class), anyInt(),
+                anyString()))
+                .thenReturn(true);
+        when(fileUtils.getStoredSha256(new File(tempDirPlusFilename("jre1.zip"))))
+                .thenReturn("abc");
+        when(fileUtils.isInstallComplete(new File(installPath)))
+                .thenReturn(true);
+        when(fileUtils.isInstallValid(new File(installPath)))
+                .thenReturn(true);
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .targetJavaURL("http://www.example.com/jre1.zip")
+                                                .tempDirectory(System.getProperty("java.io.tmpdir"))
+                                                .currentJavaVersion("1.3")
+                                                .targetJavaVersion("1.6")
+                                                .cacheStatus(mock(CacheStatus.class))
+                                                .build();
+        ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
+        when(progressEventFactory.getJREDownloadEvent())
+                .thenReturn(JRE_DOWNLOAD_EVENT);
+        when(progressEventFactory.getJREDownloadedEvent())
+                .thenReturn(JRE_DOWNLOADED_EVENT);
+        when(progressEventFactory.getJREUnzipEvent())
+                .thenReturn(JRE_UNZIP_EVENT);
+        when(progressEventFactory.getJREUnzippedEvent())
+                .thenReturn(JRE_UNZIPPED_EVENT);
+        ExecutableCommandFactory executableCommandFactory = mock(ExecutableCommandFactory.class);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
+        final JREDownloader downloader = new JREDownloader(settings, fileUtils,
+                progressEventFactory, downloadScheduler, executableCommandFactory);
+        ProgressEventQueue progressEventQueue = new ProgressEventQueue();
+        progressEventQueue.registerObserver(new ProgressEventObserver() {
+            public void update(ProgressEvent event) {
+                if (event.equals(JRE_DOWNLOADED_EVENT)) {
+                    downloader.update(JRE_UNZIP_EVENT);
+                }
+            }
+        });
+
+        // when
+        downloader.update(JRE_DOWNLOAD_EVENT);
+        downloadScheduler.publishAll(progressEventQueue);
+
+        // then
+        verify(fileUtils, never())
+                .extractZipFile(anyString(), anyString());
+        verify(fileUtils, never())
+                .installDirectory(any(File.class), any(File.class));
+        verify(executableCommandFactory, never())
+                .createJavaGetVersionNumberCommand(anyString());
+        assertThat(((JREUnzippedDetailInfo) JRE_UNZIPPED_EVENT.getDetailInfo()).getPathToJreUnzipDir())
+                .isEqualTo(installPath);
+    }
+
+    @Test
+    public void shouldUseJreFromSharedCache() throws Exception {
+        // given
+        String sharedPath = new File("/shared").getAbsolutePath() + File.separator + "IceBoar_jres" + File.separator
+                + "abc";
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.isInstallValid(new File(sharedPath)))
+                .thenReturn(true);
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .targetJavaURL("http://www.example.com/jre1.zip")
+                                                .targetJavaSha256("ABC")
+                                                .tempDirectory(System.getProperty("java.io.tmpdir"))
+                                                .sharedCacheDirectory(new File("/shared").getAbsolutePath())
+                                                .currentJavaVersion("1.3")
+                                                .targetJavaVersion("1.6")
+                                                .cacheStatus(mock(CacheStatus.class))
+                                                .build();
+        ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
+        when(progressEventFactory.getJREDownloadEvent())
+                .thenReturn(JRE_DOWNLOAD_EVENT);
+        when(progressEventFactory.getJREDownloadedEvent())
+                .thenReturn(JRE_DOWNLOADED_EVENT);
+        when(progressEventFactory.getJREUnzipEvent())
+                .thenReturn(JRE_UNZIP_EVENT);
+        when(progressEventFactory.getJREUnzippedEvent())
+                .thenReturn(JRE_UNZIPPED_EVENT);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
+        final JREDownloader downloader = new JREDownloader(settings, fileUtils,
+                progressEventFactory, downloadScheduler, mock(ExecutableCommandFactory.class));
+        ProgressEventQueue progressEventQueue = new ProgressEventQueue();
+        progressEventQueue.registerObserver(new ProgressEventObserver() {
+            public void update(ProgressEvent event) {
+                if (event.equals(JRE_DOWNLOADED_EVENT)) {
+                    downloader.update(JRE_UNZIP_EVENT);
+                }
+            }
+        });
+
+        // when
+        downloader.update(JRE_DOWNLOAD_EVENT);
+        downloadScheduler.publishAll(progressEventQueue);
+
+        // then
+        verify(fileUtils, never())
+                .saveContentFromURLToFileInSegments(any(URL.class), any(File.class), any(File.class), anyInt(),
+                        anyString());
+        verify(fileUtils, never())
+                .installDirectory(any(File.class), any(File.class));
+        assertThat(((JREUnzippedDetailInfo) JRE_UNZIPPED_EVENT.getDetailInfo()).getPathToJreUnzipDir())
+                .isEqualTo(sharedPath);
     }
 
     private String dirWithFileSeparatorOnEnd(String dir) {
@@ -18,44 +18,222 @@
 
 package com.roche.iceboar.downloader;
 
+import com.roche.iceboar.cachestorage.CacheStatus;
+import com.roche.iceboar.cachestorage.StatusInfo;
+import com.roche.iceboar.progressevent.DownloadJarFinishEvent;
 import com.roche.iceboar.progressevent.DownloadJarStartEvent;
+import com.roche.iceboar.progressevent.JarDownloadedDetailInfo;
+import com.roche.iceboar.progressevent.ProgressEvent;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
 import com.roche.iceboar.progressevent.ProgressEventQueue;
 import com.roche.iceboar.settings.GlobalSettings;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
 
 public class JarDownloaderTest {
 
+    private static final String JAR_URL = "http://www.example.com/jar1.jar";
+
     @Test
     public void shouldTryToDownloadAJAR() throws IOException {
         // given
         FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
-        String javaTempDir = System.getProperty("java.io.tmpdir");
+        when(fileUtils.getSha256(any(File.class)))
+                .thenReturn("abc123");
+        when(fileUtils.saveContentFromURLToFileIfModified(any(URL.class), any(File.class), any(File.class),
+                any(File.class), any(String.class)))
+                .thenReturn(true);
+        GlobalSettings settings = createSettings(mock(CacheStatus.class));
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
+        JarDownloader jarDownloader = new JarDownloader(settings, fileUtils,
+                createProgressEventFactory(), downloadScheduler);
+
+        // when
+        jarDownloader.update(new DownloadJarStartEvent(JAR_URL, ""));
+        downloadScheduler.publishAll(mock(ProgressEventQueue.class));
+
+        // then
+        verify(fileUtils)
+                .saveContentFromURLToFileIfModified(new URL(JAR_URL), null, new File(expectedPartFile()),
+                        new File(expectedDestinationDirFor("IceBoar_jar1.jar_0.tmp")), null);
+        verify(fileUtils)
+                .moveFile(new File(expectedDestinationDirFor("IceBoar_jar1.jar_0.tmp")),
+                        new File(expectedDestinationDirFor("abc123" + File.separator + "jar1.jar")));
+    }
+
+    @Test
+    public void shouldUseJarFromCacheWhenItIsNotModified() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.saveContentFromURLToFileIfModified(any(URL.class), any(File.class), any(File.class),
+                any(File.class), any(String.class)))
+                .thenReturn(false);
+        when(fileUtils.checkFileExist("/cache/jar1.jar"))
+                .thenReturn(true);
+        CacheStatus cacheStatus = createCacheStatusWithJar("/cache/jar1.jar");
+        ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
+        JarDownloader jarDownloader = new JarDownloader(createSettings(cacheStatus), fileUtils,
+                createProgressEventFactory(), downloadScheduler);
+
+        // when
+        jarDownloader.update(new DownloadJarStartEvent(JAR_URL, ""));
+        downloadScheduler.publishAll(progressEventQueue);
+
+        // then
+        verify(fileUtils)
+                .saveContentFromURLToFileIfModified(new URL(JAR_URL), new File("/cache/jar1.jar"),
+                        new File(expectedPartFile()), new File(expectedDestinationDirFor("IceBoar_jar1.jar_0.tmp")),
+                        null);
+        verify(fileUtils, never())
+                .moveFile(any(File.class), any(File.class));
+        ArgumentCaptor<ProgressEvent> captor = ArgumentCaptor.forClass(ProgressEvent.class);
+        verify(progressEventQueue).update(captor.capture());
+        JarDownloadedDetailInfo detailInfo = (JarDownloadedDetailInfo) captor.getValue().getDetailInfo();
+        assertThat(detailInfo.getPathToJarFile())
+                .isEqualTo("/cache/jar1.jar");
+    }
+
+    @Test
+    public void shouldDownloadJarWhenItIsModified() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.saveContentFromURLToFileIfModified(any(URL.class), any(File.class), any(File.class),
+                any(File.class), any(String.class)))
+                .thenReturn(true);
+        when(fileUtils.getSha256(any(File.class)))
+                .thenReturn("def456");
+        when(fileUtils.checkFileExist("/cache/jar1.jar"))
+                .thenReturn(true);
+        CacheStatus cacheStatus = createCacheStatusWithJar("/cache/jar1.jar");
+        ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
+        JarDownloader jarDownloader = new JarDownloader(createSettings(cacheStatus), fileUtils,
+                createProgressEventFactory(), downloadScheduler);
+
+        // when
+        jarDownloader.update(new DownloadJarStartEvent(JAR_URL, ""));
+        downloadScheduler.publishAll(progressEventQueue);
+
+        // then
+        ArgumentCaptor<ProgressEvent> captor = ArgumentCaptor.forClass(ProgressEvent.class);
+        verify(progressEventQueue).update(captor.capture());
+        JarDownloadedDetailInfo detailInfo = (JarDownloadedDetailInfo) captor.getValue().getDetailInfo();
+        assertThat(detailInfo.getPathToJarFile())
+                .isEqualTo(expectedDestinationDirFor("def456" + File.separator + "jar1.jar"));
+    }
+
+    @Test
+    public void shouldVerifyJarWithExpectedDigest() throws IOException {
+        // given
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.getSha256(any(File.class)))
+                .thenReturn("abc123");
+        when(fileUtils.saveContentFromURLToFileIfModified(any(URL.class), any(File.class), any(File.class),
+                any(File.class), any(String.class)))
+                .thenReturn(true);
+        Map<String, String> jarsSha256 = new HashMap<String, String>();
+        jarsSha256.put(JAR_URL, "abc123");
         GlobalSettings settings = GlobalSettings.builder()
-                                                .tempDirectory(javaTempDir)
+                                                .tempDirectory(System.getProperty("java.io.tmpdir"))
+                                                .cacheStatus(mock(CacheStatus.class))
+                                                .jarsSha256(jarsSha256)
                                                 .build();
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
         JarDownloader jarDownloader = new JarDownloader(settings, fileUtils,
-                mock(ProgressEventFactory.class), mock(ProgressEventQueue.class));
+                createProgressEventFactory(), downloadScheduler);
 
         // when
-        jarDownloader.update(new DownloadJarStartEvent("http://www.example.com/jar1.jar", ""));
+        jarDownloader.update(new DownloadJarStartEvent(JAR_URL, ""));
+        downloadScheduler.publishAll(mock(ProgressEventQueue.class));
 
         // then
         verify(fileUtils)
-                .saveContentFromURLToFile(new URL("http://www.example.com/jar1.jar"),
-                        new File(expectedDestinationDirFor("jar1.jar")));
+                .saveContentFromURLToFileIfModified(new URL(JAR_URL), null, new File(expectedPartFile()),
+                        new File(expectedDestinationDirFor("IceBoar_jar1.jar_0.tmp")), "abc123");
+    }
+
+    @Test
+    public void shouldUseJarFromSharedCache() throws IOException {
+        // given
+        String sharedDirectory = new File("/shared").getAbsolutePath();
+        String sharedPath = sharedDirectory + File.separator + "IceBoar_jars" + File.separator + "abc123"
+                + File.separator + "jar1.jar";
+        FileUtilsFacade fileUtils = mock(FileUtilsFacade.class);
+        when(fileUtils.checkFileExist(sharedPath))
+                .thenReturn(true);
+        when(fileUtils.getStoredSha256(new File(sharedPath)))
+                .thenReturn("abc123");
+        Map<String, String> jarsSha256 = new HashMap<String, String>();
+        jarsSha256.put(JAR_URL, "ABC123");
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .tempDirectory(System.getProperty("java.io.tmpdir"))
+                                                .sharedCacheDirectory(sharedDirectory)
+                                                .cacheStatus(mock(CacheStatus.class))
+                                                .jarsSha256(jarsSha256)
+                                                .build();
+        ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        DownloadScheduler downloadScheduler = new DownloadScheduler(1);
+        JarDownloader jarDownloader = new JarDownloader(settings, fileUtils,
+                createProgressEventFactory(), downloadScheduler);
+
+        // when
+        jarDownloader.update(new DownloadJarStartEvent(JAR_URL, ""));
+        downloadScheduler.publishAll(progressEventQueue);
+
+        // then
+        verify(fileUtils, never())
+                .saveContentFromURLToFileIfModified(any(URL.class), any(File.class), any(File.class),
+                        any(File.class), any(String.class));
+        ArgumentCaptor<ProgressEvent> captor = ArgumentCaptor.forClass(ProgressEvent.class);
+        verify(progressEventQueue).update(captor.capture());
+        JarDownloadedDetailInfo detailInfo = (JarDownloadedDetailInfo) captor.getValue().getDetailInfo();
+        assertThat(detailInfo.getPathToJarFile())
+                .isEqualTo(sharedPath);
+    }
+
+    private GlobalSettings createSettings(CacheStatus cacheStatus) {
+        String javaTempDir = System.getProperty("java.io.tmpdir");
+        return GlobalSettings.builder()
+                             .tempDirectory(javaTempDir)
+                             .cacheStatus(cacheStatus)
+                             .build();
+    }
+
+    private CacheStatus createCacheStatusWithJar(String path) {
+        StatusInfo statusInfo = mock(StatusInfo.class);
+        when(statusInfo.getPath())
+                .thenReturn(path);
+        CacheStatus cacheStatus = mock(CacheStatus.class);
+        when(cacheStatus.getJarDownloadedStatusInfo(JAR_URL))
+                .thenReturn(statusInfo);
+        return cacheStatus;
+    }
+
+    private ProgressEventFactory createProgressEventFactory() {
+        ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
+        when(progressEventFactory.getDownloadJarFinishEvent(JAR_URL))
+                .thenReturn(new DownloadJarFinishEvent(JAR_URL, ""));
+        return progressEventFactory;
+    }
+
+    private String expectedPartFile() {
+        return expectedDestinationDirFor(Integer.toHexString(JAR_URL.hashCode()) + "_jar1.jar.part");
     }
 
     private String expectedDestinationDirFor(String filename) {
         String javaTempDir = System.getProperty("java.io.tmpdir");
         String javaTemp = javaTempDir.endsWith(File.separator) ? javaTempDir : javaTempDir + File.separator;
-        return javaTemp + "IceBoar_0" + File.separator + filename;
+        return javaTemp + "IceBoar_jars" + File.separator + filename;
     }
-}
\ No newline at end of file
+}
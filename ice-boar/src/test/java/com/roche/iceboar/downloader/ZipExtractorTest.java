@@ -0,0 +1,111 @@
+/*
+ * ****************************************************************************
+ *  Copyright © 2015 Hoffmann-La Roche
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ****************************************************************************
+ */
+
+package com.roche.iceboar.downloader;
+
+import net.lingala.zip4j.model.FileHeader;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public class ZipExtractorTest {
+
+    @Test
+    public void shouldRecognizeUnixExecutableFile() {
+        // given
+        FileHeader header = new FileHeader();
+        header.setExternalFileAttr(new byte[]{0, 0, (byte) 0xED, (byte) 0x81});  // -rwxr-xr-x
+
+        // when
+        boolean executable = ZipExtractor.isUnixExecutable(header);
+
+        // then
+        assertThat(executable)
+                .isTrue();
+    }
+
+    @Test
+    public void shouldRecognizeNotExecutableFile() {
+        // given
+        FileHeader header = new FileHeader();
+        header.setExternalFileAttr(new byte[]{0, 0, (byte) 0xA4, (byte) 0x81});  // -rw-r--r--
+
+        // when
+        boolean executable = ZipExtractor.isUnixExecutable(header);
+
+        // then
+        assertThat(executable)
+                .isFalse();
+    }
+
+    @Test
+    public void shouldRejectEntryOutsideOfDirectory() {
+        // given
+        File directory = new File("jre");
+
+        // when
+        try {
+            ZipExtractor.getEntryFile(directory, "bin/../../evil.sh");
+            // then
+            fail("It should throw an IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage())
+                    .isEqualTo("Wrong ZIP entry: bin/../../evil.sh");
+        }
+    }
+
+    @Test
+    public void shouldExtractZipFileInParallel() throws IOException {
+        // given
+        File tempDir = new File(System.getProperty("java.io.tmpdir"), "ZipExtractorTest_" + System.nanoTime());
+        File zip = new File(tempDir, "jre.zip");
+        FileUtils.forceMkdir(tempDir);
+        ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip));
+        output.putNextEntry(new ZipEntry("jre/"));
+        output.putNextEntry(new ZipEntry("jre/bin/java"));
+        output.write("java".getBytes("UTF-8"));
+        output.putNextEntry(new ZipEntry("jre/lib/rt.jar"));
+        output.write(new byte[100000]);
+        output.putNextEntry(new ZipEntry("jre/lib/ext/empty.txt"));
+        output.close();
+        File directory = new File(tempDir, "unzipped");
+
+        try {
+            // when
+            ZipExtractor.extract(zip.getPath(), directory, 3);
+
+            // then
+            assertThat(FileUtils.readFileToString(new File(directory, "jre/bin/java"), "UTF-8"))
+                    .isEqualTo("java");
+            assertThat(new File(directory, "jre/lib/rt.jar").length())
+                    .isEqualTo(100000);
+            assertThat(new File(directory, "jre/lib/ext/empty.txt").length())
+                    .isZero();
+        } finally {
+            FileUtils.deleteQuietly(tempDir);
+        }
+    }
+}
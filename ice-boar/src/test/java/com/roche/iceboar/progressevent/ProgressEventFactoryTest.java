@@ -23,6 +23,7 @@ import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -79,4 +80,52 @@ public class ProgressEventFactoryTest {
         // then
         assertThat(allProgressEvents).containsAll(expectedAllEvents);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldCreateDependenciesOfEventsToReply() {
+        // given
+        ProgressEventFactory factory = new ProgressEventFactory();
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .jarURLs(Arrays.asList("jar1", "jar2"))
+                                                .build();
+        factory.init(settings);
+
+        // when
+        Map<ProgressEvent, Set<ProgressEvent>> eventsToReply = factory.getEventsToReply();
+
+        // then
+        assertThat(eventsToReply.get(factory.getJREDownloadEvent()))
+                .isEmpty();
+        assertThat(eventsToReply.get(factory.getJREUnzipEvent()))
+                .containsOnly(factory.getJREDownloadedEvent());
+        assertThat(eventsToReply.get(factory.getDownloadJarStartEvent("jar1")))
+                .isEmpty();
+        assertThat(eventsToReply.get(factory.getDownloadJarStartEvent("jar2")))
+                .isEmpty();
+        assertThat(eventsToReply.get(factory.getAppStartingEvent()))
+                .containsOnly(factory.getJREUnzippedEvent(), factory.getDownloadJarFinishEvent("jar1"),
+                        factory.getDownloadJarFinishEvent("jar2"));
+    }
+
+    @Test
+    public void shouldReturnSameEventsWithoutDetailInfo() {
+        // given
+        ProgressEventFactory factory = new ProgressEventFactory();
+
+        // when
+        ProgressEvent appStartedEvent = factory.getAppStartedEvent();
+        ProgressEvent downloadJarStartEvent = factory.getDownloadJarStartEvent("jar1");
+
+        // then
+        assertThat(factory.getAppStartedEvent())
+                .isSameAs(appStartedEvent);
+        assertThat(factory.getDownloadJarStartEvent("jar1"))
+                .isSameAs(downloadJarStartEvent);
+        assertThat(factory.getJREUnzippedEvent())
+                .isNotSameAs(factory.getJREUnzippedEvent());
+        assertThat(appStartedEvent.getKind())
+                .isEqualTo(ProgressEventKind.APP_STARTED);
+        assertThat(ProgressEventKind.forEventName("jar1"))
+                .isNull();
+    }
+}
@@ -24,8 +24,15 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.annotations.Test;
 
-import static org.mockito.Mockito.inOrder;
-import static org.mockito.Mockito.mock;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
 
 public class ProgressEventQueueTest {
 
@@ -61,4 +68,75 @@ public class ProgressEventQueueTest {
         inOrder.verify(mock2).update(event2);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldInformObserversOnlyAboutRegisteredKinds() {
+        // given
+        ProgressEventQueue queue = new ProgressEventQueue();
+        ProgressEvent jreDownloadEvent = new ProgressEvent(ProgressEventFactory.EVENT_JRE_DOWNLOAD, "");
+        ProgressEvent appStartedEvent = new ProgressEvent(ProgressEventFactory.EVENT_APP_STARTED, "");
+        ProgressEvent otherEvent = new ProgressEvent("Event 1", "");
+        ProgressEventObserver appStartedObserver = mock(ProgressEventObserver.class);
+        queue.registerObserver(appStartedObserver, ProgressEventKind.APP_STARTED);
+        ProgressEventObserver allEventsObserver = mock(ProgressEventObserver.class);
+        queue.registerObserver(allEventsObserver);
+
+        // when
+        queue.update(jreDownloadEvent);
+        queue.update(appStartedEvent);
+        queue.update(otherEvent);
+
+        // then
+        verify(appStartedObserver).update(appStartedEvent);
+        verifyNoMoreInteractions(appStartedObserver);
+        verify(allEventsObserver).update(jreDownloadEvent);
+        verify(allEventsObserver).update(appStartedEvent);
+        verify(allEventsObserver).update(otherEvent);
+    }
+
+    @Test
+    public void shouldInformObserversOneByOneWhenEventsArePublishedByManyThreads() throws InterruptedException {
+        // given
+        final ProgressEventQueue queue = new ProgressEventQueue();
+        final AtomicInteger informed = new AtomicInteger();
+        final AtomicBoolean isInformedNow = new AtomicBoolean();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        queue.registerObserver(new ProgressEventObserver() {
+            public void update(ProgressEvent event) {
+                if (!isInformedNow.compareAndSet(false, true)) {
+                    overlapped.set(true);
+                }
+                informed.incrementAndGet();
+                isInformedNow.set(false);
+            }
+        });
+        int threads = 8;
+        final int eventsPerThread = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < eventsPerThread; j++) {
+                        queue.update(new ProgressEvent("Event " + thread + "_" + j, ""));
+                    }
+                }
+            });
+        }
+
+        // when
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        // then
+        assertThat(informed.get()).isEqualTo(threads * eventsPerThread);
+        assertThat(overlapped.get()).isFalse();
+    }
+}
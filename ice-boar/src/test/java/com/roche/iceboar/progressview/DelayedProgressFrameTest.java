@@ -0,0 +1,113 @@
+package com.roche.iceboar.progressview;
+
+import com.roche.iceboar.progressevent.ProgressEvent;
+import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventQueue;
+import com.roche.iceboar.settings.GlobalSettings;
+import org.mockito.InOrder;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class DelayedProgressFrameTest {
+
+    private static final int DELAY = 300;
+
+    @Test
+    public void shouldNotStartEventDispatchThreadWhenApplicationIsStartedBeforeDelay() throws InterruptedException {
+        // given
+        ProgressEventFactory progressEventFactory = new ProgressEventFactory();
+        ProgressEventQueue queue = new ProgressEventQueue();
+        DelayedProgressFrame progress = new DelayedProgressFrame(GlobalSettings.builder().build(),
+                progressEventFactory, mock(ImageLoader.class));
+        queue.registerObserver(progress);
+        progress.showAfter(DELAY);
+
+        // when
+        queue.update(progressEventFactory.getAppStartingEvent());
+        queue.update(progressEventFactory.getAppStartedEvent());
+        Thread.sleep(2 * DELAY);
+
+        // then
+        assertThat(isEventDispatchThreadStarted())
+                .isFalse();
+    }
+
+    @Test
+    public void shouldNotBuildFrameWhenApplicationIsStartedBeforeDelay() throws InterruptedException {
+        // given
+        ProgressEventFactory progressEventFactory = new ProgressEventFactory();
+        final AtomicInteger builtFrames = new AtomicInteger();
+        DelayedProgressFrame progress = new DelayedProgressFrame(GlobalSettings.builder().build(),
+                progressEventFactory, mock(ImageLoader.class), new DirectExecutor()) {
+            @Override
+            ProgressJFrame createFrame() {
+                builtFrames.incrementAndGet();
+                return mock(ProgressJFrame.class);
+            }
+        };
+        progress.showAfter(DELAY);
+
+        // when
+        progress.update(progressEventFactory.getAppStartedEvent());
+        Thread.sleep(2 * DELAY);
+
+        // then
+        assertThat(builtFrames.get())
+                .isZero();
+    }
+
+    @Test
+    public void shouldReplayEventsWhenFrameIsBuilt() throws InterruptedException {
+        // given
+        GlobalSettings settings = GlobalSettings.builder().build();
+        ProgressEventFactory progressEventFactory = new ProgressEventFactory();
+        ImageLoader imageLoader = mock(ImageLoader.class);
+        final ProgressJFrame frame = mock(ProgressJFrame.class);
+        ProgressUpdater progressUpdater = mock(ProgressUpdater.class);
+        when(frame.init(settings, progressEventFactory, imageLoader)).thenReturn(progressUpdater);
+        DelayedProgressFrame progress = new DelayedProgressFrame(settings, progressEventFactory, imageLoader,
+                new DirectExecutor()) {
+            @Override
+            ProgressJFrame createFrame() {
+                return frame;
+            }
+        };
+        ProgressEvent jreDownloadEvent = progressEventFactory.getJREDownloadEvent();
+        ProgressEvent jreDownloadedEvent = progressEventFactory.getJREDownloadedEvent();
+        ProgressEvent jreUnzipEvent = progressEventFactory.getJREUnzipEvent();
+        progress.update(jreDownloadEvent);
+        progress.update(jreDownloadedEvent);
+
+        // when
+        progress.showAfter(0);
+        verify(frame, timeout(5000)).setVisible(true);
+        progress.update(jreUnzipEvent);
+
+        // then
+        InOrder inOrder = inOrder(progressUpdater);
+        inOrder.verify(progressUpdater).update(jreDownloadEvent);
+        inOrder.verify(progressUpdater).update(jreDownloadedEvent);
+        inOrder.verify(progressUpdater).update(jreUnzipEvent);
+    }
+
+    private boolean isEventDispatchThreadStarted() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("AWT-EventQueue")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class DirectExecutor implements Executor {
+
+        public void execute(Runnable task) {
+            task.run();
+        }
+    }
+}
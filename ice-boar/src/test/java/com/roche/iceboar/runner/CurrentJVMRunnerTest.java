@@ -11,9 +11,13 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
 
 import static java.lang.Thread.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
@@ -76,6 +80,49 @@ public class CurrentJVMRunnerTest {
         verify(command).exec();
     }
 
+    @Test
+    public void shouldRunMainClassInCurrentProcess() throws Exception {
+        // given
+        System.clearProperty(TestApplication.ARGUMENTS_PROPERTY);
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .currentJavaVersion("1.6.0")
+                                                .targetJavaVersion("1.6.0")
+                                                .mainClass(TestApplication.class.getName())
+                                                .applicationArguments(new String[]{"arg1", "arg2"})
+                                                .runInCurrentProcess(true)
+                                                .build();
+        File testClasses = new File(TestApplication.class.getProtectionDomain().getCodeSource().getLocation()
+                                                         .toURI());
+        ExecutableCommandFactory executableCommandFactory = mock(ExecutableCommandFactory.class);
+        ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        when(executableCommandFactory.getJarPathsFromCache(settings))
+                .thenReturn(Collections.singletonList(testClasses.getPath()));
+        CurrentJVMRunner runner = new CurrentJVMRunner(settings, executableCommandFactory, progressEventFactory,
+                progressEventQueue);
+
+        // when
+        runner.update(progressEventFactory.getAppStartingEvent());
+
+        // then
+        sleepAndWaitForAnotherThreads();
+        assertThat(System.getProperty(TestApplication.ARGUMENTS_PROPERTY))
+                .isEqualTo("[arg1, arg2]");
+        verify(executableCommandFactory, never())
+                .createRunTargetApplicationCommand(any(GlobalSettings.class), anyString());
+        verify(progressEventQueue).update(progressEventFactory.getAppStartedEvent());
+    }
+
+    /**
+     * A target application loaded by its own class loader, it shares only system properties with a test.
+     */
+    public static class TestApplication {
+
+        static final String ARGUMENTS_PROPERTY = "CurrentJVMRunnerTest.arguments";
+
+        public static void main(String[] args) {
+            System.setProperty(ARGUMENTS_PROPERTY, Arrays.toString(args));
+        }
+    }
 
     private Process createMockProcessWithEmptyStreams() {
         Process process = mock(Process.class);
@@ -18,6 +18,9 @@
 
 package com.roche.iceboar.runner;
 
+import com.roche.iceboar.IceBoarException;
+import com.roche.iceboar.cachestorage.CacheStatus;
+import com.roche.iceboar.cachestorage.StatusInfo;
 import com.roche.iceboar.settings.GlobalSettings;
 import org.testng.annotations.Test;
 
@@ -25,6 +28,9 @@ import java.io.File;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.fail;
 
 public class ExecutableCommandFactoryTest {
 
@@ -41,6 +47,7 @@ public class ExecutableCommandFactoryTest {
                                                 .mainClass("MainClass")
                                                 .applicationArguments(new String[]{"arg1", "arg2"})
                                                 .tempDirectory("/temp/temp")
+                                                .cacheStatus(createCacheStatusWithJars("jar1", "jar2", "jar3"))
                                                 .build();
         ExecutableCommandFactory factory = new ExecutableCommandFactory();
 
@@ -51,9 +58,7 @@ public class ExecutableCommandFactoryTest {
         String cmdText = command.getReadable();
         assertThat(cmdText).isEqualTo(
                 "\"xxx\", \"prop1\", " + "\"prop2\", " + "\"-Xms128M\", \"-Xmx256M\", \"xxx\", " + "\"-cp\", "
-                        + "\"|/temp/temp" + File.separator + "IceBoar_0" + File.separator + "jar1|/temp/temp"
-                        + File.separator + "IceBoar_0" + File.separator + "jar2|/temp/temp" + File.separator +
-                        "IceBoar_0" + File.separator + "jar3\", " + "\"MainClass\", \"arg1\", \"arg2\", ");
+                        + "\"|/cache/jar1|/cache/jar2|/cache/jar3\", " + "\"MainClass\", \"arg1\", \"arg2\", ");
     }
 
     @Test
@@ -69,6 +74,7 @@ public class ExecutableCommandFactoryTest {
                                                 .mainClass("MainClass")
                                                 .applicationArguments(new String[]{"arg1", ""})
                                                 .tempDirectory("/temp/temp")
+                                                .cacheStatus(createCacheStatusWithJars("jar1", "jar2", "jar3"))
                                                 .build();
         ExecutableCommandFactory factory = new ExecutableCommandFactory();
 
@@ -78,24 +84,44 @@ public class ExecutableCommandFactoryTest {
         // then
         String cmdText = command.getReadable();
         assertThat(cmdText).isEqualTo(
-                "\"xxx\", \"prop1\", " + "\"prop2\", " + "\"-cp\", \"|/temp/temp" + File.separator
-                        + "IceBoar_0" + File.separator + "jar1|/temp/temp" + File.separator + "IceBoar_0"
-                        + File.separator + "jar2|/temp/temp" + File.separator + "IceBoar_0" + File.separator
-                        + "jar3\", " + "\"MainClass\", \"arg1\", ");
+                "\"xxx\", \"prop1\", " + "\"prop2\", " + "\"-cp\", \"|/cache/jar1|/cache/jar2|/cache/jar3\", "
+                        + "\"MainClass\", \"arg1\", ");
     }
 
     @Test
-    public void shouldCreateJavaExecutableCommand() {
+    public void shouldThrowExceptionWhenJarIsNotInCache() {
         // given
+        GlobalSettings settings = GlobalSettings.builder()
+                                                .allPropertiesForTarget(asList("prop1"))
+                                                .pathSeparator("|")
+                                                .jarURLs(asList("jar1", "jar2"))
+                                                .mainClass("MainClass")
+                                                .cacheStatus(createCacheStatusWithJars("jar1"))
+                                                .build();
         ExecutableCommandFactory factory = new ExecutableCommandFactory();
 
-
         // when
-        ExecutableCommand command = factory.createJavaExecutableCommand("xxxyyy");
+        try {
+            factory.createRunTargetApplicationCommand(settings, "xxx");
+
+            // then
+            fail("It should throw an Exception");
+        } catch (IceBoarException e) {
+            assertThat(e.getMessage())
+                    .isEqualTo("A JAR jar2 is not downloaded. Please try again.");
+        }
+    }
 
-        // then
-        String cmdText = command.getReadable();
-        assertThat(cmdText).isEqualTo("\"chmod\", \"+x\", \"xxxyyy\", ");
+    private CacheStatus createCacheStatusWithJars(String... jarUrls) {
+        CacheStatus cacheStatus = mock(CacheStatus.class);
+        for (String jarUrl : jarUrls) {
+            StatusInfo statusInfo = mock(StatusInfo.class);
+            when(statusInfo.getPath())
+                    .thenReturn("/cache/" + jarUrl);
+            when(cacheStatus.getJarDownloadedStatusInfo(jarUrl))
+                    .thenReturn(statusInfo);
+        }
+        return cacheStatus;
     }
 
     @Test
@@ -0,0 +1,41 @@
+package com.roche.iceboar.runner;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.mockito.Mockito.*;
+
+public class ProcessOutputPumpTest {
+
+    @Test
+    public void shouldWriteLinesUntilEndOfOutputsAndCloseSink() {
+        // given
+        ProcessOutputSink sink = mock(ProcessOutputSink.class);
+        ProcessOutputPump pump = new ProcessOutputPump(sink);
+
+        // when
+        pump.pump(new ByteArrayInputStream("line 1\nline 2\n".getBytes()), "Process input: ");
+        pump.pump(new ByteArrayInputStream("error\n".getBytes()), "Process error: ");
+
+        // then
+        verify(sink).println("Process input: line 1");
+        verify(sink).println("Process input: line 2");
+        verify(sink).println("Process error: error");
+        verify(sink, times(1)).close();
+    }
+
+    @Test
+    public void shouldNotCloseSinkUntilBothOutputsAreClosed() {
+        // given
+        ProcessOutputSink sink = mock(ProcessOutputSink.class);
+        ProcessOutputPump pump = new ProcessOutputPump(sink);
+
+        // when
+        pump.pump(new ByteArrayInputStream("line 1\n".getBytes()), "Process input: ");
+
+        // then
+        verify(sink).println("Process input: line 1");
+        verify(sink, never()).close();
+    }
+}
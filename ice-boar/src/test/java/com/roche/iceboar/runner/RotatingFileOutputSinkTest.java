@@ -0,0 +1,62 @@
+package com.roche.iceboar.runner;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RotatingFileOutputSinkTest {
+
+    private File tempDir;
+
+    @BeforeMethod
+    public void setUp() {
+        tempDir = new File(System.getProperty("java.io.tmpdir"), "RotatingFileOutputSinkTest_" + System.nanoTime());
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(tempDir);
+    }
+
+    @Test
+    public void shouldAppendLinesToFile() throws IOException {
+        // given
+        File file = new File(tempDir, "output.log");
+        FileUtils.writeStringToFile(file, "old" + System.getProperty("line.separator"));
+        RotatingFileOutputSink sink = new RotatingFileOutputSink(file, 1024);
+
+        // when
+        sink.println("line 1");
+        sink.println("line 2");
+        sink.close();
+
+        // then
+        assertThat(FileUtils.readLines(file))
+                .containsExactly("old", "line 1", "line 2");
+    }
+
+    @Test
+    public void shouldStartNewFileWhenLimitIsReached() throws IOException {
+        // given
+        File file = new File(tempDir, "output.log");
+        RotatingFileOutputSink sink = new RotatingFileOutputSink(file, 10);
+
+        // when
+        sink.println("line 1");
+        sink.println("line 2");
+        sink.println("line 3");
+        sink.close();
+
+        // then
+        assertThat(FileUtils.readLines(file))
+                .containsExactly("line 3");
+        assertThat(FileUtils.readLines(new File(tempDir, "output.log.1")))
+                .containsExactly("line 1", "line 2");
+    }
+}
@@ -18,17 +18,21 @@
 
 package com.roche.iceboar.runner;
 
+import com.roche.iceboar.downloader.CachedVersion;
 import com.roche.iceboar.downloader.JREDownloader;
 import com.roche.iceboar.downloader.JarDownloader;
 import com.roche.iceboar.progressevent.ProgressEvent;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
+import com.roche.iceboar.progressevent.ProgressEventKind;
 import com.roche.iceboar.progressevent.ProgressEventObserver;
 import com.roche.iceboar.progressevent.ProgressEventQueue;
 import com.roche.iceboar.settings.GlobalSettings;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static java.util.Arrays.asList;
@@ -48,7 +52,7 @@ public class TargetApplicationRunnerTest {
         ArgumentCaptor<ProgressEventObserver> argument = ArgumentCaptor.forClass(ProgressEventObserver.class);
 
         when(progressEventFactory.getEventsToReply())
-                .thenReturn(new ArrayList<ProgressEvent>(asList(new ProgressEvent("a", ""))));
+                .thenReturn(Collections.singletonMap(new ProgressEvent("a", ""), Collections.<ProgressEvent>emptySet()));
 
         when(settings.getTargetJavaVersion()).thenReturn("1.6.0");
         when(settings.getCurrentJavaVersion()).thenReturn("1.5.0");
@@ -58,13 +62,43 @@ public class TargetApplicationRunnerTest {
         runner.run(settings, executableCommandFactory, progressEventFactory, progressEventQueue);
 
         // then
-        verify(progressEventQueue, atLeast(4)).registerObserver(argument.capture());
+        verify(progressEventQueue, atLeast(4))
+                .registerObserver(argument.capture(), Matchers.<ProgressEventKind>anyVararg());
         List<ProgressEventObserver> allValues = argument.getAllValues();
         List<Class> allClass = convertToListOfClasses(allValues);
         assertThat(allClass)
                 .containsAll(asList(TargetApplicationRunner.class, TargetJVMRunner.class, JREDownloader.class, JarDownloader.class));
     }
 
+    @Test
+    public void shouldStartCachedVersionAndUpdateItWhenUpdateIsInBackground() {
+        // given
+        TargetApplicationRunner runner = new TargetApplicationRunner();
+        GlobalSettings settings = mock(GlobalSettings.class);
+        ProgressEventFactory progressEventFactory = mock(ProgressEventFactory.class);
+        ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
+        ArgumentCaptor<ProgressEventObserver> argument = ArgumentCaptor.forClass(ProgressEventObserver.class);
+
+        when(progressEventFactory.getEventsToReply())
+                .thenReturn(Collections.singletonMap(new ProgressEvent("a", ""), Collections.<ProgressEvent>emptySet()));
+
+        when(settings.getTargetJavaVersion()).thenReturn("1.5.0");
+        when(settings.getCurrentJavaVersion()).thenReturn("1.5.0");
+        when(settings.getJarURLs()).thenReturn(Collections.<String>emptyList());
+        when(settings.isUpdateInBackground()).thenReturn(true);
+
+        // when
+        runner.run(settings, mock(ExecutableCommandFactory.class), progressEventFactory, progressEventQueue);
+
+        // then
+        verify(progressEventQueue, atLeast(4))
+                .registerObserver(argument.capture(), Matchers.<ProgressEventKind>anyVararg());
+        List<Class> allClass = convertToListOfClasses(argument.getAllValues());
+        assertThat(allClass)
+                .contains(CachedVersion.class, BackgroundUpdater.class)
+                .doesNotContain(JREDownloader.class, JarDownloader.class);
+    }
+
     private List<Class> convertToListOfClasses(List<ProgressEventObserver> allValues) {
         List<Class> allClass = new ArrayList<Class>();
         for (ProgressEventObserver value : allValues) {
@@ -99,56 +133,59 @@ public class TargetApplicationRunnerTest {
     }
 
     @Test
-    public void shouldReplayNextEventWhenJREUnzippedEvent() {
+    public void shouldReplayJREDownloadAndAllDownloadJarStartEventsAtTheSameTime() {
         // given
-        List<String> jarURLs = new ArrayList<String>();
-        jarURLs.add("jar1");
-        jarURLs.add("jar2");
-        GlobalSettings settings = GlobalSettings.builder()
-                                                .targetJavaVersion("1.5.0")
-                                                .currentJavaVersion("1.5.0")
-                                                .jarURLs(jarURLs)
-                                                .build();
+        GlobalSettings settings = createSettingsWithTwoJars();
         ProgressEventFactory progressEventFactory = new ProgressEventFactory();
         progressEventFactory.init(settings);
         ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
         TargetApplicationRunner runner = new TargetApplicationRunner();
 
-        ProgressEvent expectedNextEvent = progressEventFactory.getEventsToReply().get(0);
-
-        runner.run(settings, null, progressEventFactory, progressEventQueue);
-
         // when
-        runner.update(progressEventFactory.getJREUnzippedEvent());
+        runner.run(settings, null, progressEventFactory, progressEventQueue);
 
         // then
-        verify(progressEventQueue).update(expectedNextEvent);
+        verify(progressEventQueue).update(progressEventFactory.getJREDownloadEvent());
+        verify(progressEventQueue).update(progressEventFactory.getDownloadJarStartEvent("jar1"));
+        verify(progressEventQueue).update(progressEventFactory.getDownloadJarStartEvent("jar2"));
+        verify(progressEventQueue, never()).update(progressEventFactory.getJREUnzipEvent());
+        verify(progressEventQueue, never()).update(progressEventFactory.getAppStartingEvent());
     }
 
     @Test
-    public void shouldReplayNextEventWhenDownloadJarFinishEvent() {
+    public void shouldReplayAppStartingEventWhenJREIsUnzippedAndAllJarsAreDownloaded() {
         // given
-        List<String> jarURLs = new ArrayList<String>();
-        jarURLs.add("jar1");
-        jarURLs.add("jar2");
-        GlobalSettings settings = GlobalSettings.builder()
-                                                .targetJavaVersion("1.5.0")
-                                                .currentJavaVersion("1.5.0")
-                                                .jarURLs(jarURLs)
-                                                .build();
+        GlobalSettings settings = createSettingsWithTwoJars();
         ProgressEventFactory progressEventFactory = new ProgressEventFactory();
         progressEventFactory.init(settings);
         ProgressEventQueue progressEventQueue = mock(ProgressEventQueue.class);
         TargetApplicationRunner runner = new TargetApplicationRunner();
 
-        ProgressEvent expectedNextEvent = progressEventFactory.getEventsToReply().get(0);
-
         runner.run(settings, null, progressEventFactory, progressEventQueue);
 
         // when
         runner.update(progressEventFactory.getDownloadJarFinishEvent("jar1"));
+        runner.update(progressEventFactory.getJREDownloadedEvent());
+        runner.update(progressEventFactory.getDownloadJarFinishEvent("jar2"));
+
+        // then
+        verify(progressEventQueue, never()).update(progressEventFactory.getAppStartingEvent());
+
+        // when
+        runner.update(progressEventFactory.getJREUnzippedEvent());
 
         // then
-        verify(progressEventQueue).update(expectedNextEvent);
+        verify(progressEventQueue).update(progressEventFactory.getAppStartingEvent());
+    }
+
+    private GlobalSettings createSettingsWithTwoJars() {
+        List<String> jarURLs = new ArrayList<String>();
+        jarURLs.add("jar1");
+        jarURLs.add("jar2");
+        return GlobalSettings.builder()
+                             .targetJavaVersion("1.5.0")
+                             .currentJavaVersion("1.5.0")
+                             .jarURLs(jarURLs)
+                             .build();
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,13 @@
 package com.roche.iceboar.runner;
 
+import com.roche.iceboar.cachestorage.CacheUsageLock;
+import com.roche.iceboar.downloader.FileUtilsFacade;
 import com.roche.iceboar.progressevent.JREUnzippedDetailInfo;
 import com.roche.iceboar.progressevent.ProgressEvent;
 import com.roche.iceboar.progressevent.ProgressEventFactory;
 import com.roche.iceboar.progressevent.ProgressEventQueue;
 import com.roche.iceboar.settings.GlobalSettings;
+import org.apache.commons.io.FileUtils;
 import org.assertj.core.api.Assertions;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -13,6 +16,7 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.PrintStream;
 
@@ -171,7 +175,7 @@ public class TargetJVMRunnerTest {
     }
 
     @Test
-    public void shouldExecuteJavaExecutableCommandWhenAppStartingEventAndSystemMacOS() throws InterruptedException {
+    public void shouldMakeJavaCommandExecutableWhenAppStartingEventAndSystemMacOS() throws Exception {
         // given
         GlobalSettings settings = GlobalSettings.builder()
                                                 .operationSystemName("Mac OS X")
@@ -180,21 +184,35 @@ public class TargetJVMRunnerTest {
         TargetJVMRunner runner = new TargetJVMRunner(settings, executableCommandFactory, progressEventFactory, progressEventQueue);
 
         ExecutableCommand command = mock(ExecutableCommand.class);
-        when(executableCommandFactory.createJavaExecutableCommand(anyString()))
+        when(executableCommandFactory.createRunTargetApplicationCommand(any(GlobalSettings.class), anyString()))
                 .thenReturn(command);
-
-        updateJREUnzippedEventOnRunner(runner);
+        File jreDir = new File(System.getProperty("java.io.tmpdir"), "TargetJVMRunnerTest_" + System.nanoTime());
+        File javaCommand = new File(FileUtilsFacade.addJavaCommandPathToPath(jreDir.getPath()));
+        FileUtils.touch(javaCommand);
+        javaCommand.setExecutable(false, false);
+        ProgressEvent jreUnzippedEvent = progressEventFactory.getJREUnzippedEvent();
+        JREUnzippedDetailInfo info = new JREUnzippedDetailInfo();
+        info.setPathToJreUnzipDir(jreDir.getPath());
+        jreUnzippedEvent.addDetailInfo(info);
+        runner.update(jreUnzippedEvent);
         Process process = createMockProcessWithEmptyStreams();
         when(command.exec())
                 .thenReturn(process);
         ProgressEvent appStartingEvent = progressEventFactory.getAppStartingEvent();
 
-        // when
-        runner.update(appStartingEvent);
-
-        // then
-        sleepAndWaitForAnotherThreads();
-        verify(command).exec();
+        try {
+            // when
+            runner.update(appStartingEvent);
+
+            // then
+            sleepAndWaitForAnotherThreads();
+            Assertions.assertThat(javaCommand.canExecute())
+                    .isTrue();
+            verify(command).exec();
+        } finally {
+            FileUtils.deleteQuietly(jreDir);
+            FileUtils.deleteQuietly(CacheUsageLock.getLockFile(jreDir));
+        }
     }
 
     /*